@@ -0,0 +1,110 @@
+package com.example.chat.config.websocket;
+
+import com.example.chat.cache.MembershipCache;
+import com.example.chat.messaging.ClusterEvents;
+import com.example.chat.metrics.ChatMetrics;
+import com.example.chat.model.user.User;
+import com.example.chat.repository.MemberRepository;
+import com.example.chat.repository.UserRepository;
+import com.example.chat.service.impl.JwtServiceImpl;
+import com.example.chat.service.impl.MemberServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the authentication of the inbound frames.
+ * Services are real, with the repositories called only to warm up their caches
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AuthInterceptorBenchmark {
+    private static final String CHAT_ID = "qwer-1234";
+
+    private AuthInterceptor interceptor;
+    private MessageChannel channel;
+
+    private Message<byte[]> connect;
+    private Message<byte[]> send;
+    private Message<byte[]> subscribe;
+
+    @Setup
+    public void setup() {
+        User user = User.builder().id("1234-qwer").email("user@mail.com").enabled(true).build();
+
+        UserRepository userRepository = Mockito.mock(UserRepository.class);
+        Mockito.when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+
+        MemberRepository memberRepository = Mockito.mock(MemberRepository.class);
+        Mockito.when(memberRepository.findUserIdsByChatId(CHAT_ID)).thenReturn(List.of(user.getId()));
+
+        JwtServiceImpl jwtService = new JwtServiceImpl(userRepository, "jmh.secret", 60, 1000, 60);
+        MembershipCache membershipCache = new MembershipCache(memberRepository, Mockito.mock(ClusterEvents.class), 1000, 30);
+        ChatMetrics metrics = new ChatMetrics(new SimpleMeterRegistry(), membershipCache);
+        MemberServiceImpl memberService = new MemberServiceImpl(memberRepository, null, membershipCache, null, null, metrics, null);
+
+        interceptor = new AuthInterceptor(jwtService, memberService, metrics);
+        channel = Mockito.mock(MessageChannel.class);
+
+        String token = jwtService.createToken(new UsernamePasswordAuthenticationToken(user, null));
+        Map<String, Object> sessionAttributes = new HashMap<>();
+
+        connect = frame(StompCommand.CONNECT, null, token, null, sessionAttributes);
+
+        // authenticate the session, spring adds its user to the following frames
+        interceptor.preSend(connect, channel);
+        Principal sessionUser = (Principal) sessionAttributes.get(AuthInterceptor.SESSION_AUTHENTICATION);
+
+        send = frame(StompCommand.SEND, "/app/chats/" + CHAT_ID + "/messages", null, sessionUser, sessionAttributes);
+        subscribe = frame(StompCommand.SUBSCRIBE, "/topic/chats/" + CHAT_ID + "/messages", null, sessionUser, sessionAttributes);
+    }
+
+    @Benchmark
+    public Message<?> connect() {
+        return interceptor.preSend(connect, channel);
+    }
+
+    @Benchmark
+    public Message<?> send() {
+        return interceptor.preSend(send, channel);
+    }
+
+    @Benchmark
+    public Message<?> subscribe() {
+        return interceptor.preSend(subscribe, channel);
+    }
+
+    private static Message<byte[]> frame(
+            StompCommand command, String destination, String token, Principal user, Map<String, Object> sessionAttributes
+    ) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId("session");
+        accessor.setSessionAttributes(sessionAttributes);
+        accessor.setUser(user);
+        if (destination != null) {
+            accessor.setDestination(destination);
+        }
+        if (token != null) {
+            accessor.setNativeHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        }
+
+        // the interceptor reads the accessor of the message, so it must stay attached
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
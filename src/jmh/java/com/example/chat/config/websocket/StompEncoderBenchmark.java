@@ -0,0 +1,68 @@
+package com.example.chat.config.websocket;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding of one broadcast to all subscribers of a chat, with the default encoder
+ * and with the encoder that encodes the shared part of the frames once
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StompEncoderBenchmark {
+    @Param({"10", "100", "1000"})
+    private int subscribers;
+
+    @Param({"200", "2000"})
+    private int contentLength;
+
+    private StompEncoder defaultEncoder;
+    private SharedFrameStompEncoder sharedFrameEncoder;
+    private Message<byte[]>[] frames;
+
+    // every invocation broadcasts a new payload, so the shared part is encoded once per invocation as in production
+    @Setup(Level.Invocation)
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        defaultEncoder = new StompEncoder();
+        sharedFrameEncoder = new SharedFrameStompEncoder();
+
+        String content = "a".repeat(contentLength);
+        byte[] payload = ("{\"id\":1,\"chatId\":\"qwer-1234\",\"content\":\"" + content + "\"}").getBytes(StandardCharsets.UTF_8);
+
+        // the broker sends the same payload array with its own headers to every subscriber
+        frames = new Message[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+            accessor.setDestination("/topic/chats/qwer-1234/messages");
+            accessor.setSubscriptionId("sub-" + i);
+            accessor.setMessageId("session-" + i + "-1");
+            accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            frames[i] = MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+        }
+    }
+
+    @Benchmark
+    public void defaultEncoder(Blackhole blackhole) {
+        for (Message<byte[]> frame : frames) {
+            blackhole.consume(defaultEncoder.encode(frame));
+        }
+    }
+
+    @Benchmark
+    public void sharedFrameEncoder(Blackhole blackhole) {
+        for (Message<byte[]> frame : frames) {
+            blackhole.consume(sharedFrameEncoder.encode(frame));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.chat.payload;
+
+import com.example.chat.model.chat.member.MemberRole;
+import com.example.chat.payload.chat.ChatDto;
+import com.example.chat.payload.chat.MemberDto;
+import com.example.chat.payload.chat.MessageDto;
+import com.example.chat.payload.user.UserDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures json serialization of the payloads sent to the clients
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PayloadSerializationBenchmark {
+    @Param({"2", "50"})
+    private int members;
+
+    private ObjectMapper objectMapper;
+
+    private MessageDto message;
+    private ChatDto chat;
+
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+
+        LocalDateTime now = LocalDateTime.now();
+        UserDto author = user(0, now);
+
+        message = MessageDto.builder().id(1L).user(author).content("Hello, world!").sentAt(now).build();
+
+        Set<MemberDto> memberDtos = new HashSet<>();
+        for (int i = 0; i < members; i++) {
+            memberDtos.add(MemberDto.builder()
+                    .user(i == 0 ? author : user(i, now))
+                    .role(i == 0 ? MemberRole.OWNER : MemberRole.DEFAULT)
+                    .joinedAt(now)
+                    .updatedAt(now)
+                    .build());
+        }
+
+        chat = ChatDto.builder()
+                .id("chat")
+                .name("chat")
+                .description("benchmark chat")
+                .members(memberDtos)
+                .memberCount(members)
+                .lastMessage(message)
+                .createdAt(now)
+                .updatedAt(now)
+                .lastActivityAt(now)
+                .build();
+    }
+
+    @Benchmark
+    public byte[] serializeMessage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] serializeChat() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(chat);
+    }
+
+    private static UserDto user(int id, LocalDateTime now) {
+        return UserDto.builder()
+                .id(String.valueOf(id))
+                .nickname("user" + id)
+                .email("user" + id + "@example.com")
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.chat.service.impl;
+
+import com.example.chat.model.user.User;
+import com.example.chat.repository.UserRepository;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures creation and verification of the jwt tokens.
+ * The cold service keeps no verified tokens, so every verification checks the signature and loads the user
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JwtServiceBenchmark {
+    private JwtServiceImpl jwtService;
+    private JwtServiceImpl coldJwtService;
+
+    private Authentication authentication;
+    private String token;
+
+    @Setup
+    public void setup() {
+        User user = User.builder().id("1234-qwer").email("user@mail.com").enabled(true).build();
+
+        // the repository is called only on a cache miss
+        UserRepository userRepository = Mockito.mock(UserRepository.class);
+        Mockito.when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+
+        jwtService = new JwtServiceImpl(userRepository, "jmh.secret", 60, 1000, 60);
+        coldJwtService = new JwtServiceImpl(userRepository, "jmh.secret", 60, 0, 60);
+
+        authentication = new UsernamePasswordAuthenticationToken(user, null);
+        token = jwtService.createToken(authentication);
+    }
+
+    @Benchmark
+    public String createToken() {
+        return jwtService.createToken(authentication);
+    }
+
+    @Benchmark
+    public Authentication verifyCachedToken() {
+        return jwtService.verifyToken(token);
+    }
+
+    @Benchmark
+    public Authentication verifyToken() {
+        return coldJwtService.verifyToken(token);
+    }
+}
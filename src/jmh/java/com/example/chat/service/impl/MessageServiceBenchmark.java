@@ -0,0 +1,80 @@
+package com.example.chat.service.impl;
+
+import com.example.chat.Application;
+import com.example.chat.model.user.User;
+import com.example.chat.payload.chat.ChatDto;
+import com.example.chat.payload.chat.MessageDto;
+import com.example.chat.payload.chat.UserId;
+import com.example.chat.repository.UserRepository;
+import com.example.chat.service.ChatService;
+import com.example.chat.service.MessageService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures saving of a message on the whole application against an in-memory database,
+ * including membership check, persistence, mapping and broadcast to the broker
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessageServiceBenchmark {
+    @Param({"false", "true"})
+    private boolean writeBehind;
+
+    private ConfigurableApplicationContext context;
+    private MessageService messageService;
+
+    private User owner;
+    private String chatId;
+    private MessageDto messageDto;
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(Application.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:jmh",
+                        "logging.level.com.example.chat=WARN",
+                        "chat.messages.write-behind.enabled=" + writeBehind
+                )
+                .run();
+
+        messageService = context.getBean(MessageService.class);
+
+        owner = saveUser("owner");
+        User member = saveUser("member");
+
+        ChatDto chatDto = ChatDto.builder().name("Benchmark chat").users(List.of(new UserId(member.getId()))).build();
+        chatId = context.getBean(ChatService.class).createChat(chatDto, owner).getId();
+
+        messageDto = MessageDto.builder().content("Hello, world!").build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MessageDto saveMessage() {
+        return messageService.saveMessage(chatId, messageDto, owner);
+    }
+
+    private User saveUser(String nickname) {
+        User user = User.builder()
+                .nickname(nickname)
+                .email(nickname + "@mail.com")
+                .password("password")
+                .enabled(true)
+                .createdAt(LocalDateTime.now())
+                .build();
+
+        return context.getBean(UserRepository.class).save(user);
+    }
+}
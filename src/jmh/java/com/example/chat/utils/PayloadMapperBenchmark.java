@@ -0,0 +1,107 @@
+package com.example.chat.utils;
+
+import com.example.chat.model.chat.Chat;
+import com.example.chat.model.chat.Message;
+import com.example.chat.model.chat.member.Member;
+import com.example.chat.model.chat.member.MemberId;
+import com.example.chat.model.chat.member.MemberRole;
+import com.example.chat.model.user.User;
+import com.example.chat.payload.chat.ChatDto;
+import com.example.chat.payload.chat.MessageDto;
+import org.modelmapper.ModelMapper;
+import org.modelmapper.convention.MatchingStrategies;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the hand-written payload mapper with the reflective model mapper it replaced.
+ * Run with {@code ./gradlew jmh}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PayloadMapperBenchmark {
+    @Param({"2", "50"})
+    private int members;
+
+    private PayloadMapper payloadMapper;
+    private ModelMapper modelMapper;
+
+    private Message message;
+    private Chat chat;
+
+    @Setup
+    public void setup() {
+        payloadMapper = new PayloadMapper();
+
+        // the configuration the application used before
+        modelMapper = new ModelMapper();
+        modelMapper.getConfiguration().setMatchingStrategy(MatchingStrategies.STRICT);
+
+        LocalDateTime now = LocalDateTime.now();
+        User author = user("0", now);
+
+        chat = Chat.builder()
+                .id("chat")
+                .name("chat")
+                .description("benchmark chat")
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+
+        message = Message.builder()
+                .id(1L)
+                .chat(chat)
+                .user(author)
+                .content("Hello, world!")
+                .sentAt(now)
+                .build();
+        chat.setLastMessage(message);
+
+        for (int i = 0; i < members; i++) {
+            User user = i == 0 ? author : user(String.valueOf(i), now);
+            chat.addMember(Member.builder()
+                    .id(new MemberId(user.getId(), chat.getId()))
+                    .user(user)
+                    .chat(chat)
+                    .role(i == 0 ? MemberRole.OWNER : MemberRole.DEFAULT)
+                    .joinedAt(now)
+                    .updatedAt(now)
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public MessageDto mapMessageWithPayloadMapper() {
+        return payloadMapper.mapMessageToMessageDto(message);
+    }
+
+    @Benchmark
+    public MessageDto mapMessageWithModelMapper() {
+        return modelMapper.map(message, MessageDto.class);
+    }
+
+    @Benchmark
+    public ChatDto mapChatWithPayloadMapper() {
+        return payloadMapper.mapChatToChatDto(chat);
+    }
+
+    @Benchmark
+    public ChatDto mapChatWithModelMapper() {
+        return modelMapper.map(chat, ChatDto.class);
+    }
+
+    private static User user(String id, LocalDateTime now) {
+        return User.builder()
+                .id(id)
+                .nickname("user" + id)
+                .email("user" + id + "@example.com")
+                .password("password")
+                .enabled(true)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.chat.loadtest;
+
+import com.example.chat.Application;
+import com.example.chat.model.user.User;
+import com.example.chat.payload.chat.ChatDto;
+import com.example.chat.payload.chat.MessageDto;
+import com.example.chat.payload.chat.UserId;
+import com.example.chat.repository.UserRepository;
+import com.example.chat.service.ChatService;
+import com.example.chat.service.JwtService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Starts the application with an in-memory database, opens the given number of STOMP sessions split evenly
+ * between the chats, subscribes every session to the topic of its chat and sends messages at the given rate
+ * through {@code /app/chats/{chatId}/messages}.
+ * Every message carries the time it was sent, so the latency is measured from the send to the delivery
+ * to each subscriber and reported as a histogram.
+ * <p>
+ * Options are read from the system properties:
+ * <ul>
+ *     <li>loadtest.sessions - number of sessions, 1000 by default</li>
+ *     <li>loadtest.chats - number of chats, 100 by default</li>
+ *     <li>loadtest.rate - messages sent per second, 200 by default</li>
+ *     <li>loadtest.warmup-sec - time before the measurement starts, 10 by default</li>
+ *     <li>loadtest.duration-sec - time of the measurement, 30 by default</li>
+ * </ul>
+ */
+@Slf4j
+public class LoadTest {
+    private static final long TICK_MS = 10;
+    private static final long CONNECT_TIMEOUT_SEC = 30;
+
+    private final int sessionCount = Integer.getInteger("loadtest.sessions", 1000);
+    private final int chatCount = Integer.getInteger("loadtest.chats", 100);
+    private final int rate = Integer.getInteger("loadtest.rate", 200);
+    private final int warmupSec = Integer.getInteger("loadtest.warmup-sec", 10);
+    private final int durationSec = Integer.getInteger("loadtest.duration-sec", 30);
+
+    // latency in microseconds, the range grows with the recorded values
+    private final Histogram latency = new ConcurrentHistogram(3);
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+
+    private final List<Client> clients = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run();
+    }
+
+    private void run() throws Exception {
+        if (sessionCount < chatCount * 2) {
+            throw new IllegalStateException("There must be at least two sessions per chat");
+        }
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                        "logging.level.com.example.chat=WARN"
+                )
+                .run();
+
+        WebSocketStompClient stompClient = createStompClient();
+        ScheduledExecutorService sender = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            String url = "ws://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/ws";
+
+            createChats(context);
+            connect(stompClient, url);
+
+            log.info("Send {} messages per second to {} chats with {} sessions", rate, chatCount, sessionCount);
+            sender.scheduleAtFixedRate(new Sender(), TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+
+            TimeUnit.SECONDS.sleep(warmupSec);
+            latency.reset();
+            sent.set(0);
+            delivered.set(0);
+
+            TimeUnit.SECONDS.sleep(durationSec);
+            report();
+        } finally {
+            sender.shutdownNow();
+            clients.forEach(client -> client.session.disconnect());
+            stompClient.stop();
+            context.close();
+        }
+    }
+
+    private WebSocketStompClient createStompClient() {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(new ObjectMapper().findAndRegisterModules());
+
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(converter);
+
+        return stompClient;
+    }
+
+    // users, chats and tokens are created directly through the services, as signing up thousands of users is slow
+    private void createChats(ConfigurableApplicationContext context) {
+        log.info("Create {} users in {} chats", sessionCount, chatCount);
+
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        ChatService chatService = context.getBean(ChatService.class);
+        JwtService jwtService = context.getBean(JwtService.class);
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < sessionCount; i++) {
+            users.add(User.builder()
+                    .nickname("loadtest" + i)
+                    .email("loadtest" + i + "@mail.com")
+                    .password("password")
+                    .enabled(true)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        }
+        users = userRepository.saveAll(users);
+
+        int membersPerChat = sessionCount / chatCount;
+        for (int chat = 0; chat < chatCount; chat++) {
+            List<User> members = users.subList(chat * membersPerChat, (chat + 1) * membersPerChat);
+
+            List<UserId> userIds = new ArrayList<>();
+            members.stream().skip(1).forEach(member -> userIds.add(new UserId(member.getId())));
+
+            ChatDto chatDto = ChatDto.builder().name("Load test " + chat).users(userIds).build();
+            String chatId = chatService.createChat(chatDto, members.get(0)).getId();
+
+            for (User member : members) {
+                String token = jwtService.createToken(new UsernamePasswordAuthenticationToken(member, null));
+                clients.add(new Client(chatId, token));
+            }
+        }
+    }
+
+    private void connect(WebSocketStompClient stompClient, String url) throws Exception {
+        log.info("Connect {} sessions", clients.size());
+
+        List<ListenableFuture<StompSession>> sessions = new ArrayList<>();
+        for (Client client : clients) {
+            StompHeaders connectHeaders = new StompHeaders();
+            connectHeaders.add(HttpHeaders.AUTHORIZATION, "Bearer " + client.token);
+
+            sessions.add(stompClient.connect(url, new WebSocketHttpHeaders(), connectHeaders, new StompSessionHandlerAdapter() {}));
+        }
+
+        for (int i = 0; i < clients.size(); i++) {
+            Client client = clients.get(i);
+            client.session = sessions.get(i).get(CONNECT_TIMEOUT_SEC, TimeUnit.SECONDS);
+            client.session.subscribe("/topic/chats/" + client.chatId + "/messages", new DeliveryHandler());
+        }
+    }
+
+    private void report() {
+        double seconds = durationSec;
+
+        log.info("Sent: {} messages, {} per second", sent.get(), String.format("%.1f", sent.get() / seconds));
+        log.info("Delivered: {} messages, {} per second", delivered.get(), String.format("%.1f", delivered.get() / seconds));
+        log.info("Latency, ms: p50 {}, p99 {}, p99.9 {}, max {}",
+                latencyMs(50), latencyMs(99), latencyMs(99.9), String.format("%.2f", latency.getMaxValue() / 1000.0));
+    }
+
+    private String latencyMs(double percentile) {
+        return String.format("%.2f", latency.getValueAtPercentile(percentile) / 1000.0);
+    }
+
+    /**
+     * Sends the messages of a tick from random sessions. The fraction of a message that doesn't fit the tick
+     * is carried over to the next one, so the rate is kept for any value
+     */
+    private class Sender implements Runnable {
+        private double pending;
+
+        @Override
+        public void run() {
+            pending += rate * TICK_MS / 1000.0;
+
+            while (pending >= 1) {
+                pending--;
+
+                Client client = clients.get(ThreadLocalRandom.current().nextInt(clients.size()));
+                MessageDto message = MessageDto.builder().content(String.valueOf(System.nanoTime())).build();
+
+                try {
+                    client.session.send("/app/chats/" + client.chatId + "/messages", message);
+                    sent.incrementAndGet();
+                } catch (Exception e) {
+                    log.error("Failed to send message", e);
+                }
+            }
+        }
+    }
+
+    private class DeliveryHandler implements StompFrameHandler {
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return MessageDto.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            long sentAt = Long.parseLong(((MessageDto) payload).getContent());
+
+            latency.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sentAt));
+            delivered.incrementAndGet();
+        }
+    }
+
+    private static class Client {
+        private final String chatId;
+        private final String token;
+        private StompSession session;
+
+        private Client(String chatId, String token) {
+            this.chatId = chatId;
+            this.token = token;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.chat.cache;
+
+import com.example.chat.messaging.ClusterEvents;
+import com.example.chat.repository.MemberRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Cache of chat members. Maps id of the chat to the ids of its members,
+ * so membership checks don't require a database round-trip.
+ * The size of the cache is bounded by the total number of cached members.
+ * Evictions are published to the other instances, so they don't keep the members until the entry expires
+ */
+@Slf4j
+@Component
+public class MembershipCache implements MeterBinder {
+    private final MemberRepository memberRepository;
+    private final ClusterEvents clusterEvents;
+    private final LoadingCache<String, Set<String>> cache;
+
+    public MembershipCache(
+            MemberRepository memberRepository,
+            ClusterEvents clusterEvents,
+            @Value("${chat.cache.membership.max-entries}") long maxEntries,
+            @Value("${chat.cache.membership.ttl-min}") long ttlMin
+    ) {
+        this.memberRepository = memberRepository;
+        this.clusterEvents = clusterEvents;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxEntries)
+                .weigher((String chatId, Set<String> userIds) -> Math.max(1, userIds.size()))
+                .expireAfterWrite(Duration.ofMinutes(ttlMin))
+                .recordStats()
+                .build(this::loadMembers);
+
+        clusterEvents.subscribe(ClusterEvents.MEMBERSHIP_EVICTIONS, cache::invalidate);
+    }
+
+    /**
+     * Check if user is a member of the chat
+     *
+     * @param chatId id of the chat
+     * @param userId id of the user
+     * @return true, if is a member, false, if is not
+     */
+    public boolean isMember(String chatId, String userId) {
+        return getMembers(chatId).contains(userId);
+    }
+
+    /**
+     * Get ids of the members of the chat
+     *
+     * @param chatId id of the chat
+     * @return immutable set of the ids of the members
+     */
+    public Set<String> getMembers(String chatId) {
+        return cache.get(chatId);
+    }
+
+    /**
+     * Get ids of the members of the chat, if they are cached. Never queries the database
+     * and doesn't count as a hit or miss, so it is safe to use for metrics
+     *
+     * @param chatId id of the chat
+     * @return immutable set of the ids of the members, or empty, if the chat is not cached
+     */
+    public Optional<Set<String>> getMembersIfPresent(String chatId) {
+        return Optional.ofNullable(cache.asMap().get(chatId));
+    }
+
+    /**
+     * Evict members of the chat. Must be called whenever members of the chat change.
+     * If there is an active transaction, then the chat is evicted once again after its completion,
+     * so the state that was loaded concurrently before the commit doesn't stay in the cache.
+     * The other instances are notified once the changes are visible to them, i.e. after the completion
+     *
+     * @param chatId id of the chat
+     */
+    public void evict(String chatId) {
+        log.debug("Evict members of the chat {}", chatId);
+
+        cache.invalidate(chatId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(chatId);
+                    clusterEvents.publish(ClusterEvents.MEMBERSHIP_EVICTIONS, chatId);
+                }
+            });
+        } else {
+            clusterEvents.publish(ClusterEvents.MEMBERSHIP_EVICTIONS, chatId);
+        }
+    }
+
+    /**
+     * Get hit and miss statistics of the cache
+     *
+     * @return cache statistics
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "membership");
+    }
+
+    private Set<String> loadMembers(String chatId) {
+        log.debug("Load members of the chat {}", chatId);
+
+        return Set.copyOf(memberRepository.findUserIdsByChatId(chatId));
+    }
+}
@@ -0,0 +1,356 @@
+package com.example.chat.cache;
+
+import com.example.chat.messaging.ClusterEvents;
+import com.example.chat.model.chat.Message;
+import com.example.chat.payload.chat.MessageDto;
+import com.example.chat.payload.user.UserDto;
+import com.example.chat.repository.MessageRepository;
+import com.example.chat.utils.PayloadMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Cache of the latest messages of the chats. Maps id of the chat to a ring buffer of its most recent messages
+ * and whether there are older ones, so the first page of the history is served without a database round-trip.
+ * The buffer is loaded on the first request without counting the messages and then kept up to date by the saved messages.
+ * Saved messages are published to the other instances, which add them to their own buffers of the chat,
+ * so every instance serves the messages saved on any of them.
+ * In write-behind mode the messages that are queued, but not written yet, are kept aside until the writer
+ * reports them, so a buffer loaded in between includes them. A message that failed to be written evicts its chat
+ * on every instance. The memory is bounded by the number of cached chats, the least used chats are evicted first
+ */
+@Slf4j
+@Component
+public class RecentMessagesCache implements MeterBinder {
+    private final MessageRepository messageRepository;
+    private final PayloadMapper mapper;
+    private final ClusterEvents clusterEvents;
+    private final ObjectMapper objectMapper;
+    private final int size;
+    private final LoadingCache<String, RecentMessages> cache;
+
+    // messages queued to be written by id of the chat, the maps are modified only inside compute
+    private final Map<String, NavigableMap<Long, MessageDto>> unwritten = new ConcurrentHashMap<>();
+
+    public RecentMessagesCache(
+            MessageRepository messageRepository,
+            PayloadMapper mapper,
+            ClusterEvents clusterEvents,
+            ObjectMapper objectMapper,
+            @Value("${chat.cache.recent-messages.max-chats}") long maxChats,
+            @Value("${chat.cache.recent-messages.size}") int size,
+            @Value("${chat.cache.recent-messages.ttl-min}") long ttlMin
+    ) {
+        this.messageRepository = messageRepository;
+        this.mapper = mapper;
+        this.clusterEvents = clusterEvents;
+        this.objectMapper = objectMapper;
+        this.size = size;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxChats)
+                .expireAfterWrite(Duration.ofMinutes(ttlMin))
+                .recordStats()
+                .build(this::loadMessages);
+
+        clusterEvents.subscribe(ClusterEvents.RECENT_MESSAGES, this::receive);
+        clusterEvents.subscribe(ClusterEvents.RECENT_MESSAGES_EVICTIONS, cache::invalidate);
+        clusterEvents.subscribe(ClusterEvents.CHAT_DELETIONS, cache::invalidate);
+    }
+
+    /**
+     * Get max number of the messages kept per chat
+     *
+     * @return number of the messages
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Get the latest messages of the chat. Loads them, if the chat is not cached
+     *
+     * @param chatId id of the chat
+     * @param limit  number of messages to retrieve, must not exceed the size of the buffer
+     * @return messages sorted from newest to oldest and whether the chat has more messages
+     */
+    public LatestMessages getLatest(String chatId, int limit) {
+        if (limit > size) {
+            log.error("Requested {} messages, but only {} are cached", limit, size);
+            throw new IllegalArgumentException("Only " + size + " messages are cached");
+        }
+
+        return cache.get(chatId).latest(limit);
+    }
+
+    /**
+     * Add the saved message to the buffer of the chat on every instance. Chats that are not cached are skipped,
+     * they are loaded with the message on the next request.
+     * The buffer is updated under the lock of the cache entry, so a message saved while the chat is being loaded
+     * is added after the load completes. Adding the same message again doesn't change the buffer,
+     * so the instance that publishes the message skips it when receives it back
+     *
+     * @param chatId  id of the chat
+     * @param message saved message
+     */
+    public void add(String chatId, MessageDto message) {
+        addLocally(chatId, message);
+        publish(chatId, message);
+    }
+
+    /**
+     * Keep the message that is queued to be written, so a buffer loaded before it is written includes it.
+     * Must be called before the message is queued, the writer then reports it as written or dropped
+     *
+     * @param chatId  id of the chat
+     * @param message queued message
+     */
+    public void addUnwritten(String chatId, MessageDto message) {
+        unwritten.compute(chatId, (id, messages) -> {
+            NavigableMap<Long, MessageDto> result = messages == null ? new TreeMap<>() : messages;
+            result.put(message.getId(), message);
+            return result;
+        });
+    }
+
+    /**
+     * Forget the queued message once it is written, it is loaded from the database from now on
+     *
+     * @param chatId    id of the chat
+     * @param messageId id of the written message
+     */
+    public void written(String chatId, long messageId) {
+        removeUnwritten(chatId, messageId);
+    }
+
+    /**
+     * Forget the queued message that failed to be written and evict its chat, so the message is not served anymore
+     *
+     * @param chatId    id of the chat
+     * @param messageId id of the dropped message
+     */
+    public void dropped(String chatId, long messageId) {
+        log.debug("Message {} of the chat {} is dropped, evict recent messages of the chat", messageId, chatId);
+
+        removeUnwritten(chatId, messageId);
+        cache.invalidate(chatId);
+        clusterEvents.publish(ClusterEvents.RECENT_MESSAGES_EVICTIONS, chatId);
+    }
+
+    /**
+     * Evict messages of the chat. Must be called whenever messages of the chat are deleted.
+     * The other instances evict the chat when they receive its deletion
+     *
+     * @param chatId id of the chat
+     */
+    public void evict(String chatId) {
+        log.debug("Evict recent messages of the chat {}", chatId);
+
+        unwritten.remove(chatId);
+        cache.invalidate(chatId);
+    }
+
+    /**
+     * Get hit and miss statistics of the cache
+     *
+     * @return cache statistics
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "recent-messages");
+    }
+
+    private void addLocally(String chatId, MessageDto message) {
+        cache.asMap().computeIfPresent(chatId, (id, messages) -> {
+            messages.add(message);
+            return messages;
+        });
+    }
+
+    private void publish(String chatId, MessageDto message) {
+        UserDto user = message.getUser();
+        ClusterMessage clusterMessage = new ClusterMessage(chatId, message.getId(),
+                user != null ? user.getId() : null, user != null ? user.getNickname() : null,
+                message.getContent(), message.getSentAt());
+
+        try {
+            clusterEvents.publish(ClusterEvents.RECENT_MESSAGES, objectMapper.writeValueAsString(clusterMessage));
+        } catch (JsonProcessingException e) {
+            log.error("Failed to publish message {} of the chat {}", message.getId(), chatId, e);
+        }
+    }
+
+    private void receive(String value) {
+        try {
+            ClusterMessage clusterMessage = objectMapper.readValue(value, ClusterMessage.class);
+            addLocally(clusterMessage.getChatId(), clusterMessage.toMessageDto());
+        } catch (JsonProcessingException e) {
+            log.error("Failed to read message published by another instance", e);
+        }
+    }
+
+    private RecentMessages loadMessages(String chatId) {
+        log.debug("Load recent messages of the chat {}", chatId);
+
+        // read before the database, so a message written in between is found in one of them
+        List<MessageDto> queued = getUnwritten(chatId);
+
+        // the slice reads one more message instead of counting them, to find out if there are older ones
+        Pageable pageable = PageRequest.ofSize(size).withSort(Sort.by(Sort.Direction.DESC, "id"));
+        Slice<Message> slice = messageRepository.findSliceByChatId(chatId, pageable);
+
+        List<MessageDto> messages = new ArrayList<>(slice.map(mapper::mapMessageToMessageDto).getContent());
+        if (queued.isEmpty()) {
+            return new RecentMessages(size, messages, slice.hasNext());
+        }
+
+        Set<Long> loadedIds = messages.stream().map(MessageDto::getId).collect(Collectors.toSet());
+        for (MessageDto message : queued) {
+            if (loadedIds.add(message.getId())) {
+                messages.add(message);
+            }
+        }
+
+        messages.sort(Comparator.comparing(MessageDto::getId).reversed());
+        boolean hasOlder = slice.hasNext() || messages.size() > size;
+        return new RecentMessages(size, messages.subList(0, Math.min(size, messages.size())), hasOlder);
+    }
+
+    private List<MessageDto> getUnwritten(String chatId) {
+        List<MessageDto> result = new ArrayList<>();
+        unwritten.computeIfPresent(chatId, (id, messages) -> {
+            result.addAll(messages.values());
+            return messages;
+        });
+        return result;
+    }
+
+    private void removeUnwritten(String chatId, long messageId) {
+        unwritten.computeIfPresent(chatId, (id, messages) -> {
+            messages.remove(messageId);
+            return messages.isEmpty() ? null : messages;
+        });
+    }
+
+    /**
+     * The latest messages of the chat
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class LatestMessages {
+        private final List<MessageDto> messages;
+        // true, if the chat has messages older than the returned ones
+        private final boolean hasMore;
+    }
+
+    // message as it is published to the other instances, the payload classes don't read the generated fields from JSON
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class ClusterMessage {
+        private String chatId;
+        private Long id;
+        private String userId;
+        private String nickname;
+        private String content;
+        private LocalDateTime sentAt;
+
+        MessageDto toMessageDto() {
+            UserDto user = userId != null ? UserDto.builder().id(userId).nickname(nickname).build() : null;
+            return MessageDto.builder().id(id).user(user).content(content).sentAt(sentAt).build();
+        }
+    }
+
+    // ring buffer of the latest messages sorted from oldest to newest
+    private static class RecentMessages {
+        private final int capacity;
+        private final Deque<MessageDto> messages;
+        // true, if the chat has messages older than the ones in the buffer
+        private boolean hasOlder;
+
+        RecentMessages(int capacity, List<MessageDto> newestFirst, boolean hasOlder) {
+            this.capacity = capacity;
+            this.messages = new ArrayDeque<>(capacity + 1);
+            this.hasOlder = hasOlder;
+
+            for (MessageDto message : newestFirst) {
+                messages.addFirst(message);
+            }
+        }
+
+        synchronized void add(MessageDto message) {
+            MessageDto newest = messages.peekLast();
+            if (newest == null || newest.getId() < message.getId()) {
+                messages.addLast(message);
+            } else if (!insertInOrder(message)) {
+                return;
+            }
+
+            if (messages.size() > capacity) {
+                messages.pollFirst();
+                hasOlder = true;
+            }
+        }
+
+        synchronized LatestMessages latest(int limit) {
+            List<MessageDto> latest = new ArrayList<>(Math.min(limit, messages.size()));
+
+            Iterator<MessageDto> iterator = messages.descendingIterator();
+            while (iterator.hasNext() && latest.size() < limit) {
+                latest.add(iterator.next());
+            }
+
+            return new LatestMessages(latest, hasOlder || messages.size() > latest.size());
+        }
+
+        // messages saved concurrently may arrive out of order, which is rare, so the buffer is simply sorted again
+        private boolean insertInOrder(MessageDto message) {
+            if (messages.stream().anyMatch(cached -> cached.getId().equals(message.getId()))) {
+                return false;
+            }
+
+            List<MessageDto> sorted = new ArrayList<>(messages);
+            sorted.add(message);
+            sorted.sort(Comparator.comparing(MessageDto::getId));
+
+            messages.clear();
+            messages.addAll(sorted);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.chat.cache;
+
+import com.example.chat.payload.user.UserProfileDto;
+import com.example.chat.repository.UserRepository;
+import com.example.chat.repository.projection.UserProfile;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through cache of the public user profiles.
+ * Profiles missing from the cache are loaded together in a single query
+ */
+@Slf4j
+@Component
+public class UserProfileCache implements MeterBinder {
+    private final UserRepository userRepository;
+    private final Cache<String, UserProfileDto> cache;
+
+    public UserProfileCache(
+            UserRepository userRepository,
+            @Value("${chat.cache.user-profiles.max-entries}") long maxEntries,
+            @Value("${chat.cache.user-profiles.ttl-min}") long ttlMin
+    ) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMinutes(ttlMin))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Get profiles of the users. Users that don't exist are missing from the result
+     *
+     * @param userIds ids of the users
+     * @return profiles by id of the user
+     */
+    public Map<String, UserProfileDto> getProfiles(Collection<String> userIds) {
+        return cache.getAll(userIds, this::loadProfiles);
+    }
+
+    /**
+     * Evict profile of the user. Called by the {@link com.example.chat.persistence.UserChangeListener}
+     * whenever the user entity is updated or removed
+     *
+     * @param userId id of the user
+     */
+    public void evict(String userId) {
+        log.debug("Evict profile of the user {}", userId);
+
+        cache.invalidate(userId);
+    }
+
+    /**
+     * Get hit and miss statistics of the cache
+     *
+     * @return cache statistics
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "user-profiles");
+    }
+
+    private Map<String, UserProfileDto> loadProfiles(Iterable<? extends String> userIds) {
+        Set<String> ids = new HashSet<>();
+        userIds.forEach(ids::add);
+
+        log.debug("Load profiles of {} users", ids.size());
+
+        return userRepository.findProfilesByIdIn(ids).stream()
+                .map(profile -> new UserProfileDto(profile.getId(), profile.getNickname()))
+                .collect(Collectors.toMap(UserProfileDto::getId, Function.identity()));
+    }
+}
@@ -34,6 +34,7 @@ public class SecurityConfig {
 
         http.authorizeRequests()
                 .antMatchers("/ws").permitAll()
+                .antMatchers("/actuator/health").permitAll()
                 .antMatchers("/v3/api-docs", "/swagger-ui.html", "/swagger-ui/api-docs/swagger-config", "/swagger-ui/**").permitAll()
                 .antMatchers("/api/auth/signin", "/api/auth/signup").permitAll()
                 .anyRequest().authenticated();
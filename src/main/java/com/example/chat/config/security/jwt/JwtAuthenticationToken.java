@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 
+import java.time.Instant;
 import java.util.Collection;
 
 @Data
@@ -19,9 +20,12 @@ public class JwtAuthenticationToken implements Authentication {
 
     private boolean authenticated;
 
+    private Instant expiresAt;
+
+    // the name identifies the user in the user destinations of the websocket sessions
     @Override
     public String getName() {
-        return user.getEmail();
+        return user.getId();
     }
 
     @Override
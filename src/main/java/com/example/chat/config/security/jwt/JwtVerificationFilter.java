@@ -39,7 +39,7 @@ public class JwtVerificationFilter extends OncePerRequestFilter {
     }
 
     private void verifyToken(HttpServletRequest req, HttpServletResponse res, FilterChain filterChain, String authorization) throws IOException {
-        log.debug("Verify authorization: {}", authorization);
+        log.debug("Verify bearer token of the request {}", req.getRequestURI());
 
         String token = authorization.replace("Bearer ", "");
 
@@ -49,7 +49,7 @@ public class JwtVerificationFilter extends OncePerRequestFilter {
 
             filterChain.doFilter(req, res);
         } catch (Exception e) {
-            log.error("Jwt token failed verification: {}", token, e);
+            log.error("Jwt token failed verification", e);
             writeErrorResponse(res);
         }
     }
@@ -1,8 +1,11 @@
 package com.example.chat.config.websocket;
 
+import com.example.chat.config.security.jwt.JwtAuthenticationToken;
+import com.example.chat.metrics.ChatMetrics;
 import com.example.chat.model.user.User;
 import com.example.chat.service.JwtService;
 import com.example.chat.service.MemberService;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
@@ -14,16 +17,29 @@ import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.context.SecurityContextImpl;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Authenticates the websocket session once, when the client connects.
+ * The authentication is bound to the session attributes, so the following frames of the session
+ * reuse it and the token is verified again only after it expires
+ */
 @Slf4j
 @RequiredArgsConstructor
 @Component
 public class AuthInterceptor implements ChannelInterceptor {
+    public static final String SESSION_AUTHENTICATION = "chat.session.authentication";
+
+    private static final String APP_PREFIX = "/app/";
+    private static final String CHAT_TOPIC_PREFIX = "/topic/chats/";
+    private static final String USER_QUEUE_PREFIX = "/user/queue/";
+
     private final JwtService jwtService;
     private final MemberService memberService;
+    private final ChatMetrics metrics;
 
     @Override
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -34,42 +50,131 @@ public class AuthInterceptor implements ChannelInterceptor {
             throw new IllegalArgumentException("Stomp header accessor is null");
         }
 
-        message = verifyAuthorization(message, accessor);
+        StompCommand command = accessor.getCommand();
+        if (command != StompCommand.CONNECT && command != StompCommand.STOMP
+                && command != StompCommand.SEND && command != StompCommand.SUBSCRIBE) {
+            return message;
+        }
+
+        Timer.Sample sample = metrics.startTimer();
+        boolean success = false;
+        try {
+            if (command == StompCommand.CONNECT || command == StompCommand.STOMP) {
+                authenticateSession(accessor);
+            } else {
+                message = verifySessionAuthentication(message, accessor);
+            }
+            success = true;
+        } finally {
+            metrics.recordAuthentication(sample, command.name(), success);
+        }
+
         return message;
     }
 
-    private Message<?> verifyAuthorization(Message<?> message, StompHeaderAccessor accessor) {
-        String authorization = accessor.getFirstNativeHeader(HttpHeaders.AUTHORIZATION);
-        log.debug(authorization);
+    private void authenticateSession(StompHeaderAccessor accessor) {
+        Authentication authentication = verifyAuthorizationHeader(accessor);
 
-        if (authorization == null || authorization.isBlank() || !authorization.startsWith("Bearer ")) {
-            log.error("Unauthorized");
+        // the user set on the connect frame is remembered by spring and added to the following frames of the session
+        getSessionAttributes(accessor).put(SESSION_AUTHENTICATION, authentication);
+        accessor.setUser(authentication);
+    }
+
+    private Message<?> verifySessionAuthentication(Message<?> message, StompHeaderAccessor accessor) {
+        Map<String, Object> sessionAttributes = getSessionAttributes(accessor);
+
+        Authentication authentication = (Authentication) sessionAttributes.get(SESSION_AUTHENTICATION);
+        if (authentication == null) {
+            log.error("Session {} is not authenticated", accessor.getSessionId());
             throw new IllegalStateException("Unauthorized");
         }
 
-        String token = authorization.replace("Bearer ", "");
-        Authentication authentication = jwtService.verifyToken(token);
-        SecurityContextHolder.setContext(new SecurityContextImpl(authentication));
+        // the token of the session has expired, so the frame must carry a new one
+        if (isExpired(authentication)) {
+            log.debug("Token of the session {} has expired. Verify authorization of the frame", accessor.getSessionId());
+
+            authentication = verifyAuthorizationHeader(accessor);
+            sessionAttributes.put(SESSION_AUTHENTICATION, authentication);
+        }
+
+        verifyDestination(accessor.getCommand(), accessor.getDestination());
 
         if (accessor.getCommand() == StompCommand.SUBSCRIBE) {
             verifyAccessToTopic((User) authentication.getPrincipal(), accessor.getDestination());
         }
 
+        if (accessor.getUser() == authentication) {
+            return message;
+        }
+
+        return bindUser(message, authentication);
+    }
+
+    private Authentication verifyAuthorizationHeader(StompHeaderAccessor accessor) {
+        String authorization = accessor.getFirstNativeHeader(HttpHeaders.AUTHORIZATION);
+
+        // the token itself is a credential, so it is never logged
+        if (authorization == null || authorization.isBlank() || !authorization.startsWith("Bearer ")) {
+            log.error("Session {} is not authorized by a bearer token", accessor.getSessionId());
+            throw new IllegalStateException("Unauthorized");
+        }
+
+        String token = authorization.replace("Bearer ", "");
+        return jwtService.verifyToken(token);
+    }
+
+    private Message<?> bindUser(Message<?> message, Authentication authentication) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
         accessor.setUser(authentication);
-        accessor.setLeaveMutable(true);
+
         return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
     }
 
-    private void verifyAccessToTopic(User user, String destination) {
-        String chatTopicPrefix = "/topic/chats/";
+    private boolean isExpired(Authentication authentication) {
+        if (!(authentication instanceof JwtAuthenticationToken)) {
+            return false;
+        }
+
+        Instant expiresAt = ((JwtAuthenticationToken) authentication).getExpiresAt();
+        return expiresAt != null && expiresAt.isBefore(Instant.now());
+    }
+
+    private Map<String, Object> getSessionAttributes(StompHeaderAccessor accessor) {
+        Map<String, Object> sessionAttributes = accessor.getSessionAttributes();
+        if (sessionAttributes == null) {
+            log.error("Session attributes of the session {} are null", accessor.getSessionId());
+            throw new IllegalStateException("Session attributes are null");
+        }
 
+        return sessionAttributes;
+    }
+
+    // clients send only to the application and subscribe only to the chat topics and their own queues,
+    // so they can't publish to the broker or read the queues of the other sessions directly
+    private void verifyDestination(StompCommand command, String destination) {
+        boolean allowed;
+        if (destination == null) {
+            allowed = false;
+        } else if (command == StompCommand.SEND) {
+            allowed = destination.startsWith(APP_PREFIX);
+        } else {
+            allowed = destination.startsWith(CHAT_TOPIC_PREFIX) || destination.startsWith(USER_QUEUE_PREFIX);
+        }
+
+        if (!allowed) {
+            log.error("{} to the destination {} is not allowed", command, destination);
+            throw new IllegalStateException("Destination is not allowed");
+        }
+    }
+
+    private void verifyAccessToTopic(User user, String destination) {
         // check if the user tries to subscribe to a chat topic
-        if (!destination.startsWith(chatTopicPrefix)) {
+        if (!destination.startsWith(CHAT_TOPIC_PREFIX)) {
             return;
         }
 
         // get id of the chat
-        destination = destination.replace(chatTopicPrefix, "");
+        destination = destination.replace(CHAT_TOPIC_PREFIX, "");
         String[] resources = destination.split("/");
         if (resources.length == 0) {
             return;
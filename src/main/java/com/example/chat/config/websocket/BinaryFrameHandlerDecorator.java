@@ -0,0 +1,70 @@
+package com.example.chat.config.websocket;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends the frames of the sessions that accepted CBOR payloads in binary websocket frames.
+ * STOMP handler sends all frames except the octet-stream ones as text, but the text message keeps
+ * the encoded bytes of the frame, so they are sent as they are
+ */
+public class BinaryFrameHandlerDecorator extends WebSocketHandlerDecorator {
+    private final PayloadEncodingInterceptor payloadEncoding;
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    public BinaryFrameHandlerDecorator(WebSocketHandler delegate, PayloadEncodingInterceptor payloadEncoding) {
+        super(delegate);
+        this.payloadEncoding = payloadEncoding;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        super.afterConnectionEstablished(decorate(session));
+    }
+
+    @Override
+    public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+        super.handleMessage(decorate(session), message);
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+        super.handleTransportError(decorate(session), exception);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        WebSocketSession decorated = sessions.remove(session.getId());
+        super.afterConnectionClosed(decorated != null ? decorated : session, closeStatus);
+    }
+
+    private WebSocketSession decorate(WebSocketSession session) {
+        return sessions.computeIfAbsent(session.getId(), id -> new BinaryFrameSession(session));
+    }
+
+    private class BinaryFrameSession extends WebSocketSessionDecorator {
+
+        BinaryFrameSession(WebSocketSession session) {
+            super(session);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            if (message instanceof TextMessage && payloadEncoding.isBinarySession(getId())) {
+                message = new BinaryMessage(((TextMessage) message).asBytes());
+            }
+
+            super.sendMessage(message);
+        }
+    }
+}
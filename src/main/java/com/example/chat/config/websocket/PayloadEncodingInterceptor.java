@@ -0,0 +1,147 @@
+package com.example.chat.config.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Negotiates the encoding of the payloads of the websocket session.
+ * A client that sends the accept-content-type: application/cbor header with the CONNECT frame receives
+ * the MESSAGE frames with CBOR payloads in binary websocket frames, the other clients keep receiving JSON.
+ * Frames sent by the clients are decoded according to their content-type header.
+ * <p>
+ * Messages are serialized to JSON once and re-encoded for the sessions that accepted CBOR.
+ * The broker sends the same payload to every subscriber, so the re-encoded payloads are kept by identity
+ * of the original payload and every broadcast is re-encoded once
+ */
+@Slf4j
+@Component
+public class PayloadEncodingInterceptor implements ChannelInterceptor {
+    public static final String ACCEPT_CONTENT_TYPE_HEADER = "accept-content-type";
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+
+    private static final int ENCODED_PAYLOADS_MAX_SIZE = 1024;
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper cborMapper;
+    private final Set<String> cborSessions = ConcurrentHashMap.newKeySet();
+
+    // weak keys are compared by identity, so a payload is found only while the same array is being broadcast
+    private final Cache<byte[], byte[]> encodedPayloads = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(ENCODED_PAYLOADS_MAX_SIZE)
+            .build();
+
+    public PayloadEncodingInterceptor(ObjectMapper objectMapper, Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        this.jsonMapper = objectMapper;
+        // the builder applies the same modules and settings as to the json mapper
+        this.cborMapper = objectMapperBuilder.factory(new CBORFactory()).build();
+    }
+
+    /**
+     * Create converter of the CBOR payloads. It converts only the messages with the CBOR content type,
+     * so the messages without the content type are still converted to and from JSON
+     *
+     * @return message converter
+     */
+    public MessageConverter createCborMessageConverter() {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter(APPLICATION_CBOR);
+        converter.setObjectMapper(cborMapper);
+        converter.setStrictContentTypeMatch(true);
+
+        return converter;
+    }
+
+    /**
+     * Check if frames of the session must be sent in binary websocket frames
+     *
+     * @param sessionId id of the session
+     * @return true, if the session accepted CBOR payloads, false, if it receives JSON
+     */
+    public boolean isBinarySession(String sessionId) {
+        return cborSessions.contains(sessionId);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+
+        if (messageType == null || sessionId == null) {
+            return message;
+        }
+
+        switch (messageType) {
+            case CONNECT:
+                String acceptContentType = SimpMessageHeaderAccessor.getFirstNativeHeader(ACCEPT_CONTENT_TYPE_HEADER, headers);
+                if (acceptContentType != null && APPLICATION_CBOR.isCompatibleWith(MimeTypeUtils.parseMimeType(acceptContentType))) {
+                    log.debug("Session {} accepts CBOR payloads", sessionId);
+                    cborSessions.add(sessionId);
+                }
+                return message;
+            case DISCONNECT:
+                cborSessions.remove(sessionId);
+                return message;
+            case MESSAGE:
+                return cborSessions.contains(sessionId) ? encodeToCbor(message) : message;
+            default:
+                return message;
+        }
+    }
+
+    private Message<?> encodeToCbor(Message<?> message) {
+        if (!(message.getPayload() instanceof byte[]) || !isJson(message.getHeaders().get(MessageHeaders.CONTENT_TYPE))) {
+            return message;
+        }
+
+        byte[] payload = encodedPayloads.get((byte[]) message.getPayload(), this::jsonToCbor);
+
+        MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+        accessor.setContentType(APPLICATION_CBOR);
+
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    private byte[] jsonToCbor(byte[] json) {
+        try {
+            return cborMapper.writeValueAsBytes(jsonMapper.readTree(json));
+        } catch (IOException e) {
+            log.error("Failed to encode the payload to CBOR", e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isJson(Object contentType) {
+        if (contentType instanceof MimeType) {
+            return MimeTypeUtils.APPLICATION_JSON.isCompatibleWith((MimeType) contentType);
+        }
+
+        if (contentType instanceof String) {
+            return MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(MimeTypeUtils.parseMimeType((String) contentType));
+        }
+
+        return false;
+    }
+}
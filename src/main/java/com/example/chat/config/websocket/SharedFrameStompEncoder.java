@@ -0,0 +1,186 @@
+package com.example.chat.config.websocket;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * STOMP encoder that encodes a broadcast once for all of its subscribers.
+ * The broker sends the same payload array to every subscriber, and the MESSAGE frames differ only in the
+ * subscription and message-id headers, which STOMP requires per subscription. The rest of the frame
+ * (command, shared headers, content-length, payload and the terminating null byte) is encoded once and kept
+ * by identity of the payload. The frame of every subscriber is then a single exactly sized array,
+ * filled with its two headers and a copy of the shared part.
+ * The other frames are encoded by the default encoder
+ */
+public class SharedFrameStompEncoder extends StompEncoder {
+    private static final String SUBSCRIPTION_HEADER = "subscription";
+    private static final String MESSAGE_ID_HEADER = "message-id";
+    private static final String CONTENT_LENGTH_HEADER = "content-length";
+
+    private static final byte[] MESSAGE_COMMAND = (StompCommand.MESSAGE.name() + "\n").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUBSCRIPTION_PREFIX = (SUBSCRIPTION_HEADER + ":").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MESSAGE_ID_PREFIX = (MESSAGE_ID_HEADER + ":").getBytes(StandardCharsets.UTF_8);
+
+    private static final int SHARED_FRAMES_MAX_SIZE = 1024;
+
+    // weak keys are compared by identity, so a frame is found only while the same payload is being broadcast
+    private final Cache<byte[], SharedFrame> sharedFrames = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(SHARED_FRAMES_MAX_SIZE)
+            .build();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public byte[] encode(Map<String, Object> headers, byte[] payload) {
+        if (payload.length == 0 || StompHeaderAccessor.getCommand(headers) != StompCommand.MESSAGE) {
+            return super.encode(headers, payload);
+        }
+
+        Map<String, List<String>> nativeHeaders =
+                (Map<String, List<String>>) headers.get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+        if (nativeHeaders == null) {
+            return super.encode(headers, payload);
+        }
+
+        String subscription = getFirst(nativeHeaders, SUBSCRIPTION_HEADER);
+        String messageId = getFirst(nativeHeaders, MESSAGE_ID_HEADER);
+        if (subscription == null || messageId == null) {
+            return super.encode(headers, payload);
+        }
+
+        SharedFrame frame = sharedFrames.getIfPresent(payload);
+        // the same payload may be sent with other headers, e.g. to another destination, then it replaces the cached one
+        if (frame == null || !frame.hasSharedHeaders(nativeHeaders)) {
+            frame = encodeSharedFrame(nativeHeaders, payload);
+            sharedFrames.put(payload, frame);
+        }
+
+        return frame.toFrame(subscription, messageId);
+    }
+
+    private SharedFrame encodeSharedFrame(Map<String, List<String>> nativeHeaders, byte[] payload) {
+        Map<String, List<String>> sharedHeaders = new HashMap<>();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(payload.length + 256);
+
+        for (Map.Entry<String, List<String>> header : nativeHeaders.entrySet()) {
+            if (!isSharedHeader(header.getKey())) {
+                continue;
+            }
+
+            sharedHeaders.put(header.getKey(), header.getValue());
+            for (String value : header.getValue()) {
+                writeHeader(output, header.getKey(), value);
+            }
+        }
+
+        writeHeader(output, CONTENT_LENGTH_HEADER, Integer.toString(payload.length));
+        output.write('\n');
+        output.writeBytes(payload);
+        output.write(0);
+
+        return new SharedFrame(sharedHeaders, output.toByteArray());
+    }
+
+    private static boolean isSharedHeader(String name) {
+        return !SUBSCRIPTION_HEADER.equals(name) && !MESSAGE_ID_HEADER.equals(name) && !CONTENT_LENGTH_HEADER.equals(name);
+    }
+
+    private static String getFirst(Map<String, List<String>> nativeHeaders, String name) {
+        List<String> values = nativeHeaders.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static void writeHeader(ByteArrayOutputStream output, String name, String value) {
+        output.writeBytes(escape(name).getBytes(StandardCharsets.UTF_8));
+        output.write(':');
+        output.writeBytes(escape(value != null ? value : "").getBytes(StandardCharsets.UTF_8));
+        output.write('\n');
+    }
+
+    // the same escaping the default encoder applies to the headers of the MESSAGE frames
+    private static String escape(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf(':') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                escaped.append("\\\\");
+            } else if (c == ':') {
+                escaped.append("\\c");
+            } else if (c == '\n') {
+                escaped.append("\\n");
+            } else if (c == '\r') {
+                escaped.append("\\r");
+            } else {
+                escaped.append(c);
+            }
+        }
+
+        return escaped.toString();
+    }
+
+    private static class SharedFrame {
+        private final Map<String, List<String>> sharedHeaders;
+        private final byte[] shared;
+
+        SharedFrame(Map<String, List<String>> sharedHeaders, byte[] shared) {
+            this.sharedHeaders = sharedHeaders;
+            this.shared = shared;
+        }
+
+        boolean hasSharedHeaders(Map<String, List<String>> nativeHeaders) {
+            int count = 0;
+            for (Map.Entry<String, List<String>> header : nativeHeaders.entrySet()) {
+                if (!isSharedHeader(header.getKey())) {
+                    continue;
+                }
+
+                if (!header.getValue().equals(sharedHeaders.get(header.getKey()))) {
+                    return false;
+                }
+                count++;
+            }
+
+            return count == sharedHeaders.size();
+        }
+
+        byte[] toFrame(String subscription, String messageId) {
+            byte[] subscriptionValue = escape(subscription).getBytes(StandardCharsets.UTF_8);
+            byte[] messageIdValue = escape(messageId).getBytes(StandardCharsets.UTF_8);
+
+            byte[] frame = new byte[MESSAGE_COMMAND.length
+                    + SUBSCRIPTION_PREFIX.length + subscriptionValue.length + 1
+                    + MESSAGE_ID_PREFIX.length + messageIdValue.length + 1
+                    + shared.length];
+
+            int position = copy(MESSAGE_COMMAND, frame, 0);
+            position = copy(SUBSCRIPTION_PREFIX, frame, position);
+            position = copy(subscriptionValue, frame, position);
+            frame[position++] = '\n';
+            position = copy(MESSAGE_ID_PREFIX, frame, position);
+            position = copy(messageIdValue, frame, position);
+            frame[position++] = '\n';
+            copy(shared, frame, position);
+
+            return frame;
+        }
+
+        private static int copy(byte[] source, byte[] target, int position) {
+            System.arraycopy(source, 0, target, position, source.length);
+            return position + source.length;
+        }
+    }
+}
@@ -1,18 +1,106 @@
 package com.example.chat.config.websocket;
 
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
 
-@RequiredArgsConstructor
+import java.util.List;
+
+/**
+ * Configures the websocket endpoint and the message broker.
+ * The simple broker keeps subscriptions in memory, so messages reach only the clients connected to this instance.
+ * The relay forwards subscriptions and messages to an external STOMP broker (RabbitMQ, ActiveMQ),
+ * so messages published by any instance reach the clients of all instances
+ */
+@Slf4j
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebsocketConfig implements WebSocketMessageBrokerConfigurer {
+    public static final String BROKER_MODE_SIMPLE = "simple";
+    public static final String BROKER_MODE_RELAY = "relay";
+
     private final AuthInterceptor interceptor;
+    private final PayloadEncodingInterceptor payloadEncodingInterceptor;
+    private final TaskScheduler messageBrokerTaskScheduler;
+
+    private final String brokerMode;
+    private final String relayHost;
+    private final int relayPort;
+    private final String relayLogin;
+    private final String relayPasscode;
+
+    private final int inboundCorePoolSize;
+    private final int inboundMaxPoolSize;
+    private final int inboundQueueCapacity;
+
+    private final int outboundCorePoolSize;
+    private final int outboundMaxPoolSize;
+    private final int outboundQueueCapacity;
+
+    private final int sendTimeLimitMs;
+    private final int sendBufferSizeLimitBytes;
+    private final int messageSizeLimitBytes;
+
+    private final long serverHeartbeatMs;
+    private final long clientHeartbeatMs;
+
+    // the scheduler is created by the broker configuration itself, so it must be resolved lazily
+    public WebsocketConfig(
+            AuthInterceptor interceptor,
+            PayloadEncodingInterceptor payloadEncodingInterceptor,
+            @Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler messageBrokerTaskScheduler,
+            @Value("${chat.broker.mode}") String brokerMode,
+            @Value("${chat.broker.relay.host}") String relayHost,
+            @Value("${chat.broker.relay.port}") int relayPort,
+            @Value("${chat.broker.relay.login}") String relayLogin,
+            @Value("${chat.broker.relay.passcode}") String relayPasscode,
+            @Value("${chat.websocket.inbound.core-pool-size}") int inboundCorePoolSize,
+            @Value("${chat.websocket.inbound.max-pool-size}") int inboundMaxPoolSize,
+            @Value("${chat.websocket.inbound.queue-capacity}") int inboundQueueCapacity,
+            @Value("${chat.websocket.outbound.core-pool-size}") int outboundCorePoolSize,
+            @Value("${chat.websocket.outbound.max-pool-size}") int outboundMaxPoolSize,
+            @Value("${chat.websocket.outbound.queue-capacity}") int outboundQueueCapacity,
+            @Value("${chat.websocket.transport.send-time-limit-ms}") int sendTimeLimitMs,
+            @Value("${chat.websocket.transport.send-buffer-size-limit-bytes}") int sendBufferSizeLimitBytes,
+            @Value("${chat.websocket.transport.message-size-limit-bytes}") int messageSizeLimitBytes,
+            @Value("${chat.websocket.heartbeat.server-ms}") long serverHeartbeatMs,
+            @Value("${chat.websocket.heartbeat.client-ms}") long clientHeartbeatMs
+    ) {
+        this.interceptor = interceptor;
+        this.payloadEncodingInterceptor = payloadEncodingInterceptor;
+        this.messageBrokerTaskScheduler = messageBrokerTaskScheduler;
+        this.brokerMode = brokerMode;
+        this.relayHost = relayHost;
+        this.relayPort = relayPort;
+        this.relayLogin = relayLogin;
+        this.relayPasscode = relayPasscode;
+        this.inboundCorePoolSize = inboundCorePoolSize;
+        this.inboundMaxPoolSize = inboundMaxPoolSize;
+        this.inboundQueueCapacity = inboundQueueCapacity;
+        this.outboundCorePoolSize = outboundCorePoolSize;
+        this.outboundMaxPoolSize = outboundMaxPoolSize;
+        this.outboundQueueCapacity = outboundQueueCapacity;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.sendBufferSizeLimitBytes = sendBufferSizeLimitBytes;
+        this.messageSizeLimitBytes = messageSizeLimitBytes;
+        this.serverHeartbeatMs = serverHeartbeatMs;
+        this.clientHeartbeatMs = clientHeartbeatMs;
+    }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
@@ -22,11 +110,91 @@ public class WebsocketConfig implements WebSocketMessageBrokerConfigurer {
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.setApplicationDestinationPrefixes("/app");
-        config.enableSimpleBroker("/topic");
+        config.setUserDestinationPrefix("/user");
+
+        if (BROKER_MODE_SIMPLE.equals(brokerMode)) {
+            log.info("Use simple broker");
+
+            // heartbeats let both sides detect dead connections that were not closed properly
+            config.enableSimpleBroker("/topic", "/queue")
+                    .setHeartbeatValue(new long[]{serverHeartbeatMs, clientHeartbeatMs})
+                    .setTaskScheduler(messageBrokerTaskScheduler);
+        } else if (BROKER_MODE_RELAY.equals(brokerMode)) {
+            log.info("Use broker relay to {}:{}", relayHost, relayPort);
+
+            // heartbeats of the client sessions are negotiated with the external broker
+            config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setSystemHeartbeatSendInterval(serverHeartbeatMs)
+                    .setSystemHeartbeatReceiveInterval(clientHeartbeatMs);
+
+            // users connected to other instances are resolved through the registry shared over the broker
+            config.setUserRegistryBroadcast("/topic/simp-user-registry");
+            config.setUserDestinationBroadcast("/topic/unresolved-user-destination");
+        } else {
+            log.error("Unknown broker mode {}", brokerMode);
+            throw new IllegalStateException("Unknown broker mode " + brokerMode);
+        }
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(interceptor);
+        registration.interceptors(interceptor, payloadEncodingInterceptor);
+        registration.taskExecutor()
+                .corePoolSize(inboundCorePoolSize)
+                .maxPoolSize(inboundMaxPoolSize)
+                .queueCapacity(inboundQueueCapacity);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(payloadEncodingInterceptor);
+        registration.taskExecutor()
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(outboundQueueCapacity);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // a session that can't keep up within these limits is closed, so it doesn't hold the outbound threads
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeLimitBytes)
+                .setMessageSizeLimit(messageSizeLimitBytes)
+                .addDecoratorFactory(handler -> new BinaryFrameHandlerDecorator(handler, payloadEncodingInterceptor));
+    }
+
+    /**
+     * Set the encoder that encodes every broadcast once for all subscribers on the STOMP handler.
+     * The handler is created together with the endpoint registry and has no configuration option for the encoder,
+     * so the encoder is set once all beans are created, before the websocket endpoint accepts connections
+     */
+    @Bean
+    public SmartInitializingSingleton stompEncoderInitializer(
+            @Qualifier("subProtocolWebSocketHandler") WebSocketHandler subProtocolWebSocketHandler
+    ) {
+        return () -> {
+            if (!(subProtocolWebSocketHandler instanceof SubProtocolWebSocketHandler)) {
+                log.warn("Default STOMP encoder is used, the websocket handler is {}", subProtocolWebSocketHandler.getClass());
+                return;
+            }
+
+            SharedFrameStompEncoder encoder = new SharedFrameStompEncoder();
+            ((SubProtocolWebSocketHandler) subProtocolWebSocketHandler).getProtocolHandlers().stream()
+                    .filter(StompSubProtocolHandler.class::isInstance)
+                    .forEach(handler -> ((StompSubProtocolHandler) handler).setEncoder(encoder));
+        };
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // frames with CBOR content type are decoded by this converter, the default ones handle the rest
+        messageConverters.add(payloadEncodingInterceptor.createCborMessageConverter());
+        return true;
     }
 }
@@ -0,0 +1,44 @@
+package com.example.chat.config.websocket;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.Map;
+
+/**
+ * Exposes the state of the thread pools of the websocket channels.
+ * A growing queue of the outbound channel means that the clients don't keep up with the messages
+ */
+@Configuration
+public class WebsocketMetricsConfig {
+
+    @Bean
+    public MeterBinder websocketChannelMetrics(
+            @Qualifier("clientInboundChannelExecutor") ThreadPoolTaskExecutor inboundExecutor,
+            @Qualifier("clientOutboundChannelExecutor") ThreadPoolTaskExecutor outboundExecutor
+    ) {
+        Map<String, ThreadPoolTaskExecutor> executors = Map.of("inbound", inboundExecutor, "outbound", outboundExecutor);
+
+        return registry -> executors.forEach((channel, executor) -> {
+            // the values are read on every scrape, after the executors are initialized
+            Gauge.builder("chat.websocket.channel.queued", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                    .description("Number of frames waiting for a thread")
+                    .tag("channel", channel)
+                    .register(registry);
+
+            Gauge.builder("chat.websocket.channel.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                    .description("Number of threads processing frames")
+                    .tag("channel", channel)
+                    .register(registry);
+
+            Gauge.builder("chat.websocket.channel.pool.size", executor, ThreadPoolTaskExecutor::getPoolSize)
+                    .description("Number of threads in the pool")
+                    .tag("channel", channel)
+                    .register(registry);
+        });
+    }
+}
@@ -2,6 +2,7 @@ package com.example.chat.controller;
 
 import com.example.chat.model.user.User;
 import com.example.chat.payload.chat.ChatDto;
+import com.example.chat.payload.chat.InboxDto;
 import com.example.chat.payload.groups.CreateRequest;
 import com.example.chat.service.ChatService;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -26,11 +27,24 @@ public class ChatController {
 
     @GetMapping
     List<ChatDto> getChatsByUserId(
+            @RequestParam(defaultValue = "true") boolean members,
             @Parameter(hidden = true) @AuthenticationPrincipal User actor
     ) {
-        log.debug("Get chats of current user");
+        log.debug("Get chats of current user. Include members: {}", members);
 
-        return chatService.getChatsOfActor(actor);
+        return chatService.getChatsOfActor(actor, members);
+    }
+
+    @GetMapping("inbox")
+    InboxDto getInbox(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "false") boolean members,
+            @Parameter(hidden = true) @AuthenticationPrincipal User actor
+    ) {
+        log.debug("Get {} chats of current user after cursor {}. Include members: {}", limit, cursor, members);
+
+        return chatService.getInboxOfActor(actor, cursor, limit, members);
     }
 
     @ResponseStatus(HttpStatus.CREATED)
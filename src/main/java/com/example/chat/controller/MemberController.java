@@ -2,6 +2,7 @@ package com.example.chat.controller;
 
 import com.example.chat.model.user.User;
 import com.example.chat.payload.chat.MemberDto;
+import com.example.chat.payload.chat.MembersBatchRequest;
 import com.example.chat.payload.chat.UserId;
 import com.example.chat.service.MemberService;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -57,6 +58,18 @@ public class MemberController {
         return memberService.addChatMember(chatId, userId, actor);
     }
 
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping("{chatId}/members:batch")
+    List<MemberDto> addChatMembers(
+            @PathVariable String chatId,
+            @RequestBody @Valid MembersBatchRequest request,
+            @Parameter(hidden = true) @AuthenticationPrincipal User actor
+    ) {
+        log.debug("Add {} new members to the chat {}", request.getUsers().size(), chatId);
+
+        return memberService.addChatMembers(chatId, request, actor);
+    }
+
     @PutMapping("{chatId}/members/{memberId}")
     MemberDto updateChatMember(
             @PathVariable String chatId,
@@ -80,4 +93,16 @@ public class MemberController {
 
         memberService.removeChatMember(chatId, memberId, actor);
     }
+
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @DeleteMapping("{chatId}/members:batch")
+    void removeChatMembers(
+            @PathVariable String chatId,
+            @RequestBody @Valid MembersBatchRequest request,
+            @Parameter(hidden = true) @AuthenticationPrincipal User actor
+    ) {
+        log.debug("Remove {} members of the chat {}", request.getUsers().size(), chatId);
+
+        memberService.removeChatMembers(chatId, request, actor);
+    }
 }
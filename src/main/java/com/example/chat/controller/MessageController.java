@@ -2,6 +2,9 @@ package com.example.chat.controller;
 
 import com.example.chat.model.user.User;
 import com.example.chat.payload.chat.MessageDto;
+import com.example.chat.payload.chat.MessageHistoryDto;
+import com.example.chat.payload.chat.MessageSearchDto;
+import com.example.chat.payload.chat.ReadReceiptDto;
 import com.example.chat.service.MessageService;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -35,6 +38,44 @@ public class MessageController {
         return messageService.getMessages(chatId, lastId, limit, actor);
     }
 
+    @GetMapping("{chatId}/messages/history")
+    MessageHistoryDto getChatMessageHistory(
+            @PathVariable String chatId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false, defaultValue = "20") int limit,
+            @Parameter(hidden = true) @AuthenticationPrincipal User actor
+    ) {
+        log.debug("Get {} messages of the chat {} before {} or after {}", limit, chatId, before, after);
+
+        return messageService.getMessageHistory(chatId, before, after, limit, actor);
+    }
+
+    @GetMapping("{chatId}/messages/search")
+    MessageHistoryDto searchChatMessages(
+            @PathVariable String chatId,
+            @RequestParam String query,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false, defaultValue = "20") int limit,
+            @Parameter(hidden = true) @AuthenticationPrincipal User actor
+    ) {
+        log.debug("Search {} messages of the chat {} before {} by query {}", limit, chatId, before, query);
+
+        return messageService.searchMessages(chatId, query, before, limit, actor);
+    }
+
+    @GetMapping("messages/search")
+    MessageSearchDto searchMessages(
+            @RequestParam String query,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false, defaultValue = "20") int limit,
+            @Parameter(hidden = true) @AuthenticationPrincipal User actor
+    ) {
+        log.debug("Search {} messages of all chats before {} by query {}", limit, before, query);
+
+        return messageService.searchAllMessages(query, before, limit, actor);
+    }
+
     @ResponseStatus(HttpStatus.CREATED)
     @PostMapping("{chatId}/messages")
     MessageDto saveChatMessage(
@@ -46,4 +87,15 @@ public class MessageController {
 
         return messageService.saveMessage(chatId, messageDto, actor);
     }
+
+    @PutMapping("{chatId}/read")
+    ReadReceiptDto markChatAsRead(
+            @PathVariable String chatId,
+            @RequestBody @Valid ReadReceiptDto receipt,
+            @Parameter(hidden = true) @AuthenticationPrincipal User actor
+    ) {
+        log.debug("Mark messages of the chat {} as read up to {}", chatId, receipt.getMessageId());
+
+        return messageService.markAsRead(chatId, receipt, actor);
+    }
 }
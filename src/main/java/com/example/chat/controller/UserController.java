@@ -1,13 +1,20 @@
 package com.example.chat.controller;
 
+import com.example.chat.model.user.User;
+import com.example.chat.payload.user.PresenceDto;
 import com.example.chat.payload.user.UserDto;
+import com.example.chat.payload.user.UserProfileDto;
+import com.example.chat.payload.user.UsersBatchRequest;
+import com.example.chat.service.PresenceService;
 import com.example.chat.service.UserService;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import javax.validation.Valid;
 import java.util.List;
 
 @SecurityRequirement(name = "bearerAuth")
@@ -17,6 +24,7 @@ import java.util.List;
 @RequestMapping("/api/users")
 public class UserController {
     private final UserService userService;
+    private final PresenceService presenceService;
 
     @GetMapping("{userId}")
     UserDto getUserById(@PathVariable String userId) {
@@ -25,13 +33,46 @@ public class UserController {
         return userService.getUser(userId);
     }
 
+    @GetMapping(params = "ids")
+    List<UserProfileDto> getUsersByIds(
+            @Parameter(name = "Ids", description = "Ids of the users")
+            @RequestParam(name = "ids") List<String> ids
+    ) {
+        log.debug("Get profiles of {} users", ids.size());
+
+        return userService.getUserProfiles(ids);
+    }
+
+    // the same as the lookup by ids, for the sets of ids that don't fit into the url
+    @PostMapping("batch")
+    List<UserProfileDto> getUsersByIdsBatch(@RequestBody @Valid UsersBatchRequest request) {
+        log.debug("Get profiles of {} users", request.getIds().size());
+
+        return userService.getUserProfiles(request.getIds());
+    }
+
+    @GetMapping("presence")
+    List<PresenceDto> getPresence(
+            @Parameter(name = "Ids", description = "Ids of the users")
+            @RequestParam(name = "ids") List<String> ids,
+            @Parameter(hidden = true) @AuthenticationPrincipal User actor
+    ) {
+        log.debug("Get presence of {} users", ids.size());
+
+        return presenceService.getPresence(ids, actor);
+    }
+
     @GetMapping(params = "nickname")
     List<UserDto> getUserByNickname(
             @Parameter(name = "Nickname", description = "Nickname of the user")
-            @RequestParam(name = "nickname") String nickname
+            @RequestParam(name = "nickname") String nickname,
+            @Parameter(name = "Page", description = "Number of the page")
+            @RequestParam(name = "page", defaultValue = "0") Integer page,
+            @Parameter(name = "Limit", description = "Number of users to retrieve, at most 50")
+            @RequestParam(name = "limit", defaultValue = "20") Integer limit
     ) {
-        log.debug("Get users by nickname: {}", nickname);
+        log.debug("Get users by nickname: {}. Page {}, limit {}", nickname, page, limit);
 
-        return userService.getUsersByNickname(nickname);
+        return userService.getUsersByNickname(nickname, page, limit);
     }
 }
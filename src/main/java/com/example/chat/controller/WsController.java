@@ -2,19 +2,26 @@ package com.example.chat.controller;
 
 import com.example.chat.model.user.User;
 import com.example.chat.payload.chat.MessageDto;
+import com.example.chat.payload.chat.ReadReceiptDto;
 import com.example.chat.service.MessageService;
+import com.example.chat.service.TypingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 
+import javax.validation.Valid;
+
 @Slf4j
 @RequiredArgsConstructor
 @Controller
 public class WsController {
     private final MessageService messageService;
+    private final TypingService typingService;
 
     @MessageMapping("/chats/{chatId}/messages")
     public void saveMessage(@DestinationVariable String chatId, MessageDto message, Authentication auth) {
@@ -23,4 +30,20 @@ public class WsController {
         User user = (User) auth.getPrincipal();
         messageService.saveMessage(chatId, message, user);
     }
+
+    @MessageMapping("/chats/{chatId}/typing")
+    public void notifyTyping(@DestinationVariable String chatId, Authentication auth) {
+        User user = (User) auth.getPrincipal();
+        typingService.notifyTyping(chatId, user);
+    }
+
+    // the receipt is sent back to all sessions of the user, so the other devices update the unread counter too
+    @MessageMapping("/chats/{chatId}/read")
+    @SendToUser("/queue/read")
+    public ReadReceiptDto markAsRead(@DestinationVariable String chatId, @Payload @Valid ReadReceiptDto receipt, Authentication auth) {
+        log.debug("Mark messages of the chat {} as read up to {}", chatId, receipt.getMessageId());
+
+        User user = (User) auth.getPrincipal();
+        return messageService.markAsRead(chatId, receipt, user);
+    }
 }
@@ -0,0 +1,111 @@
+package com.example.chat.messaging;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Notifies the other instances about the changes that invalidate their local state, e.g. cached members of a chat.
+ * With the broker relay the events are published to the topics of the external broker and received
+ * through the system session of every instance, including the one that published them.
+ * With the simple broker there are no other instances, so the events are not published at all.
+ * Clients can't subscribe to these topics, see {@link com.example.chat.config.websocket.AuthInterceptor}
+ */
+@Slf4j
+@Component
+public class ClusterEvents implements SmartInitializingSingleton {
+    public static final String MEMBERSHIP_EVICTIONS = "/topic/cluster.membership-evictions";
+    public static final String CHAT_DELETIONS = "/topic/cluster.chat-deletions";
+    public static final String RECENT_MESSAGES = "/topic/cluster.recent-messages";
+    public static final String RECENT_MESSAGES_EVICTIONS = "/topic/cluster.recent-messages-evictions";
+
+    private static final MessageHeaders TEXT_HEADERS =
+            new MessageHeaders(Map.of(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.TEXT_PLAIN));
+
+    // the messaging template and the relay depend on the websocket configuration, which depends on the caches
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+    private final ObjectProvider<StompBrokerRelayMessageHandler> brokerRelay;
+
+    private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+    private volatile boolean relayEnabled;
+
+    public ClusterEvents(
+            ObjectProvider<SimpMessagingTemplate> messagingTemplate,
+            ObjectProvider<StompBrokerRelayMessageHandler> brokerRelay
+    ) {
+        this.messagingTemplate = messagingTemplate;
+        this.brokerRelay = brokerRelay;
+    }
+
+    /**
+     * Register listener of the events published to the destination by any instance.
+     * Must be called before the application context is refreshed, e.g. in the constructor of the listening bean
+     *
+     * @param destination topic of the events
+     * @param listener    called with the value of every event, on the thread of the broker connection
+     */
+    public void subscribe(String destination, Consumer<String> listener) {
+        listeners.computeIfAbsent(destination, key -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Publish the event to all instances. Does nothing with the simple broker
+     *
+     * @param destination topic of the events
+     * @param value       value of the event
+     */
+    public void publish(String destination, String value) {
+        if (!relayEnabled) {
+            return;
+        }
+
+        log.debug("Publish {} to {}", value, destination);
+
+        try {
+            messagingTemplate.getObject().send(destination,
+                    MessageBuilder.createMessage(value.getBytes(StandardCharsets.UTF_8), TEXT_HEADERS));
+        } catch (Exception e) {
+            // the other instances still drop the stale state once it expires
+            log.error("Failed to publish {} to {}", value, destination, e);
+        }
+    }
+
+    // the system session subscribes to these destinations when it connects to the broker,
+    // which happens after all singletons are created
+    @Override
+    public void afterSingletonsInstantiated() {
+        StompBrokerRelayMessageHandler relay = brokerRelay.getIfAvailable();
+        if (relay == null) {
+            return;
+        }
+
+        // keep the subscriptions of the user registry broadcast
+        Map<String, MessageHandler> subscriptions = new HashMap<>();
+        if (relay.getSystemSubscriptions() != null) {
+            subscriptions.putAll(relay.getSystemSubscriptions());
+        }
+        listeners.forEach((destination, destinationListeners) -> subscriptions.put(destination, message -> {
+            String value = new String((byte[]) message.getPayload(), StandardCharsets.UTF_8);
+            destinationListeners.forEach(listener -> listener.accept(value));
+        }));
+        relay.setSystemSubscriptions(subscriptions);
+
+        relayEnabled = true;
+        log.info("Subscribed to the cluster events {}", listeners.keySet());
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.chat.messaging;
+
+import com.example.chat.cache.MembershipCache;
+import com.example.chat.metrics.ChatMetrics;
+import com.example.chat.payload.chat.InboxMessageDto;
+import com.example.chat.payload.chat.MessageDto;
+import com.example.chat.payload.chat.TypingDto;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Map;
+
+/**
+ * Delivers the messages to the members of the chat.
+ * In topic mode the message is published to the topic of the chat, which the clients subscribe to for every chat.
+ * In inbox mode the message is sent to the inbox queue of every member that is online,
+ * so a client holds a single subscription regardless of the number of its chats
+ */
+@Slf4j
+@Component
+public class MessageBroadcaster {
+    public static final String DELIVERY_TOPIC = "topic";
+    public static final String DELIVERY_INBOX = "inbox";
+    public static final String DELIVERY_BOTH = "both";
+
+    public static final String INBOX_DESTINATION = "/queue/inbox";
+
+    private static final MessageHeaders JSON_HEADERS =
+            new MessageHeaders(Map.of(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON));
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry userRegistry;
+    private final MembershipCache membershipCache;
+    private final ChatMetrics metrics;
+
+    private final boolean topicEnabled;
+    private final boolean inboxEnabled;
+
+    public MessageBroadcaster(
+            SimpMessagingTemplate messagingTemplate,
+            SimpUserRegistry userRegistry,
+            MembershipCache membershipCache,
+            ChatMetrics metrics,
+            @Value("${chat.messages.delivery}") String delivery
+    ) {
+        this.messagingTemplate = messagingTemplate;
+        this.userRegistry = userRegistry;
+        this.membershipCache = membershipCache;
+        this.metrics = metrics;
+
+        if (!DELIVERY_TOPIC.equals(delivery) && !DELIVERY_INBOX.equals(delivery) && !DELIVERY_BOTH.equals(delivery)) {
+            log.error("Unknown delivery mode {}", delivery);
+            throw new IllegalStateException("Unknown delivery mode " + delivery);
+        }
+
+        this.topicEnabled = !DELIVERY_INBOX.equals(delivery);
+        this.inboxEnabled = !DELIVERY_TOPIC.equals(delivery);
+    }
+
+    /**
+     * Deliver the message to the members of the chat
+     *
+     * @param chatId  id of the chat
+     * @param message message sent to the chat
+     */
+    public void broadcastMessage(String chatId, MessageDto message) {
+        Timer.Sample sample = metrics.startTimer();
+
+        if (topicEnabled) {
+            messagingTemplate.convertAndSend("/topic/chats/" + chatId + "/messages", message);
+        }
+
+        if (inboxEnabled) {
+            sendToInboxes(chatId, message);
+        }
+
+        metrics.recordBroadcast(sample, chatId);
+    }
+
+    /**
+     * Notify the members of the chat that the user is typing. The notification is published
+     * to the typing topic of the chat regardless of the delivery mode
+     *
+     * @param chatId id of the chat
+     * @param typing typing member
+     */
+    public void broadcastTyping(String chatId, TypingDto typing) {
+        messagingTemplate.convertAndSend("/topic/chats/" + chatId + "/typing", typing);
+    }
+
+    private void sendToInboxes(String chatId, MessageDto message) {
+        // the payload is serialized once and the same bytes are sent to every member
+        InboxMessageDto inboxMessage = new InboxMessageDto(chatId, message);
+        Message<?> serialized = messagingTemplate.getMessageConverter().toMessage(inboxMessage, JSON_HEADERS);
+        if (serialized == null) {
+            log.error("Failed to serialize message {} to the chat {}", message.getId(), chatId);
+            throw new IllegalStateException("Failed to serialize the message");
+        }
+
+        for (String userId : membershipCache.getMembers(chatId)) {
+            // members that are not connected have no session to deliver the message to
+            if (userRegistry.getUser(userId) == null) {
+                continue;
+            }
+
+            messagingTemplate.send("/user/" + userId + INBOX_DESTINATION, serialized);
+        }
+    }
+}
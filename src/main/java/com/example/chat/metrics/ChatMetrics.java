@@ -0,0 +1,113 @@
+package com.example.chat.metrics;
+
+import com.example.chat.cache.MembershipCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Timers and counters of the chat operations.
+ * Chats are tagged by the bucket of their size instead of their id, so the number of time series stays bounded
+ */
+@RequiredArgsConstructor
+@Component
+public class ChatMetrics {
+    public static final String MODE_SYNC = "sync";
+    public static final String MODE_WRITE_BEHIND = "write-behind";
+
+    public static final String CHAT_SIZE_UNKNOWN = "unknown";
+
+    public static final String HISTORY_PAGE = "page";
+    public static final String HISTORY_CURSOR = "cursor";
+    public static final String HISTORY_SEARCH = "search";
+    public static final String HISTORY_RECENT = "recent";
+
+    private final MeterRegistry registry;
+    private final MembershipCache membershipCache;
+
+    /**
+     * Start measuring an operation
+     *
+     * @return sample to pass to one of the record methods
+     */
+    public Timer.Sample startTimer() {
+        return Timer.start(registry);
+    }
+
+    public void recordMessageSave(Timer.Sample sample, String chatId, String mode, boolean success) {
+        sample.stop(Timer.builder("chat.messages.save")
+                .description("Time to save a message")
+                .tags("mode", mode, "chat.size", chatSize(chatId), "outcome", outcome(success))
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public void recordBroadcast(Timer.Sample sample, String chatId) {
+        sample.stop(Timer.builder("chat.messages.broadcast")
+                .description("Time to hand a message over to the broker")
+                .tags("chat.size", chatSize(chatId))
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public void recordHistoryFetch(Timer.Sample sample, String type) {
+        sample.stop(Timer.builder("chat.messages.history")
+                .description("Time to fetch a page of messages")
+                .tags("type", type)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public void recordAuthentication(Timer.Sample sample, String command, boolean success) {
+        sample.stop(Timer.builder("chat.stomp.authentication")
+                .description("Time to authenticate a STOMP frame")
+                .tags("command", command, "outcome", outcome(success))
+                .register(registry));
+    }
+
+    public void recordDroppedMessages(int count) {
+        Counter.builder("chat.messages.dropped")
+                .description("Number of accepted messages that failed to be written and were dropped")
+                .register(registry)
+                .increment(count);
+    }
+
+    public void recordMembershipCheck(boolean member) {
+        Counter.builder("chat.membership.checks")
+                .description("Number of membership checks")
+                .tags("result", member ? "member" : "not-member")
+                .register(registry)
+                .increment();
+    }
+
+    // only cached members are used, so recording never queries the database or fails the measured operation.
+    // The cache is warm for the chats that are active
+    private String chatSize(String chatId) {
+        Optional<Set<String>> cachedMembers = membershipCache.getMembersIfPresent(chatId);
+        if (cachedMembers.isEmpty()) {
+            return CHAT_SIZE_UNKNOWN;
+        }
+
+        int members = cachedMembers.get().size();
+
+        if (members <= 2) {
+            return "1-2";
+        } else if (members <= 10) {
+            return "3-10";
+        } else if (members <= 100) {
+            return "11-100";
+        } else if (members <= 1000) {
+            return "101-1000";
+        }
+        return "1000+";
+    }
+
+    private String outcome(boolean success) {
+        return success ? "success" : "error";
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.chat.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Number of connected STOMP sessions.
+ * Sessions are tracked by id, as the disconnect event is published also for the sessions that never connected
+ */
+@Component
+public class StompSessionMetrics {
+    private final Set<String> sessions = ConcurrentHashMap.newKeySet();
+
+    public StompSessionMetrics(MeterRegistry registry) {
+        Gauge.builder("chat.stomp.sessions", sessions, Set::size)
+                .description("Number of connected STOMP sessions")
+                .register(registry);
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (sessionId != null) {
+            sessions.add(sessionId);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+}
@@ -18,7 +18,7 @@ import java.util.Set;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name="chats")
+@Table(name="chats", indexes = @Index(name = "idx_chats_last_activity_at_id", columnList = "last_activity_at, id"))
 public class Chat {
     @Id
     @GeneratedValue(generator="uuid")
@@ -38,13 +38,17 @@ public class Chat {
     @JoinColumn(name = "message_id", referencedColumnName = "id")
     private Message lastMessage;
 
+    // messages are removed with bulk deletes when the chat is deleted, cascading the removal would load all of them
     @Builder.Default
-    @OneToMany(mappedBy = "chat", cascade = CascadeType.REMOVE)
+    @OneToMany(mappedBy = "chat")
     private Set<Message> messages = new HashSet<>();
 
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    // time of the last message, or creation of the chat, used to sort the inbox
+    private LocalDateTime lastActivityAt;
+
     public void addMember(Member member) {
         this.members.add(member);
     }
@@ -13,7 +13,7 @@ import java.util.Objects;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "members")
+@Table(name = "members", indexes = @Index(name = "idx_members_user_id_chat_id", columnList = "user_id, chat_id"))
 public class Member {
     @EmbeddedId
     @AttributeOverrides({
@@ -37,11 +37,21 @@ public class Member {
     private LocalDateTime joinedAt;
     private LocalDateTime updatedAt;
 
+    // id of the last message the member has read. Like the counter, it is updated only by the unread counters,
+    // so updates of the entity don't write back the value loaded before the counters were flushed
+    @Column(updatable = false)
+    private Long lastReadMessageId;
+
+    // number of messages after the last read one, maintained by the unread counters
+    @Column(updatable = false)
+    private Integer unreadCount;
+
     public Member(User user, Chat chat) {
         this.id = new MemberId(user.getId(), chat.getId());
         this.user = user;
         this.chat = chat;
         this.joinedAt = LocalDateTime.now();
+        this.unreadCount = 0;
     }
 
     public Member(User user, Chat chat, MemberRole role) {
@@ -1,12 +1,14 @@
 package com.example.chat.model.chat.member;
 
 import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 
 import javax.persistence.Embeddable;
 import java.io.Serializable;
 import java.util.Objects;
 
+@Getter
 @NoArgsConstructor
 @AllArgsConstructor
 @Embeddable
@@ -1,5 +1,6 @@
 package com.example.chat.model.user;
 
+import com.example.chat.persistence.UserChangeListener;
 import lombok.*;
 import org.hibernate.annotations.GenericGenerator;
 import org.springframework.security.core.GrantedAuthority;
@@ -9,6 +10,7 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 
 @Data
@@ -16,6 +18,8 @@ import java.util.Objects;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@EntityListeners(UserChangeListener.class)
+// the index of the search nickname is created by the SearchNicknameIndexInitializer
 @Table(name = "users")
 public class User implements UserDetails {
     @Id
@@ -26,6 +30,11 @@ public class User implements UserDetails {
     @Column(nullable = false, unique = true)
     private String nickname;
 
+    // lowercase nickname, so the search by prefix can use the index instead of lower() on every row
+    @ToString.Exclude
+    @Column(name = "search_nickname")
+    private String searchNickname;
+
     @Column(nullable = false, unique = true)
     private String email;
 
@@ -37,6 +46,22 @@ public class User implements UserDetails {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    /**
+     * Normalize the nickname for the search
+     *
+     * @param nickname nickname or its prefix
+     * @return normalized nickname
+     */
+    public static String normalizeNickname(String nickname) {
+        return nickname == null ? null : nickname.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateSearchNickname() {
+        this.searchNickname = normalizeNickname(nickname);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
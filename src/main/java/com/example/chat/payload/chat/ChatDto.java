@@ -3,6 +3,7 @@ package com.example.chat.payload.chat;
 import com.example.chat.payload.groups.CreateRequest;
 import com.example.chat.payload.groups.UpdateRequest;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
@@ -43,8 +44,18 @@ public class ChatDto {
     @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Members")
     @JsonIgnoreProperties({"chat"})
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private Set<MemberDto> members;
 
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Number of members", example = "3")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Integer memberCount;
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Number of unread messages", example = "0")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer unreadCount;
+
     @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Last message")
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
     private MessageDto lastMessage;
@@ -56,4 +67,8 @@ public class ChatDto {
     @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Updated at")
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
     private LocalDateTime updatedAt;
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Time of the last activity")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private LocalDateTime lastActivityAt;
 }
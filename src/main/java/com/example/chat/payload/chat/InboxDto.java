@@ -0,0 +1,25 @@
+package com.example.chat.payload.chat;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InboxDto {
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Chats, the most recently active first")
+    private List<ChatDto> chats;
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Cursor of the next page", example = "MjAyMy0wMS0wMVQxMDowMDo1YTE1ZjRjZQ")
+    private String nextCursor;
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Has more chats")
+    private boolean hasMore;
+}
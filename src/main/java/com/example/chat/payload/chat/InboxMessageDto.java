@@ -0,0 +1,23 @@
+package com.example.chat.payload.chat;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Message delivered to the inbox queue of a user, together with the chat it was sent to
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InboxMessageDto {
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Id of the chat", example = "5a15f4ce-3441-4960-a52c-5784465f41dd")
+    private String chatId;
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Message")
+    private MessageDto message;
+}
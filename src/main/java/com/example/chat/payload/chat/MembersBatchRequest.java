@@ -0,0 +1,24 @@
+package com.example.chat.payload.chat;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MembersBatchRequest {
+
+    @Schema(accessMode = Schema.AccessMode.WRITE_ONLY, title = "Ids of the users")
+    @NotEmpty(message = "There must be at least one user")
+    @Size(max = 500, message = "Max number of users is 500")
+    private List<@Valid UserId> users;
+}
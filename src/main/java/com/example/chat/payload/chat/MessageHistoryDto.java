@@ -0,0 +1,25 @@
+package com.example.chat.payload.chat;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageHistoryDto {
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Messages")
+    private List<MessageDto> messages;
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Cursor of the next page", example = "42")
+    private Long nextCursor;
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Has more messages")
+    private boolean hasMore;
+}
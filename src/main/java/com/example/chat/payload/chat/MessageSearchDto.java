@@ -0,0 +1,28 @@
+package com.example.chat.payload.chat;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Page of the messages found in the chats of the user, together with the chats they were sent to
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageSearchDto {
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Found messages, from newest to oldest")
+    private List<InboxMessageDto> messages;
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Cursor of the next page", example = "42")
+    private Long nextCursor;
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Has more messages")
+    private boolean hasMore;
+}
@@ -0,0 +1,25 @@
+package com.example.chat.payload.chat;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReadReceiptDto {
+    @Schema(accessMode = Schema.AccessMode.READ_WRITE, title = "Id of the last read message", example = "1")
+    @JsonProperty(access = JsonProperty.Access.READ_WRITE)
+    @NotNull(message = "Id of the message is required")
+    private Long messageId;
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Number of unread messages", example = "0")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Integer unreadCount;
+}
@@ -0,0 +1,23 @@
+package com.example.chat.payload.chat;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Notification that a member is typing in the chat. It isn't stored anywhere
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypingDto {
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Id of the user", example = "5a15f4ce-3441-4960-a52c-5784465f41dd")
+    private String userId;
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Nickname of the user", example = "john.doe")
+    private String nickname;
+}
@@ -0,0 +1,20 @@
+package com.example.chat.payload.user;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Schema(name = "Presence")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceDto {
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Id of the user", example = "5a15f4ce-3441-4960-a52c-5784465f41dd")
+    private String userId;
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Has at least one connected session", example = "true")
+    private boolean online;
+}
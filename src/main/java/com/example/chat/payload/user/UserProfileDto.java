@@ -0,0 +1,20 @@
+package com.example.chat.payload.user;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Schema(name = "UserProfile")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserProfileDto {
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Id", example = "5a15f4ce-3441-4960-a52c-5784465f41dd")
+    private String id;
+
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY, title = "Nickname", example = "j.doe")
+    private String nickname;
+}
@@ -0,0 +1,30 @@
+package com.example.chat.persistence;
+
+import com.example.chat.repository.ChatRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Sets the last activity of the chats created before the column was introduced,
+ * so they are not missing from the inbox sorted by activity.
+ * The update runs only while such chats exist, so a migrated database is checked with a cheap query
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class LastActivityBackfill {
+    private final ChatRepository chatRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        if (chatRepository.existsByLastActivityAtIsNull()) {
+            int updated = chatRepository.backfillLastActivity();
+            log.info("Last activity is set for {} chats", updated);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.chat.persistence;
+
+import com.example.chat.model.chat.member.MemberRole;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Inserts members with JDBC batches. Members have assigned ids, so saving them through the repository
+ * selects every member before inserting it
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class MemberBatchWriter {
+    private static final String INSERT_MEMBER_SQL =
+            "insert into members (chat_id, user_id, role, joined_at, unread_count) values (?, ?, ?, ?, 0)";
+    private static final int BATCH_SIZE = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insert members of the chat in the current transaction
+     *
+     * @param chatId   id of the chat
+     * @param userIds  ids of the users
+     * @param role     role of the members
+     * @param joinedAt time the members joined the chat
+     */
+    public void insertMembers(String chatId, Collection<String> userIds, MemberRole role, LocalDateTime joinedAt) {
+        log.debug("Insert {} members of the chat {}", userIds.size(), chatId);
+
+        Timestamp joinedAtTimestamp = Timestamp.valueOf(joinedAt);
+        jdbcTemplate.batchUpdate(INSERT_MEMBER_SQL, userIds, BATCH_SIZE, (ps, userId) -> {
+            ps.setString(1, chatId);
+            ps.setString(2, userId);
+            ps.setString(3, role.name());
+            ps.setTimestamp(4, joinedAtTimestamp);
+        });
+    }
+}
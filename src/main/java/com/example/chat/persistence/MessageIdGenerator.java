@@ -0,0 +1,40 @@
+package com.example.chat.persistence;
+
+import com.example.chat.model.chat.Message;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Assigns ids to the messages before they are written to the database.
+ * Uses the same generator as hibernate, so the pooled optimizer hits the sequence
+ * only once per allocation block and the ids never collide with the messages saved by hibernate
+ */
+@Slf4j
+@Component
+public class MessageIdGenerator {
+    private final SessionFactoryImplementor sessionFactory;
+    private final IdentifierGenerator generator;
+
+    public MessageIdGenerator(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.generator = sessionFactory.getMetamodel().entityPersister(Message.class).getIdentifierGenerator();
+    }
+
+    /**
+     * Get next id of the message
+     *
+     * @return id of the message
+     */
+    public long nextId() {
+        // the session acquires a connection only when the optimizer needs the next value of the sequence
+        try (Session session = sessionFactory.openSession()) {
+            return ((Number) generator.generate((SharedSessionContractImplementor) session, null)).longValue();
+        }
+    }
+}
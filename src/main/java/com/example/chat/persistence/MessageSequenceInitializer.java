@@ -0,0 +1,49 @@
+package com.example.chat.persistence;
+
+import com.example.chat.model.chat.Message;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Moves the sequence of the message ids above the ids of the existing messages.
+ * The sequence is created by the schema update starting at 1, so on a database with messages saved
+ * before it was introduced the first generated ids would collide with the existing ones
+ */
+@Slf4j
+@Component
+public class MessageSequenceInitializer {
+    private static final String SELECT_MAX_ID_SQL = "select max(id) from messages";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Dialect dialect;
+
+    // depends on the entity manager factory, so the schema is updated before the sequence is checked
+    public MessageSequenceInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+    }
+
+    @PostConstruct
+    void initialize() {
+        Long maxId = jdbcTemplate.queryForObject(SELECT_MAX_ID_SQL, Long.class);
+        if (maxId == null) {
+            return;
+        }
+
+        Long next = jdbcTemplate.queryForObject(dialect.getSequenceNextValString(Message.ID_SEQUENCE), Long.class);
+
+        // the pooled optimizer hands out the block of ids below the value of the sequence
+        if (next == null || next - Message.ID_ALLOCATION_SIZE < maxId) {
+            long restartWith = maxId + Message.ID_ALLOCATION_SIZE + 1;
+            log.info("Restart sequence {} with {} above the last message {}", Message.ID_SEQUENCE, restartWith, maxId);
+
+            jdbcTemplate.execute("alter sequence " + Message.ID_SEQUENCE + " restart with " + restartWith);
+        }
+    }
+}
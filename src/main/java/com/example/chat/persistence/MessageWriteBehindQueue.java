@@ -0,0 +1,308 @@
+package com.example.chat.persistence;
+
+import com.example.chat.cache.RecentMessagesCache;
+import com.example.chat.metrics.ChatMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind queue of the messages. Messages are written to the database in batches by a single writer thread,
+ * so they are written in the order they were queued. When the queue is full, producers wait for the free space
+ * for a limited time and then the message is rejected.
+ * Messages that are still queued are written when the application shuts down, but are lost if it crashes.
+ * Messages of the chats that are being deleted are discarded, so they are not inserted after the chat's messages are removed
+ */
+@Slf4j
+@Component
+public class MessageWriteBehindQueue {
+    private static final String INSERT_MESSAGE_SQL =
+            "insert into messages (id, chat_id, user_id, content, sent_at) values (?, ?, ?, ?, ?)";
+    private static final String UPDATE_LAST_MESSAGE_SQL =
+            "update chats set message_id = ?, last_activity_at = ? where id = ? and (message_id is null or message_id < ?)";
+
+    private static final long POLL_TIMEOUT_MS = 100;
+    private static final long SHUTDOWN_TIMEOUT_MS = 30_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ChatMetrics metrics;
+    private final RecentMessagesCache recentMessagesCache;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final long offerTimeoutMs;
+    private final BlockingQueue<PendingMessage> queue;
+    private final Set<String> discardedChats = ConcurrentHashMap.newKeySet();
+    // highest id of the queued messages by chat, removed once the chat's last message is written
+    private final Map<String, Long> lastQueuedIds = new ConcurrentHashMap<>();
+    // held while a batch is written, so discarding a chat can wait for the batch that may contain its messages
+    private final Lock writeLock = new ReentrantLock();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public MessageWriteBehindQueue(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            ChatMetrics metrics,
+            RecentMessagesCache recentMessagesCache,
+            @Value("${chat.messages.write-behind.enabled}") boolean enabled,
+            @Value("${chat.messages.write-behind.queue-capacity}") int queueCapacity,
+            @Value("${chat.messages.write-behind.batch-size}") int batchSize,
+            @Value("${chat.messages.write-behind.offer-timeout-ms}") long offerTimeoutMs
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.metrics = metrics;
+        this.recentMessagesCache = recentMessagesCache;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+
+        log.info("Start message writer");
+
+        running = true;
+        writer = new Thread(this::writeMessages, "message-writer");
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+
+        log.info("Stop message writer. Messages in the queue: {}", queue.size());
+
+        running = false;
+        writer.join(SHUTDOWN_TIMEOUT_MS);
+    }
+
+    /**
+     * Check if write-behind mode is enabled
+     *
+     * @return true, if messages must be queued, false, if they must be saved synchronously
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get number of messages waiting to be written
+     *
+     * @return number of queued messages
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Get the highest id of the messages of the chat that are queued on this instance and not written yet
+     *
+     * @param chatId id of the chat
+     * @return id of the message, or null, if there are no queued messages of the chat
+     */
+    public Long getLastQueuedId(String chatId) {
+        return lastQueuedIds.get(chatId);
+    }
+
+    /**
+     * Queue message to be written to the database
+     *
+     * @param message message to write
+     */
+    public void submit(PendingMessage message) {
+        if (!running) {
+            log.error("Message writer is not running");
+            throw new IllegalStateException("Message writer is not running");
+        }
+
+        try {
+            // recorded before the message is queued, so the writer can't remove it before it is added
+            lastQueuedIds.merge(message.getChatId(), message.getId(), Math::max);
+
+            if (!queue.offer(message, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                forgetQueued(List.of(message));
+                log.error("Message queue is full. Message to the chat {} is rejected", message.getChatId());
+                throw new IllegalStateException("Too many messages, try again later");
+            }
+        } catch (InterruptedException e) {
+            forgetQueued(List.of(message));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing the message");
+        }
+    }
+
+    /**
+     * Discard queued messages of the chat and skip the ones queued later until the current transaction completes.
+     * Waits for the batch that is being written, so once it returns no message of the chat is inserted.
+     * Must be called before the chat is locked by the deleting transaction, as the batch updates the chat
+     *
+     * @param chatId id of the chat that is being deleted
+     */
+    public void discardChat(String chatId) {
+        discardedChats.add(chatId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    discardedChats.remove(chatId);
+                }
+            });
+        }
+
+        int size = queue.size();
+        queue.removeIf(message -> chatId.equals(message.getChatId()));
+        int discarded = size - queue.size();
+
+        // the batch that is being written was taken from the queue before, so wait for it to be committed
+        writeLock.lock();
+        writeLock.unlock();
+        lastQueuedIds.remove(chatId);
+
+        log.debug("Discarded {} queued messages of the chat {}", discarded, chatId);
+    }
+
+    private void writeMessages() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage message = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (message == null) {
+                    continue;
+                }
+
+                batch.add(message);
+                queue.drainTo(batch, batchSize - 1);
+
+                // messages of the discarded chats are not written either
+                Set<Long> writtenIds = new HashSet<>();
+                writeLock.lock();
+                try {
+                    List<PendingMessage> messages = withoutDiscarded(batch);
+                    if (!messages.isEmpty()) {
+                        writtenIds.addAll(write(messages));
+                    }
+                } finally {
+                    writeLock.unlock();
+                }
+
+                // the messages are committed or dropped, so the chats' last messages are read from the database again
+                forgetQueued(batch);
+                for (PendingMessage pending : batch) {
+                    if (writtenIds.contains(pending.getId())) {
+                        recentMessagesCache.written(pending.getChatId(), pending.getId());
+                    } else {
+                        recentMessagesCache.dropped(pending.getChatId(), pending.getId());
+                    }
+                }
+            } catch (InterruptedException e) {
+                log.error("Message writer is interrupted. Messages in the queue: {}", queue.size());
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+
+        log.info("Message writer stopped");
+    }
+
+    // returns ids of the written messages, the ones that failed to be written are dropped
+    private Set<Long> write(List<PendingMessage> batch) {
+        log.debug("Write batch of {} messages", batch.size());
+
+        Set<Long> writtenIds = new HashSet<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeBatch(batch));
+            batch.forEach(message -> writtenIds.add(message.getId()));
+        } catch (Exception e) {
+            log.error("Failed to write batch of {} messages. Write them one by one", batch.size(), e);
+
+            // write messages one by one, so only the ones that fail are dropped and the order is kept
+            for (PendingMessage message : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> writeBatch(List.of(message)));
+                    writtenIds.add(message.getId());
+                } catch (Exception ex) {
+                    // the message was already broadcast, so the drop must be visible in the metrics
+                    log.error("Failed to write message {} to the chat {}. Message is dropped", message.getId(), message.getChatId(), ex);
+                    metrics.recordDroppedMessages(1);
+                }
+            }
+        }
+
+        return writtenIds;
+    }
+
+    private List<PendingMessage> withoutDiscarded(List<PendingMessage> batch) {
+        if (discardedChats.isEmpty()) {
+            return batch;
+        }
+
+        return batch.stream()
+                .filter(message -> !discardedChats.contains(message.getChatId()))
+                .collect(Collectors.toList());
+    }
+
+    private void forgetQueued(List<PendingMessage> batch) {
+        for (PendingMessage message : batch) {
+            lastQueuedIds.computeIfPresent(message.getChatId(), (chatId, lastId) -> lastId <= message.getId() ? null : lastId);
+        }
+    }
+
+    private void writeBatch(List<PendingMessage> batch) {
+        jdbcTemplate.batchUpdate(INSERT_MESSAGE_SQL, batch, batch.size(), (ps, message) -> {
+            ps.setLong(1, message.getId());
+            ps.setString(2, message.getChatId());
+            ps.setString(3, message.getUserId());
+            ps.setString(4, message.getContent());
+            ps.setTimestamp(5, Timestamp.valueOf(message.getSentAt()));
+        });
+
+        // update the last message and activity of every chat in the batch once
+        Map<String, PendingMessage> lastMessages = new LinkedHashMap<>();
+        for (PendingMessage message : batch) {
+            lastMessages.merge(message.getChatId(), message, (a, b) -> a.getId() > b.getId() ? a : b);
+        }
+
+        jdbcTemplate.batchUpdate(UPDATE_LAST_MESSAGE_SQL, lastMessages.values(), lastMessages.size(), (ps, lastMessage) -> {
+            ps.setLong(1, lastMessage.getId());
+            ps.setTimestamp(2, Timestamp.valueOf(lastMessage.getSentAt()));
+            ps.setString(3, lastMessage.getChatId());
+            ps.setLong(4, lastMessage.getId());
+        });
+    }
+}
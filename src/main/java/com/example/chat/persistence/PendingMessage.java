@@ -0,0 +1,17 @@
+package com.example.chat.persistence;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Message that was accepted, but is not written to the database yet
+ */
+@Value
+public class PendingMessage {
+    long id;
+    String chatId;
+    String userId;
+    String content;
+    LocalDateTime sentAt;
+}
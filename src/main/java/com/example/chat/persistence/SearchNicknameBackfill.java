@@ -0,0 +1,29 @@
+package com.example.chat.persistence;
+
+import com.example.chat.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Sets the normalized nickname of the users created before the column was introduced,
+ * so they are not missing from the search by nickname
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class SearchNicknameBackfill {
+    private final UserRepository userRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        int updated = userRepository.backfillSearchNickname();
+        if (updated > 0) {
+            log.info("Search nickname is set for {} users", updated);
+        }
+    }
+}
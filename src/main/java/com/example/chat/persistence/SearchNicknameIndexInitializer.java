@@ -0,0 +1,46 @@
+package com.example.chat.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Creates the index of the normalized nickname that serves the search by prefix.
+ * On PostgreSQL a plain btree can serve LIKE 'x%' only with the C collation, so the index is created
+ * with the text_pattern_ops operator class, which the schema update can't declare
+ */
+@Slf4j
+@Component
+public class SearchNicknameIndexInitializer {
+    private static final String INDEX_NAME = "idx_users_search_nickname";
+    private static final String PATTERN_INDEX_NAME = "idx_users_search_nickname_pattern";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Dialect dialect;
+
+    // depends on the entity manager factory, so the schema is updated before the index is created
+    public SearchNicknameIndexInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+    }
+
+    @PostConstruct
+    void initialize() {
+        if (dialect instanceof PostgreSQL81Dialect) {
+            log.debug("Create index {} with text_pattern_ops", PATTERN_INDEX_NAME);
+
+            jdbcTemplate.execute("create index if not exists " + PATTERN_INDEX_NAME +
+                    " on users (search_nickname text_pattern_ops)");
+            // the index created by earlier versions can't serve the prefix match
+            jdbcTemplate.execute("drop index if exists " + INDEX_NAME);
+        } else {
+            jdbcTemplate.execute("create index if not exists " + INDEX_NAME + " on users (search_nickname)");
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.chat.persistence;
+
+import com.example.chat.cache.MembershipCache;
+import com.example.chat.model.chat.member.MemberId;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Unread counters and read pointers of the members.
+ * New messages and read receipts are recorded in memory per member and written to the members table
+ * by a single flusher thread in batches. Both are written as deltas, so the changes of several instances add up:
+ * messages increment the counters of the other members, read receipts decrement them by the messages of the other members
+ * between the previous and the new read pointer, counted in the database when the receipt is written.
+ * A message that is still in the write-behind queue when a receipt that covers it is written is not subtracted,
+ * so the counter may stay one higher until the member reads the chat up to a later message.
+ * Values read from the database are adjusted with the changes that are not written yet.
+ * Changes that failed to be written are merged with the ones recorded since and written by the next flush
+ */
+@Slf4j
+@Component
+public class UnreadCounters {
+    private static final String INCREMENT_UNREAD_SQL =
+            "update members set unread_count = coalesce(unread_count, 0) + ? where chat_id = ? and user_id = ?";
+    // messages sent before the member joined were never counted, so they are not subtracted on the first receipt
+    private static final String MARK_READ_SQL =
+            "update members set unread_count = greatest(coalesce(unread_count, 0) - (select count(*) from messages m " +
+                    "where m.chat_id = members.chat_id and m.user_id <> members.user_id " +
+                    "and m.id > coalesce(members.last_read_message_id, 0) and m.id <= ? " +
+                    "and (members.last_read_message_id is not null or m.sent_at >= coalesce(members.joined_at, m.sent_at))), 0), " +
+                    "last_read_message_id = ? where chat_id = ? and user_id = ? " +
+                    "and (last_read_message_id is null or last_read_message_id < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MembershipCache membershipCache;
+    private final long flushIntervalMs;
+
+    // changes are recorded under the read lock, the flusher takes the write lock only to swap the map
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Map<MemberId, PendingUnread> pending = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService flusher;
+
+    public UnreadCounters(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            MembershipCache membershipCache,
+            @Value("${chat.unread.flush-interval-ms}") long flushIntervalMs
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.membershipCache = membershipCache;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    @PostConstruct
+    void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "unread-counters-flusher"));
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(flushIntervalMs * 2, TimeUnit.MILLISECONDS);
+
+        // write the changes recorded since the last flush
+        flush();
+    }
+
+    /**
+     * Record a new message of the chat. The counters of the other members are incremented
+     * and the sender has read the chat up to the message
+     *
+     * @param chatId    id of the chat
+     * @param senderId  id of the sender
+     * @param messageId id of the message
+     */
+    public void messageSent(String chatId, String senderId, long messageId) {
+        lock.readLock().lock();
+        try {
+            for (String userId : membershipCache.getMembers(chatId)) {
+                PendingUnread unread = pending.computeIfAbsent(new MemberId(userId, chatId), id -> new PendingUnread());
+                if (userId.equals(senderId)) {
+                    unread.read(messageId, 0);
+                } else {
+                    unread.increment();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Record that the member has read the chat up to the message
+     *
+     * @param chatId      id of the chat
+     * @param userId      id of the member
+     * @param messageId   id of the last read message
+     * @param unreadCount number of messages after the last read one
+     */
+    public void markRead(String chatId, String userId, long messageId, int unreadCount) {
+        lock.readLock().lock();
+        try {
+            pending.computeIfAbsent(new MemberId(userId, chatId), id -> new PendingUnread()).read(messageId, unreadCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get number of unread messages of the member
+     *
+     * @param chatId      id of the chat
+     * @param userId      id of the member
+     * @param persisted   number of unread messages stored in the database
+     * @return number of unread messages including the changes that are not written yet
+     */
+    public int getUnreadCount(String chatId, String userId, int persisted) {
+        PendingUnread unread = pending.get(new MemberId(userId, chatId));
+        return unread == null ? persisted : unread.getUnreadCount(persisted);
+    }
+
+    /**
+     * Get id of the last message read by the member
+     *
+     * @param chatId    id of the chat
+     * @param userId    id of the member
+     * @param persisted id of the last read message stored in the database
+     * @return id of the last read message including the changes that are not written yet
+     */
+    public Long getLastReadMessageId(String chatId, String userId, Long persisted) {
+        PendingUnread unread = pending.get(new MemberId(userId, chatId));
+        return unread == null ? persisted : unread.getLastReadMessageId(persisted);
+    }
+
+    void flush() {
+        Map<MemberId, PendingUnread> changes;
+
+        lock.writeLock().lock();
+        try {
+            changes = pending;
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        log.debug("Flush unread counters of {} members", changes.size());
+
+        List<Map.Entry<MemberId, PendingUnread>> increments = new ArrayList<>();
+        List<Map.Entry<MemberId, PendingUnread>> reads = new ArrayList<>();
+        for (Map.Entry<MemberId, PendingUnread> change : changes.entrySet()) {
+            if (change.getValue().increment > 0) {
+                increments.add(change);
+            }
+            if (change.getValue().lastReadMessageId != null) {
+                reads.add(change);
+            }
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!increments.isEmpty()) {
+                    jdbcTemplate.batchUpdate(INCREMENT_UNREAD_SQL, increments, increments.size(), (ps, change) -> {
+                        ps.setInt(1, change.getValue().increment);
+                        ps.setString(2, change.getKey().getChatId());
+                        ps.setString(3, change.getKey().getUserId());
+                    });
+                }
+
+                if (!reads.isEmpty()) {
+                    jdbcTemplate.batchUpdate(MARK_READ_SQL, reads, reads.size(), (ps, change) -> {
+                        PendingUnread unread = change.getValue();
+                        ps.setLong(1, unread.lastReadMessageId);
+                        ps.setLong(2, unread.lastReadMessageId);
+                        ps.setString(3, change.getKey().getChatId());
+                        ps.setString(4, change.getKey().getUserId());
+                        ps.setLong(5, unread.lastReadMessageId);
+                    });
+                }
+            });
+        } catch (Exception e) {
+            log.error("Failed to flush unread counters of {} members. Changes are retried with the next flush", changes.size(), e);
+            requeue(changes);
+        }
+    }
+
+    private void requeue(Map<MemberId, PendingUnread> changes) {
+        lock.readLock().lock();
+        try {
+            changes.forEach((id, failed) -> pending.computeIfAbsent(id, key -> new PendingUnread()).addEarlier(failed));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // changes of a single member since the last flush, the flusher reads them only after the map is swapped
+    private static class PendingUnread {
+        // all increments are written, the receipt subtracts the messages it covers in the database
+        private int increment;
+        // increments after the last receipt, which adjust the unread count known when the receipt was recorded
+        private int incrementAfterRead;
+        private Long lastReadMessageId;
+        private int unreadAfterRead;
+
+        synchronized void increment() {
+            increment++;
+            incrementAfterRead++;
+        }
+
+        synchronized void read(long messageId, int unreadCount) {
+            if (lastReadMessageId != null && lastReadMessageId >= messageId) {
+                return;
+            }
+
+            lastReadMessageId = messageId;
+            unreadAfterRead = unreadCount;
+            incrementAfterRead = 0;
+        }
+
+        // merge the changes recorded before these ones, as if these were recorded after them
+        synchronized void addEarlier(PendingUnread earlier) {
+            if (earlier.lastReadMessageId != null && (lastReadMessageId == null || lastReadMessageId < earlier.lastReadMessageId)) {
+                // the receipts recorded since are older, so they are ignored and all the later messages are unread
+                lastReadMessageId = earlier.lastReadMessageId;
+                unreadAfterRead = earlier.unreadAfterRead;
+                incrementAfterRead = earlier.incrementAfterRead + increment;
+            }
+
+            increment += earlier.increment;
+        }
+
+        synchronized int getUnreadCount(int persisted) {
+            return lastReadMessageId != null ? unreadAfterRead + incrementAfterRead : persisted + increment;
+        }
+
+        synchronized Long getLastReadMessageId(Long persisted) {
+            if (lastReadMessageId == null) {
+                return persisted;
+            }
+
+            return persisted == null ? lastReadMessageId : Math.max(persisted, lastReadMessageId);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.chat.persistence;
+
+import com.example.chat.cache.UserProfileCache;
+import com.example.chat.model.user.User;
+import com.example.chat.service.JwtService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Evicts the cached state of the user whenever the user entity is updated or removed,
+ * so every code path that changes a user invalidates the caches.
+ * If there is an active transaction, then the user is evicted once again after its completion,
+ * so the state that was loaded concurrently before the commit doesn't stay in the caches
+ */
+@Slf4j
+@Component
+public class UserChangeListener {
+    // the listener is created by hibernate while the services and caches may still be in creation
+    private final ObjectProvider<JwtService> jwtService;
+    private final ObjectProvider<UserProfileCache> userProfileCache;
+
+    public UserChangeListener(ObjectProvider<JwtService> jwtService, ObjectProvider<UserProfileCache> userProfileCache) {
+        this.jwtService = jwtService;
+        this.userProfileCache = userProfileCache;
+    }
+
+    @PostUpdate
+    @PostRemove
+    void userChanged(User user) {
+        log.debug("User {} changed", user.getId());
+
+        String userId = user.getId();
+        evict(userId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(userId);
+                }
+            });
+        }
+    }
+
+    private void evict(String userId) {
+        jwtService.getObject().evictUser(userId);
+        userProfileCache.getObject().evict(userId);
+    }
+}
@@ -1,15 +1,72 @@
 package com.example.chat.repository;
 
 import com.example.chat.model.chat.Chat;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface ChatRepository extends JpaRepository<Chat, String> {
 
-    @Query("select c from Chat c join Member m on c.id = m.chat.id where m.user.id = :userId")
-    List<Chat> findByUserId(String userId);
+    /**
+     * Get chats of the user together with their last messages and authors of the last messages
+     */
+    @Query("select c from Chat c left join fetch c.lastMessage lm left join fetch lm.user " +
+            "where c.id in (select m.id.chatId from Member m where m.id.userId = :userId)")
+    List<Chat> findInboxByUserId(String userId);
+
+    /**
+     * Get the first page of the inbox of the user, the most recently active chats first.
+     * Memberships of the user are joined with the chats, which are sorted by the chats (last_activity_at, id) index
+     */
+    @Query("select c from Member m join m.chat c left join fetch c.lastMessage lm left join fetch lm.user " +
+            "where m.id.userId = :userId " +
+            "order by c.lastActivityAt desc, c.id desc")
+    Slice<Chat> findInboxSliceByUserId(String userId, Pageable pageable);
+
+    /**
+     * Get the page of the inbox of the user that follows the chat with the given last activity and id
+     */
+    @Query("select c from Member m join m.chat c left join fetch c.lastMessage lm left join fetch lm.user " +
+            "where m.id.userId = :userId " +
+            "and (c.lastActivityAt < :lastActivityAt or (c.lastActivityAt = :lastActivityAt and c.id < :chatId)) " +
+            "order by c.lastActivityAt desc, c.id desc")
+    Slice<Chat> findInboxSliceByUserIdAfter(String userId, LocalDateTime lastActivityAt, String chatId, Pageable pageable);
+
+    /**
+     * Unset the last message of the chat, so its messages can be deleted
+     */
+    @Modifying
+    @Query("update Chat c set c.lastMessage = null where c.id = :chatId")
+    int clearLastMessage(String chatId);
+
+    /**
+     * Delete the chat without loading it and its associations.
+     * Messages and members of the chat must be deleted before
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Chat c where c.id = :chatId")
+    int deleteChatById(String chatId);
+
+    /**
+     * Check if there are chats created before the last activity column was introduced
+     */
+    boolean existsByLastActivityAtIsNull();
+
+    /**
+     * Set last activity of the chats created before the column was introduced
+     *
+     * @return number of updated chats
+     */
+    @Modifying
+    @Query("update Chat c set c.lastActivityAt = coalesce(" +
+            "(select max(m.sentAt) from Message m where m.chat = c), c.createdAt) " +
+            "where c.lastActivityAt is null")
+    int backfillLastActivity();
 }
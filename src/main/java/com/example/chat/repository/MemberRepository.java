@@ -2,13 +2,58 @@ package com.example.chat.repository;
 
 import com.example.chat.model.chat.member.Member;
 import com.example.chat.model.chat.member.MemberId;
+import com.example.chat.model.chat.member.MemberRole;
+import com.example.chat.repository.projection.ChatMemberCount;
+import com.example.chat.repository.projection.MemberChat;
+import com.example.chat.repository.projection.MemberUnreadCount;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface MemberRepository extends JpaRepository<Member, MemberId> {
 
     List<Member> findByChat_Id(String chatId);
+
+    @Query("select m.id.userId from Member m where m.id.chatId = :chatId")
+    List<String> findUserIdsByChatId(String chatId);
+
+    @Query("select m.id.chatId from Member m where m.id.userId = :userId")
+    List<String> findChatIdsByUserId(String userId);
+
+    @Query("select m.id.userId from Member m where m.id.chatId = :chatId and m.id.userId in :userIds")
+    List<String> findUserIdsByChatIdAndUserIdIn(String chatId, Collection<String> userIds);
+
+    @Query("select m.role from Member m where m.id.chatId = :chatId and m.id.userId in :userIds")
+    List<MemberRole> findRolesByChatIdAndUserIdIn(String chatId, Collection<String> userIds);
+
+    @Modifying
+    @Query("delete from Member m where m.id.chatId = :chatId and m.id.userId in :userIds")
+    int deleteByChatIdAndUserIdIn(String chatId, Collection<String> userIds);
+
+    @Query("select m.id.chatId as chatId, m.unreadCount as unreadCount from Member m " +
+            "where m.id.userId = :userId and m.id.chatId in :chatIds")
+    List<MemberUnreadCount> findUnreadCountsByUserIdAndChatIdIn(String userId, Collection<String> chatIds);
+
+    @Query("select distinct other.id.userId from Member m, Member other " +
+            "where m.id.userId = :userId and other.id.chatId = m.id.chatId and other.id.userId in :userIds")
+    List<String> findCoMemberIdsByUserIdAndUserIdIn(String userId, Collection<String> userIds);
+
+    @Query("select m.id.userId as userId, m.id.chatId as chatId from Member m where m.id.userId in :userIds")
+    List<MemberChat> findChatsByUserIdIn(Collection<String> userIds);
+
+    @Modifying
+    @Query("delete from Member m where m.id.chatId = :chatId")
+    int deleteByChatId(String chatId);
+
+    @Query("select m from Member m join fetch m.user where m.id.chatId in :chatIds")
+    List<Member> findWithUsersByChatIdIn(Collection<String> chatIds);
+
+    @Query("select m.id.chatId as chatId, count(m) as memberCount from Member m " +
+            "where m.id.chatId in :chatIds group by m.id.chatId")
+    List<ChatMemberCount> countByChatIdIn(Collection<String> chatIds);
 }
@@ -3,13 +3,37 @@ package com.example.chat.repository;
 import com.example.chat.model.chat.Message;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
 
     Page<Message> findAllByChatId(String chatId, Pageable pageable);
 
     Page<Message> findAllByChatIdAndIdIsBefore(String chatId, long lastMessageId, Pageable pageable);
+
+    Slice<Message> findSliceByChatId(String chatId, Pageable pageable);
+
+    Slice<Message> findSliceByChatIdAndIdIsBefore(String chatId, long beforeId, Pageable pageable);
+
+    Slice<Message> findSliceByChatIdAndIdIsAfter(String chatId, long afterId, Pageable pageable);
+
+    long countByChatId(String chatId);
+
+    // reads only the unread part of the (chat_id, id) index
+    long countByChatIdAndIdGreaterThan(String chatId, long messageId);
+
+    @Query("select m from Message m join fetch m.user join fetch m.chat where m.id in :ids")
+    List<Message> findWithUsersByIdIn(Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from Message m where m.chat.id = :chatId")
+    int deleteByChatId(String chatId);
 }
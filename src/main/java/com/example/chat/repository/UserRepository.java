@@ -1,9 +1,15 @@
 package com.example.chat.repository;
 
 import com.example.chat.model.user.User;
+import com.example.chat.repository.projection.UserProfile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,5 +19,24 @@ public interface UserRepository extends JpaRepository<User, String> {
 
     Optional<User> findByNickname(String nickname);
 
-    List<User> findByNicknameContainingIgnoreCase(String nickname);
+    /**
+     * Get public profiles of the users without loading the whole entities
+     */
+    @Query("select u.id as id, u.nickname as nickname from User u where u.id in :userIds")
+    List<UserProfile> findProfilesByIdIn(Collection<String> userIds);
+
+    /**
+     * Get users with the normalized nickname that starts with the given prefix, uses the index of the column
+     * created by the {@link com.example.chat.persistence.SearchNicknameIndexInitializer}
+     */
+    Slice<User> findBySearchNicknameStartingWith(String prefix, Pageable pageable);
+
+    /**
+     * Set the normalized nickname of the users created before the column was introduced
+     *
+     * @return number of updated users
+     */
+    @Modifying
+    @Query("update User u set u.searchNickname = lower(trim(u.nickname)) where u.searchNickname is null")
+    int backfillSearchNickname();
 }
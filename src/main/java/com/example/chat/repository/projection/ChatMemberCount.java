@@ -0,0 +1,10 @@
+package com.example.chat.repository.projection;
+
+/**
+ * Number of members of a chat
+ */
+public interface ChatMemberCount {
+    String getChatId();
+
+    long getMemberCount();
+}
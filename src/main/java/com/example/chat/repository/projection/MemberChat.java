@@ -0,0 +1,10 @@
+package com.example.chat.repository.projection;
+
+/**
+ * Chat the user is a member of
+ */
+public interface MemberChat {
+    String getUserId();
+
+    String getChatId();
+}
@@ -0,0 +1,10 @@
+package com.example.chat.repository.projection;
+
+/**
+ * Number of unread messages of a member in a chat
+ */
+public interface MemberUnreadCount {
+    String getChatId();
+
+    Integer getUnreadCount();
+}
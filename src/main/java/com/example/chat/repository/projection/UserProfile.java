@@ -0,0 +1,10 @@
+package com.example.chat.repository.projection;
+
+/**
+ * Public profile of a user
+ */
+public interface UserProfile {
+    String getId();
+
+    String getNickname();
+}
@@ -0,0 +1,13 @@
+package com.example.chat.search;
+
+import lombok.Value;
+
+/**
+ * Message waiting to be added to the search index
+ */
+@Value
+public class IndexedMessage {
+    long id;
+    String chatId;
+    String content;
+}
@@ -0,0 +1,503 @@
+package com.example.chat.search;
+
+import com.example.chat.messaging.ClusterEvents;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Full-text index of the message contents, stored on the local disk.
+ * Saved messages are queued and added to the index by a single indexer thread in batches. They are searchable
+ * right after the batch is added, but the index is committed to the disk at most once per commit interval.
+ * When the queue is full, the message is not indexed, so indexing never slows down sending.
+ * On startup the messages with ids above the highest indexed one are indexed from the messages table in chunks.
+ * <p>
+ * Every instance keeps its own index, so the messages saved by the other instances and the messages dropped
+ * from the queue are read from the table at the poll interval, starting after the highest id seen by the last poll.
+ * Ids of the instances interleave, as each of them allocates its own block of ids, so a message may be written
+ * with an id below the ones already polled. The poll reads again the ids within the overlap below the highest one
+ * and indexes only the messages that are not indexed yet. Messages that fall behind even the overlap are recovered
+ * by the full rebuild, which runs on startup, if enabled, and then periodically at the rebuild interval.
+ * <p>
+ * Messages of a deleted chat are removed from the index of every instance through the cluster events.
+ * The full rebuild also removes the messages of the chats that no longer exist, e.g. if an instance was down
+ * when the chat was deleted
+ */
+@Slf4j
+@Component
+public class MessageIndex {
+    private static final String ID_FIELD = "id";
+    private static final String ID_RANGE_FIELD = "id_range";
+    private static final String ID_SORT_FIELD = "id_sort";
+    private static final String CHAT_ID_FIELD = "chat_id";
+    private static final String CONTENT_FIELD = "content";
+
+    private static final String SELECT_MESSAGES_SQL =
+            "select id, chat_id, content from messages where id > ? order by id limit ?";
+    private static final String SELECT_CHAT_IDS_SQL = "select id from chats where id in (%s)";
+
+    private static final int REBUILD_CHUNK_SIZE = 1000;
+    private static final int CHAT_IDS_CHUNK_SIZE = 500;
+    private static final long POLL_TIMEOUT_MS = 100;
+    private static final long SHUTDOWN_TIMEOUT_MS = 30_000;
+
+    private static final Sort NEWEST_FIRST = new Sort(new SortField(ID_SORT_FIELD, SortField.Type.LONG, true));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ClusterEvents clusterEvents;
+    private final boolean enabled;
+    private final String indexDir;
+    private final int batchSize;
+    private final long commitIntervalMs;
+    private final boolean rebuildOnStartup;
+    private final long rebuildIntervalMin;
+    private final long pollIntervalMs;
+    private final long pollOverlap;
+    private final BlockingQueue<IndexedMessage> queue;
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+
+    private volatile boolean running;
+    private Thread indexer;
+    private ScheduledExecutorService rebuilder;
+
+    // highest id read from the table, the next poll starts the overlap below it
+    private volatile long polledId;
+
+    public MessageIndex(
+            JdbcTemplate jdbcTemplate,
+            ClusterEvents clusterEvents,
+            @Value("${chat.search.enabled}") boolean enabled,
+            @Value("${chat.search.index-dir}") String indexDir,
+            @Value("${chat.search.queue-capacity}") int queueCapacity,
+            @Value("${chat.search.batch-size}") int batchSize,
+            @Value("${chat.search.commit-interval-ms}") long commitIntervalMs,
+            @Value("${chat.search.rebuild-on-startup}") boolean rebuildOnStartup,
+            @Value("${chat.search.rebuild-interval-min}") long rebuildIntervalMin,
+            @Value("${chat.search.poll-interval-ms}") long pollIntervalMs,
+            @Value("${chat.search.poll-overlap}") long pollOverlap
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.clusterEvents = clusterEvents;
+        this.enabled = enabled;
+        this.indexDir = indexDir;
+        this.batchSize = batchSize;
+        this.commitIntervalMs = commitIntervalMs;
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.rebuildIntervalMin = rebuildIntervalMin;
+        this.pollIntervalMs = pollIntervalMs;
+        this.pollOverlap = pollOverlap;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        clusterEvents.subscribe(ClusterEvents.CHAT_DELETIONS, this::deleteChatDocuments);
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        log.info("Open message index in {}", indexDir);
+
+        directory = FSDirectory.open(Paths.get(indexDir));
+        IndexWriterConfig config = new IndexWriterConfig(analyzer).setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        writer = new IndexWriter(directory, config);
+        searcherManager = new SearcherManager(writer, null);
+
+        running = true;
+        indexer = new Thread(this::indexMessages, "message-indexer");
+        indexer.start();
+
+        // the startup rebuild, the polls and the full rebuilds run one after another on the same thread
+        rebuilder = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "message-index-rebuild"));
+        if (rebuildOnStartup) {
+            rebuilder.execute(this::rebuildAll);
+        } else {
+            rebuilder.execute(() -> polledId = rebuild(getLastIndexedId(), false));
+        }
+
+        if (pollIntervalMs > 0) {
+            rebuilder.scheduleWithFixedDelay(this::poll, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+        }
+
+        if (rebuildIntervalMin > 0) {
+            rebuilder.scheduleWithFixedDelay(this::rebuildAll, rebuildIntervalMin, rebuildIntervalMin, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException, IOException {
+        if (indexer == null) {
+            return;
+        }
+
+        log.info("Stop message indexer. Messages in the queue: {}", queue.size());
+
+        // the threads are not interrupted, as an interrupted write closes the files of the index
+        running = false;
+        rebuilder.shutdown();
+        rebuilder.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        indexer.join(SHUTDOWN_TIMEOUT_MS);
+
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    /**
+     * Check if the search is enabled
+     *
+     * @return true, if the messages are indexed, false, if not
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue message to be indexed. The message is dropped if the queue is full
+     *
+     * @param message message to index
+     */
+    public void submit(IndexedMessage message) {
+        if (!running) {
+            return;
+        }
+
+        if (!queue.offer(message)) {
+            log.warn("Index queue is full. Message {} is indexed later from the table", message.getId());
+        }
+    }
+
+    /**
+     * Search the messages of the chats
+     *
+     * @param chatIds  ids of the chats to search in
+     * @param text     text to search for
+     * @param beforeId id of the message to search before, or null to search from the latest one
+     * @param limit    max number of messages to find
+     * @return ids of the found messages, sorted from newest to oldest
+     */
+    public List<Long> search(Collection<String> chatIds, String text, Long beforeId, int limit) {
+        if (!running) {
+            log.error("Message search is disabled");
+            throw new IllegalStateException("Message search is disabled");
+        }
+
+        if (chatIds.isEmpty()) {
+            return List.of();
+        }
+
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, CONTENT_FIELD);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+
+        List<BytesRef> chatTerms = chatIds.stream().map(BytesRef::new).collect(Collectors.toList());
+        BooleanQuery.Builder query = new BooleanQuery.Builder()
+                .add(parser.parse(text), BooleanClause.Occur.MUST)
+                .add(new TermInSetQuery(CHAT_ID_FIELD, chatTerms), BooleanClause.Occur.FILTER);
+        if (beforeId != null) {
+            query.add(LongPoint.newRangeQuery(ID_RANGE_FIELD, Long.MIN_VALUE, beforeId - 1), BooleanClause.Occur.FILTER);
+        }
+
+        return findIds(query.build(), limit);
+    }
+
+    /**
+     * Remove messages of the chat from the index of every instance.
+     * If there is an active transaction, then the messages are removed once again after its completion,
+     * so the messages indexed by a poll that ran before the commit don't stay in the index.
+     * The other instances are notified after the completion, when the messages are deleted from the table
+     *
+     * @param chatId id of the chat
+     */
+    public void deleteChat(String chatId) {
+        deleteChatDocuments(chatId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    deleteChatDocuments(chatId);
+                    clusterEvents.publish(ClusterEvents.CHAT_DELETIONS, chatId);
+                }
+            });
+        } else {
+            clusterEvents.publish(ClusterEvents.CHAT_DELETIONS, chatId);
+        }
+    }
+
+    private void deleteChatDocuments(String chatId) {
+        if (!running) {
+            return;
+        }
+
+        try {
+            writer.deleteDocuments(new Term(CHAT_ID_FIELD, chatId));
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            log.error("Failed to delete messages of the chat {} from the index", chatId, e);
+        }
+    }
+
+    /**
+     * Index the messages that were saved since the last poll, including the ones saved by the other instances
+     */
+    void poll() {
+        long afterId = Math.max(0, polledId - pollOverlap);
+        polledId = Math.max(polledId, rebuild(afterId, true));
+    }
+
+    /**
+     * Index all messages again and remove the messages of the chats that no longer exist
+     */
+    void rebuildAll() {
+        polledId = Math.max(polledId, rebuild(0, false));
+
+        try {
+            deleteMissingChats();
+        } catch (Exception e) {
+            log.error("Failed to remove messages of the deleted chats from the index", e);
+        }
+    }
+
+    // messages are replaced by id, so indexing them again doesn't duplicate the ones that are already indexed
+    private long rebuild(long afterId, boolean onlyMissing) {
+        if (!onlyMissing) {
+            log.info("Index messages after {}", afterId);
+        }
+
+        long lastId = afterId;
+        int indexed = 0;
+        try {
+            // the table is read in chunks by id, so neither the database nor the indexer holds all messages at once
+            List<IndexedMessage> chunk;
+            do {
+                chunk = jdbcTemplate.query(SELECT_MESSAGES_SQL,
+                        (rs, rowNum) -> new IndexedMessage(rs.getLong("id"), rs.getString("chat_id"), rs.getString("content")),
+                        lastId, REBUILD_CHUNK_SIZE);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+
+                List<IndexedMessage> messages = onlyMissing ? withoutIndexed(chunk) : chunk;
+                if (!messages.isEmpty()) {
+                    index(messages);
+                    writer.commit();
+                }
+
+                lastId = chunk.get(chunk.size() - 1).getId();
+                indexed += messages.size();
+            } while (chunk.size() == REBUILD_CHUNK_SIZE && running);
+
+            if (!onlyMissing || indexed > 0) {
+                log.info("Indexed {} messages. Last message {}", indexed, lastId);
+            }
+        } catch (Exception e) {
+            log.error("Failed to index messages after {}", lastId, e);
+        }
+
+        return lastId;
+    }
+
+    private List<IndexedMessage> withoutIndexed(List<IndexedMessage> chunk) {
+        long fromId = chunk.get(0).getId();
+        long toId = chunk.get(chunk.size() - 1).getId();
+        Set<Long> indexed = new HashSet<>(findIds(LongPoint.newRangeQuery(ID_RANGE_FIELD, fromId, toId), chunk.size()));
+
+        return chunk.stream().filter(message -> !indexed.contains(message.getId())).collect(Collectors.toList());
+    }
+
+    private void deleteMissingChats() throws IOException {
+        int deleted = 0;
+
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            Terms terms = MultiTerms.getTerms(searcher.getIndexReader(), CHAT_ID_FIELD);
+            if (terms == null) {
+                return;
+            }
+
+            // chats of the index are checked against the table in chunks, in the order of their ids
+            TermsEnum chatIds = terms.iterator();
+            List<String> chunk = new ArrayList<>(CHAT_IDS_CHUNK_SIZE);
+            for (BytesRef chatId = chatIds.next(); chatId != null; chatId = chatIds.next()) {
+                chunk.add(chatId.utf8ToString());
+                if (chunk.size() == CHAT_IDS_CHUNK_SIZE) {
+                    deleted += deleteMissingChats(chunk);
+                    chunk.clear();
+                }
+            }
+            deleted += deleteMissingChats(chunk);
+        } finally {
+            searcherManager.release(searcher);
+        }
+
+        if (deleted > 0) {
+            writer.commit();
+            searcherManager.maybeRefresh();
+            log.info("Removed messages of {} deleted chats from the index", deleted);
+        }
+    }
+
+    private int deleteMissingChats(List<String> chatIds) throws IOException {
+        if (chatIds.isEmpty()) {
+            return 0;
+        }
+
+        String sql = String.format(SELECT_CHAT_IDS_SQL, String.join(", ", Collections.nCopies(chatIds.size(), "?")));
+        Set<String> existing = new HashSet<>(jdbcTemplate.query(sql, ps -> {
+            for (int i = 0; i < chatIds.size(); i++) {
+                ps.setString(i + 1, chatIds.get(i));
+            }
+        }, (rs, rowNum) -> rs.getString("id")));
+
+        int deleted = 0;
+        for (String chatId : chatIds) {
+            if (!existing.contains(chatId)) {
+                writer.deleteDocuments(new Term(CHAT_ID_FIELD, chatId));
+                deleted++;
+            }
+        }
+
+        return deleted;
+    }
+
+    private void indexMessages() {
+        List<IndexedMessage> batch = new ArrayList<>(batchSize);
+        boolean uncommitted = false;
+        long lastCommit = System.currentTimeMillis();
+
+        while (running || !queue.isEmpty()) {
+            try {
+                IndexedMessage message = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (message != null) {
+                    batch.add(message);
+                    queue.drainTo(batch, batchSize - 1);
+
+                    index(batch);
+                    uncommitted = true;
+                }
+
+                if (uncommitted && System.currentTimeMillis() - lastCommit >= commitIntervalMs) {
+                    writer.commit();
+                    uncommitted = false;
+                    lastCommit = System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                log.error("Message indexer is interrupted. Messages in the queue: {}", queue.size());
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Failed to index batch of {} messages", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+
+        try {
+            writer.commit();
+        } catch (IOException e) {
+            log.error("Failed to commit message index", e);
+        }
+
+        log.info("Message indexer stopped");
+    }
+
+    private void index(List<IndexedMessage> messages) throws IOException {
+        // the message is replaced by id, so indexing the same message again doesn't duplicate it
+        for (IndexedMessage message : messages) {
+            writer.updateDocument(new Term(ID_FIELD, String.valueOf(message.getId())), toDocument(message));
+        }
+
+        searcherManager.maybeRefresh();
+    }
+
+    private Document toDocument(IndexedMessage message) {
+        Document document = new Document();
+        document.add(new StringField(ID_FIELD, String.valueOf(message.getId()), Field.Store.YES));
+        document.add(new LongPoint(ID_RANGE_FIELD, message.getId()));
+        document.add(new NumericDocValuesField(ID_SORT_FIELD, message.getId()));
+        document.add(new StringField(CHAT_ID_FIELD, message.getChatId(), Field.Store.NO));
+        document.add(new TextField(CONTENT_FIELD, message.getContent(), Field.Store.NO));
+
+        return document;
+    }
+
+    private long getLastIndexedId() {
+        List<Long> ids = findIds(new MatchAllDocsQuery(), 1);
+        return ids.isEmpty() ? 0 : ids.get(0);
+    }
+
+    private List<Long> findIds(Query query, int limit) {
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs topDocs = searcher.search(query, limit, NEWEST_FIRST);
+
+                List<Long> ids = new ArrayList<>(topDocs.scoreDocs.length);
+                for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                    ids.add(Long.parseLong(searcher.doc(scoreDoc.doc).get(ID_FIELD)));
+                }
+
+                return ids;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.example.chat.service;
 import com.example.chat.model.chat.Chat;
 import com.example.chat.model.user.User;
 import com.example.chat.payload.chat.ChatDto;
+import com.example.chat.payload.chat.InboxDto;
 
 import java.util.List;
 
@@ -58,10 +59,22 @@ public interface ChatService {
     ChatDto getChat(String chatId, User actor);
 
     /**
-     * Get chats of authenticated user
+     * Get chats of authenticated user with their last messages and number of members
      *
-     * @param actor authenticated user
-     * @return retrieved chat
+     * @param actor          authenticated user
+     * @param includeMembers whether to include members of the chats
+     * @return retrieved chats
+     */
+    List<ChatDto> getChatsOfActor(User actor, boolean includeMembers);
+
+    /**
+     * Get page of the chats of authenticated user, the most recently active first
+     *
+     * @param actor          authenticated user
+     * @param cursor         cursor of the page returned by the previous call, or null for the first page
+     * @param limit          max number of chats
+     * @param includeMembers whether to include members of the chats
+     * @return page of the chats with the cursor of the next page
      */
-    List<ChatDto> getChatsOfActor(User actor);
+    InboxDto getInboxOfActor(User actor, String cursor, Integer limit, boolean includeMembers);
 }
@@ -22,4 +22,12 @@ public interface JwtService {
      * @return authentication token
      */
     Authentication verifyToken(String token);
+
+    /**
+     * Evict cached verified tokens of the user.
+     * Must be called when the user is disabled or updated
+     *
+     * @param userId id of the user
+     */
+    void evictUser(String userId);
 }
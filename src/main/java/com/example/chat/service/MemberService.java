@@ -3,9 +3,12 @@ package com.example.chat.service;
 import com.example.chat.model.chat.member.Member;
 import com.example.chat.model.user.User;
 import com.example.chat.payload.chat.MemberDto;
+import com.example.chat.payload.chat.MembersBatchRequest;
 import com.example.chat.payload.chat.UserId;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface MemberService {
 
@@ -27,6 +30,39 @@ public interface MemberService {
      */
     Member getMemberDomainObject(String userId, String chatId);
 
+    /**
+     * Get members of the chats as domain objects with their users loaded in a single query
+     *
+     * @param chatIds ids of the chats
+     * @return members grouped by id of the chat
+     */
+    Map<String, List<Member>> getMembersOfChatsDomainObjects(Collection<String> chatIds);
+
+    /**
+     * Count members of the chats in a single query
+     *
+     * @param chatIds ids of the chats
+     * @return number of members by id of the chat
+     */
+    Map<String, Integer> countMembersOfChats(Collection<String> chatIds);
+
+    /**
+     * Get ids of the chats the user is a member of
+     *
+     * @param userId id of the user
+     * @return ids of the chats
+     */
+    List<String> getChatIdsOfUser(String userId);
+
+    /**
+     * Get numbers of unread messages of the user in the chats, without counting the messages
+     *
+     * @param userId  id of the user
+     * @param chatIds ids of the chats
+     * @return number of unread messages by id of the chat
+     */
+    Map<String, Integer> getUnreadCounts(String userId, Collection<String> chatIds);
+
     /**
      * Get members of the chat with given id
      *
@@ -46,6 +82,16 @@ public interface MemberService {
      */
     MemberDto addChatMember(String chatId, UserId userId, User actor);
 
+    /**
+     * Add new chat members. Membership of the users is checked in a single query and the members are inserted in batches
+     *
+     * @param chatId  id of the chat
+     * @param request ids of the users
+     * @param actor   authenticated user
+     * @return created chat members
+     */
+    List<MemberDto> addChatMembers(String chatId, MembersBatchRequest request, User actor);
+
     /**
      * Update member of the chat
      *
@@ -66,6 +112,22 @@ public interface MemberService {
      */
     void removeChatMember(String chatId, String user, User actor);
 
+    /**
+     * Remove members of the chat with a single delete
+     *
+     * @param chatId  id of the chat
+     * @param request ids of the users
+     * @param actor   authenticated user
+     */
+    void removeChatMembers(String chatId, MembersBatchRequest request, User actor);
+
+    /**
+     * Delete all members of the chat with a single statement, without loading them
+     *
+     * @param chatId id of the chat
+     */
+    void deleteMembersOfChat(String chatId);
+
     /**
      * Get member of the chat
      * @param chatId id of the chat
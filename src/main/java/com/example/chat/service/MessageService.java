@@ -3,6 +3,9 @@ package com.example.chat.service;
 import com.example.chat.model.chat.Message;
 import com.example.chat.model.user.User;
 import com.example.chat.payload.chat.MessageDto;
+import com.example.chat.payload.chat.MessageHistoryDto;
+import com.example.chat.payload.chat.MessageSearchDto;
+import com.example.chat.payload.chat.ReadReceiptDto;
 import org.springframework.data.domain.Page;
 
 /**
@@ -24,6 +27,44 @@ public interface MessageService {
      */
     Page<MessageDto> getMessages(String chatId, Long lastMessageId, Integer limit, User actor);
 
+    /**
+     * Get chat messages using cursor based pagination. Doesn't count messages of the chat.
+     * If given id of the message to fetch before, then return older messages sorted from newest to oldest.
+     * If given id of the message to fetch after, then return newer messages sorted from oldest to newest.
+     * If none of them is given, then return the latest messages of the chat
+     *
+     * @param chatId   id of the chat
+     * @param beforeId id of the message to fetch messages before
+     * @param afterId  id of the message to fetch messages after
+     * @param limit    number of messages to retrieve
+     * @param actor    authenticated user
+     * @return chat messages with the cursor of the next page
+     */
+    MessageHistoryDto getMessageHistory(String chatId, Long beforeId, Long afterId, Integer limit, User actor);
+
+    /**
+     * Search messages of the chat by their content
+     *
+     * @param chatId   id of the chat
+     * @param query    words to search for, all of them must be present in the message
+     * @param beforeId id of the message to search before, or null to search from the latest one
+     * @param limit    number of messages to retrieve
+     * @param actor    authenticated user
+     * @return found messages sorted from newest to oldest with the cursor of the next page
+     */
+    MessageHistoryDto searchMessages(String chatId, String query, Long beforeId, Integer limit, User actor);
+
+    /**
+     * Search messages of all chats of the user by their content
+     *
+     * @param query    words to search for, all of them must be present in the message
+     * @param beforeId id of the message to search before, or null to search from the latest one
+     * @param limit    number of messages to retrieve
+     * @param actor    authenticated user
+     * @return found messages with their chats, sorted from newest to oldest, with the cursor of the next page
+     */
+    MessageSearchDto searchAllMessages(String query, Long beforeId, Integer limit, User actor);
+
     /**
      * Save new message
      *
@@ -33,4 +74,29 @@ public interface MessageService {
      * @return saved message
      */
     MessageDto saveMessage(String chatId, MessageDto messageDto, User actor);
+
+    /**
+     * Mark the messages of the chat as read up to the given one. Receipts of the older messages are ignored
+     *
+     * @param chatId  id of the chat
+     * @param receipt id of the last read message
+     * @param actor   authenticated user
+     * @return id of the last read message and number of the messages after it
+     */
+    ReadReceiptDto markAsRead(String chatId, ReadReceiptDto receipt, User actor);
+
+    /**
+     * Discard the messages of the chat that are queued to be written, so they are not inserted after the chat is deleted.
+     * Must be called before the chat is changed in the deleting transaction
+     *
+     * @param chatId id of the chat
+     */
+    void discardQueuedMessagesOfChat(String chatId);
+
+    /**
+     * Delete all messages of the chat with a single statement, without loading them
+     *
+     * @param chatId id of the chat
+     */
+    void deleteMessagesOfChat(String chatId);
 }
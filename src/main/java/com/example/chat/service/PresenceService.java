@@ -0,0 +1,31 @@
+package com.example.chat.service;
+
+import com.example.chat.model.user.User;
+import com.example.chat.payload.user.PresenceDto;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Presence of the users, tracked from their websocket sessions on all instances
+ */
+public interface PresenceService {
+
+    /**
+     * Get presence of the users that share at least one chat with the actor.
+     * Other users are skipped, so the presence of strangers is not disclosed
+     *
+     * @param userIds ids of the users
+     * @param actor   authenticated user
+     * @return presence of the co-members among the given users, in the order of the ids
+     */
+    List<PresenceDto> getPresence(Collection<String> userIds, User actor);
+
+    /**
+     * Check if the user has at least one connected session
+     *
+     * @param userId id of the user
+     * @return true, if online, false, if not
+     */
+    boolean isOnline(String userId);
+}
@@ -0,0 +1,18 @@
+package com.example.chat.service;
+
+import com.example.chat.model.user.User;
+
+/**
+ * Typing indicators of the chats. They are handled in memory and never stored
+ */
+public interface TypingService {
+
+    /**
+     * Notify the members of the chat that the user is typing.
+     * Repeated notifications of the same user are dropped until the rate limit interval passes
+     *
+     * @param chatId id of the chat
+     * @param actor  authenticated user
+     */
+    void notifyTyping(String chatId, User actor);
+}
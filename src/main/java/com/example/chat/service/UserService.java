@@ -2,7 +2,9 @@ package com.example.chat.service;
 
 import com.example.chat.model.user.User;
 import com.example.chat.payload.user.UserDto;
+import com.example.chat.payload.user.UserProfileDto;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -21,7 +23,17 @@ public interface UserService {
     User getUserDomainObject(String userId);
 
     /**
-     * Get user by the give id
+     * Get users as domain objects in a single query.
+     * Duplicate ids are loaded once and the order of the users is not defined
+     *
+     * @param userIds ids of the users
+     * @return retrieved users, one per distinct id
+     * @throws com.example.chat.exception.ResourceNotFoundException if one of the users doesn't exist
+     */
+    List<User> getUserDomainObjects(Collection<String> userIds);
+
+    /**
+     * Get user by the given id
      *
      * @param userId id of the user
      * @return retrieved user
@@ -29,10 +41,22 @@ public interface UserService {
     UserDto getUser(String userId);
 
     /**
-     * Get users by the given nickname
+     * Get public profiles of the users. Profiles are read through the cache,
+     * the missing ones are loaded in a single query. Users that don't exist are skipped
+     *
+     * @param userIds ids of the users, at most 1000
+     * @return profiles of the users in the order of the given ids
+     */
+    List<UserProfileDto> getUserProfiles(Collection<String> userIds);
+
+    /**
+     * Get users with nickname that starts with the given one, ignoring case.
+     * Users are sorted by their nickname
      *
-     * @param nickname nickname of the user
+     * @param nickname prefix of the nickname
+     * @param page     number of the page
+     * @param limit    number of users to retrieve, at most 50
      * @return list of users with nickname that matches given one
      */
-    List<UserDto> getUsersByNickname(String nickname);
+    List<UserDto> getUsersByNickname(String nickname, Integer page, Integer limit);
 }
@@ -6,19 +6,28 @@ import com.example.chat.model.chat.member.Member;
 import com.example.chat.model.chat.member.MemberRole;
 import com.example.chat.model.user.User;
 import com.example.chat.payload.chat.ChatDto;
+import com.example.chat.payload.chat.InboxDto;
 import com.example.chat.payload.chat.UserId;
 import com.example.chat.repository.ChatRepository;
 import com.example.chat.service.ChatService;
 import com.example.chat.service.MemberService;
+import com.example.chat.service.MessageService;
 import com.example.chat.service.UserService;
 import com.example.chat.utils.PayloadMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -28,9 +37,12 @@ import java.util.stream.Collectors;
 @Service
 @Transactional
 public class ChatServiceImpl implements ChatService {
+    private static final String CURSOR_SEPARATOR = "|";
+
     private final ChatRepository chatRepository;
     private final UserService userService;
     private final MemberService memberService;
+    private final MessageService messageService;
 
     private final PayloadMapper mapper;
 
@@ -84,8 +96,16 @@ public class ChatServiceImpl implements ChatService {
             throw new IllegalStateException("Only the owner can delete the chat");
         }
 
-        Chat chat = member.getChat();
-        chatRepository.delete(chat);
+        // queued messages of the chat would be inserted after its messages are deleted and fail the delete of the chat.
+        // They are discarded before the chat is locked, as the writer may be updating it
+        messageService.discardQueuedMessagesOfChat(chatId);
+
+        // the chat is deleted with bulk statements, so its messages and members are never loaded into memory.
+        // The last message is unset first, as the chat references it
+        chatRepository.clearLastMessage(chatId);
+        messageService.deleteMessagesOfChat(chatId);
+        memberService.deleteMembersOfChat(chatId);
+        chatRepository.deleteChatById(chatId);
     }
 
     @Transactional(readOnly = true)
@@ -102,19 +122,106 @@ public class ChatServiceImpl implements ChatService {
 
     @Transactional(readOnly = true)
     @Override
-    public List<ChatDto> getChatsOfActor(User actor) {
-        log.debug("Get chats of actor");
+    public List<ChatDto> getChatsOfActor(User actor, boolean includeMembers) {
+        log.debug("Get chats of actor. Include members: {}", includeMembers);
+
+        // chats are loaded with their last messages, so the members are the only thing left to load
+        List<Chat> chats = chatRepository.findInboxByUserId(actor.getId());
+
+        return mapChats(chats, actor, includeMembers);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public InboxDto getInboxOfActor(User actor, String cursor, Integer limit, boolean includeMembers) {
+        log.debug("Get {} chats of actor after cursor {}. Include members: {}", limit, cursor, includeMembers);
+
+        if (limit < 1) {
+            log.error("Number of chats is less than 1");
+            throw new IllegalStateException("Page size must not be less than one");
+        }
+
+        // keyset pagination by last activity and id, so the page is read from the index regardless of its position
+        Pageable pageable = PageRequest.ofSize(limit);
+
+        Slice<Chat> chats;
+        if (cursor == null || cursor.isBlank()) {
+            chats = chatRepository.findInboxSliceByUserId(actor.getId(), pageable);
+        } else {
+            InboxCursor inboxCursor = decodeCursor(cursor);
+            chats = chatRepository.findInboxSliceByUserIdAfter(
+                    actor.getId(), inboxCursor.lastActivityAt, inboxCursor.chatId, pageable
+            );
+        }
+
+        List<Chat> content = chats.getContent();
+        String nextCursor = content.isEmpty() ? null : encodeCursor(content.get(content.size() - 1));
+
+        return InboxDto.builder()
+                .chats(mapChats(content, actor, includeMembers))
+                .nextCursor(nextCursor)
+                .hasMore(chats.hasNext())
+                .build();
+    }
+
+    private List<ChatDto> mapChats(List<Chat> chats, User actor, boolean includeMembers) {
+        if (chats.isEmpty()) {
+            return List.of();
+        }
 
-        List<Chat> chats = chatRepository.findByUserId(actor.getId());
+        List<String> chatIds = chats.stream().map(Chat::getId).collect(Collectors.toList());
+        Map<String, Integer> unreadCounts = memberService.getUnreadCounts(actor.getId(), chatIds);
 
-        return chats.stream().map(mapper::mapChatToChatDto).collect(Collectors.toList());
+        List<ChatDto> chatDtos;
+        if (includeMembers) {
+            Map<String, List<Member>> members = memberService.getMembersOfChatsDomainObjects(chatIds);
+
+            chatDtos = chats.stream().map(chat -> {
+                List<Member> chatMembers = members.getOrDefault(chat.getId(), List.of());
+                return mapper.mapChatToChatDto(chat, chatMembers, chatMembers.size());
+            }).collect(Collectors.toList());
+        } else {
+            Map<String, Integer> memberCounts = memberService.countMembersOfChats(chatIds);
+
+            chatDtos = chats.stream()
+                    .map(chat -> mapper.mapChatToChatDto(chat, null, memberCounts.getOrDefault(chat.getId(), 0)))
+                    .collect(Collectors.toList());
+        }
+
+        chatDtos.forEach(chatDto -> chatDto.setUnreadCount(unreadCounts.getOrDefault(chatDto.getId(), 0)));
+        return chatDtos;
+    }
+
+    private String encodeCursor(Chat chat) {
+        // the same column the inbox is sorted on, set on creation and backfilled for the older chats
+        String cursor = chat.getLastActivityAt() + CURSOR_SEPARATOR + chat.getId();
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private InboxCursor decodeCursor(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+
+            int separator = decoded.indexOf(CURSOR_SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Separator is missing");
+            }
+
+            return new InboxCursor(LocalDateTime.parse(decoded.substring(0, separator)), decoded.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            log.error("Invalid cursor {}", cursor, e);
+            throw new IllegalStateException("Invalid cursor");
+        }
     }
 
     private Chat buildChat(ChatDto chatDto, User actor) {
         // build chat object
+        LocalDateTime now = LocalDateTime.now();
         Chat chat = Chat.builder().name(chatDto.getName())
                 .description(chatDto.getDescription())
-                .createdAt(LocalDateTime.now()).build();
+                .createdAt(now)
+                .lastActivityAt(now).build();
 
         chat = chatRepository.save(chat);
 
@@ -132,22 +239,20 @@ public class ChatServiceImpl implements ChatService {
     private Set<Member> mapMembers(List<UserId> users, Chat chat) {
         log.debug("Map users with {} to members of the chat {}", users, chat);
 
-        Set<Member> members = users.stream()
-                .map(userId -> mapMember(userId.getId(), chat))
-                .collect(Collectors.toSet());
-
-        if (members.size() == 0) {
+        if (users.isEmpty()) {
             log.error("There must be at least one other user in the chat");
             throw new IllegalStateException("You must provide at least one other user to create a chat");
         }
 
-        return members;
+        // users are loaded in a single query instead of one query per user
+        List<String> userIds = users.stream().map(UserId::getId).collect(Collectors.toList());
+        return userService.getUserDomainObjects(userIds).stream()
+                .map(user -> mapMember(user, chat))
+                .collect(Collectors.toSet());
     }
 
-    private Member mapMember(String userId, Chat chat) {
-        log.debug("Map user with id {} to member of the chat {}", userId, chat);
-
-        User user = userService.getUserDomainObject(userId);
+    private Member mapMember(User user, Chat chat) {
+        log.debug("Map user {} to member of the chat {}", user, chat);
 
         Member member = new Member(user, chat, MemberRole.DEFAULT, chat.getCreatedAt());
         if (chat.getMembers().contains(member)) {
@@ -157,4 +262,10 @@ public class ChatServiceImpl implements ChatService {
 
         return member;
     }
+
+    @RequiredArgsConstructor
+    private static class InboxCursor {
+        private final LocalDateTime lastActivityAt;
+        private final String chatId;
+    }
 }
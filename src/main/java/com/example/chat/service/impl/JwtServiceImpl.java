@@ -9,35 +9,67 @@ import com.example.chat.config.security.jwt.JwtAuthenticationToken;
 import com.example.chat.model.user.User;
 import com.example.chat.repository.UserRepository;
 import com.example.chat.service.JwtService;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.Base64;
 import java.util.Optional;
 
 @Slf4j
-@RequiredArgsConstructor
 @Service
-public class JwtServiceImpl implements JwtService {
+public class JwtServiceImpl implements JwtService, MeterBinder {
     private final UserRepository userRepository;
 
-    @Value("${security.jwt.secret}")
-    private String secret;
+    private final long expirationTimeMin;
 
-    @Value("${security.jwt.token-expiration-time-min}")
-    private long expirationTimeMin;
+    // algorithm and verifier are immutable and thread safe, so they are built once
+    private final Algorithm algorithm;
+    private final JWTVerifier verifier;
+
+    // verified tokens, keyed by the hash of the token. Entries expire together with the token
+    private final Cache<String, VerifiedToken> tokenCache;
+
+    public JwtServiceImpl(
+            UserRepository userRepository,
+            @Value("${security.jwt.secret}") String secret,
+            @Value("${security.jwt.token-expiration-time-min}") long expirationTimeMin,
+            @Value("${security.jwt.cache.max-size}") long cacheMaxSize,
+            @Value("${security.jwt.cache.ttl-min}") long cacheTtlMin
+    ) {
+        this.userRepository = userRepository;
+        this.expirationTimeMin = expirationTimeMin;
+
+        this.algorithm = Algorithm.HMAC256(secret);
+        this.verifier = JWT.require(algorithm).build();
+
+        this.tokenCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new TokenExpiry(Duration.ofMinutes(cacheTtlMin)))
+                .recordStats()
+                .build();
+    }
 
     @Override
     public String createToken(Authentication authentication) {
         log.debug("Create jwt token for authentication: {}", authentication);
 
-        Algorithm algorithm = Algorithm.HMAC256(secret);
-
         User user = (User) authentication.getPrincipal();
         Instant expiresAt = LocalDateTime.now()
                 .plusMinutes(expirationTimeMin)
@@ -48,9 +80,27 @@ public class JwtServiceImpl implements JwtService {
 
     @Override
     public Authentication verifyToken(String token) {
-        log.debug("Verify jwt token: {}", token);
+        VerifiedToken verifiedToken = tokenCache.get(hashToken(token), key -> verifyAndLoadUser(token));
+
+        // every authentication gets its own user, so the cached state isn't shared between the threads
+        return new JwtAuthenticationToken(token, verifiedToken.toUser(), true, verifiedToken.getExpiresAt());
+    }
+
+    @Override
+    public void evictUser(String userId) {
+        log.debug("Evict verified tokens of the user {}", userId);
 
-        String id = decodeToken(token);
+        tokenCache.asMap().values().removeIf(verifiedToken -> verifiedToken.getUserId().equals(userId));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, tokenCache, "jwt");
+    }
+
+    private VerifiedToken verifyAndLoadUser(String token) {
+        DecodedJWT decodedToken = decodeToken(token);
+        String id = decodedToken.getSubject();
 
         Optional<User> user = userRepository.findById(id);
         if (user.isEmpty()) {
@@ -58,22 +108,95 @@ public class JwtServiceImpl implements JwtService {
             throw new IllegalStateException("Invalid jwt token");
         }
 
-        return new JwtAuthenticationToken(token, user.get(), true);
+        if (!user.get().isEnabled()) {
+            log.error("Failed to verify jwt token. User with id {} is disabled", id);
+            throw new IllegalStateException("Invalid jwt token");
+        }
+
+        return new VerifiedToken(user.get(), decodedToken.getExpiresAtAsInstant());
     }
 
-    private String decodeToken(String token) {
+    private DecodedJWT decodeToken(String token) {
         try {
-            Algorithm algorithm = Algorithm.HMAC256(secret);
-            JWTVerifier verifier = JWT.require(algorithm).build();
-
-            DecodedJWT decodedToken = verifier.verify(token);
-            return decodedToken.getSubject();
+            return verifier.verify(token);
         } catch (JWTVerificationException e) {
-            log.error("Invalid JWT token: {}", token);
+            log.error("Invalid JWT token: {}", e.getMessage());
             throw new IllegalStateException("Invalid jwt token");
         } catch (Exception e) {
             log.error("Exception while decoding jwt token");
             throw new IllegalStateException("Exception while decoding jwt token");
         }
     }
+
+    private String hashToken(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            log.error("SHA-256 is not supported");
+            throw new IllegalStateException("Exception while hashing jwt token");
+        }
+    }
+
+    // immutable snapshot of the user, the password and the entity itself are not kept in the cache
+    @Getter
+    private static class VerifiedToken {
+        private final String userId;
+        private final String nickname;
+        private final String email;
+        private final boolean enabled;
+        private final LocalDateTime createdAt;
+        private final LocalDateTime updatedAt;
+        private final Instant expiresAt;
+
+        VerifiedToken(User user, Instant expiresAt) {
+            this.userId = user.getId();
+            this.nickname = user.getNickname();
+            this.email = user.getEmail();
+            this.enabled = user.isEnabled();
+            this.createdAt = user.getCreatedAt();
+            this.updatedAt = user.getUpdatedAt();
+            this.expiresAt = expiresAt;
+        }
+
+        User toUser() {
+            return User.builder().id(userId).nickname(nickname).email(email).enabled(enabled)
+                    .createdAt(createdAt).updatedAt(updatedAt).build();
+        }
+    }
+
+    /**
+     * Expires verified token when the token itself expires, but not later than the given max ttl,
+     * so changes of the user made outside of this instance are eventually picked up
+     */
+    @AllArgsConstructor
+    private static class TokenExpiry implements Expiry<String, VerifiedToken> {
+        private final Duration maxTtl;
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+            if (value.getExpiresAt() == null) {
+                return maxTtl.toNanos();
+            }
+
+            Duration untilExpiration = Duration.between(Instant.now(), value.getExpiresAt());
+            if (untilExpiration.isNegative()) {
+                return 0;
+            }
+
+            return Math.min(untilExpiration.toNanos(), maxTtl.toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
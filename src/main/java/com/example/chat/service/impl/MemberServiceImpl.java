@@ -1,24 +1,36 @@
 package com.example.chat.service.impl;
 
+import com.example.chat.cache.MembershipCache;
+import com.example.chat.metrics.ChatMetrics;
+import com.example.chat.persistence.MemberBatchWriter;
+import com.example.chat.persistence.UnreadCounters;
 import com.example.chat.model.chat.member.Member;
 import com.example.chat.model.chat.member.MemberId;
 import com.example.chat.model.chat.member.MemberRole;
 import com.example.chat.model.user.User;
 import com.example.chat.payload.chat.MemberDto;
+import com.example.chat.payload.chat.MembersBatchRequest;
 import com.example.chat.payload.chat.UserId;
 import com.example.chat.repository.MemberRepository;
+import com.example.chat.repository.projection.ChatMemberCount;
+import com.example.chat.repository.projection.MemberUnreadCount;
 import com.example.chat.service.MemberService;
 import com.example.chat.service.UserService;
 import com.example.chat.utils.PayloadMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -28,17 +40,22 @@ import java.util.stream.Collectors;
 public class MemberServiceImpl implements MemberService {
     private final MemberRepository memberRepository;
     private final UserService userService;
+    private final MembershipCache membershipCache;
+    private final MemberBatchWriter memberBatchWriter;
+    private final UnreadCounters unreadCounters;
+    private final ChatMetrics metrics;
     private final PayloadMapper mapper;
 
-    @Transactional(readOnly = true)
+    // members are resolved from the cache, so there is no need to open a transaction
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     @Override
     public boolean isMemberOfTheChat(String userId, String chatId) {
         log.debug("Verify if user {} is a member of the chat {}", userId, chatId);
 
-        MemberId id = new MemberId(userId, chatId);
-        Optional<Member> member = memberRepository.findById(id);
+        boolean member = membershipCache.isMember(chatId, userId);
+        metrics.recordMembershipCheck(member);
 
-        return member.isPresent();
+        return member;
     }
 
     @Override
@@ -55,6 +72,55 @@ public class MemberServiceImpl implements MemberService {
         return member.get();
     }
 
+    @Transactional(readOnly = true)
+    @Override
+    public Map<String, List<Member>> getMembersOfChatsDomainObjects(Collection<String> chatIds) {
+        log.debug("Get members of the chats {} as domain objects", chatIds);
+
+        if (chatIds.isEmpty()) {
+            return Map.of();
+        }
+
+        return memberRepository.findWithUsersByChatIdIn(chatIds).stream()
+                .collect(Collectors.groupingBy(member -> member.getChat().getId()));
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Map<String, Integer> countMembersOfChats(Collection<String> chatIds) {
+        log.debug("Count members of the chats {}", chatIds);
+
+        if (chatIds.isEmpty()) {
+            return Map.of();
+        }
+
+        return memberRepository.countByChatIdIn(chatIds).stream()
+                .collect(Collectors.toMap(ChatMemberCount::getChatId, count -> (int) count.getMemberCount()));
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public List<String> getChatIdsOfUser(String userId) {
+        log.debug("Get ids of the chats of the user {}", userId);
+
+        return memberRepository.findChatIdsByUserId(userId);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public Map<String, Integer> getUnreadCounts(String userId, Collection<String> chatIds) {
+        log.debug("Get unread counts of the user {} in the chats {}", userId, chatIds);
+
+        if (chatIds.isEmpty()) {
+            return Map.of();
+        }
+
+        return memberRepository.findUnreadCountsByUserIdAndChatIdIn(userId, chatIds).stream()
+                .collect(Collectors.toMap(MemberUnreadCount::getChatId, count -> unreadCounters.getUnreadCount(
+                        count.getChatId(), userId, count.getUnreadCount() == null ? 0 : count.getUnreadCount()
+                )));
+    }
+
     @Transactional(readOnly = true)
     @Override
     public List<MemberDto> getChatMembers(String chatId, User actor) {
@@ -86,9 +152,36 @@ public class MemberServiceImpl implements MemberService {
         Member member = new Member(user, actorMember.getChat(), MemberRole.DEFAULT);
 
         member = memberRepository.save(member);
+        membershipCache.evict(chatId);
+
         return mapper.mapMemberToMemberDto(member);
     }
 
+    @Override
+    public List<MemberDto> addChatMembers(String chatId, MembersBatchRequest request, User actor) {
+        log.debug("Add {} new users to the chat {}", request.getUsers().size(), chatId);
+
+        Member actorMember = getMemberDomainObject(actor.getId(), chatId);
+        Set<String> userIds = getUserIds(request);
+
+        List<String> existingMembers = memberRepository.findUserIdsByChatIdAndUserIdIn(chatId, userIds);
+        if (!existingMembers.isEmpty()) {
+            log.error("Users {} are already members of the chat {}", existingMembers, chatId);
+            throw new IllegalStateException("User is already a member of the chat");
+        }
+
+        List<User> users = userService.getUserDomainObjects(userIds);
+        LocalDateTime joinedAt = LocalDateTime.now();
+
+        memberBatchWriter.insertMembers(chatId, userIds, MemberRole.DEFAULT, joinedAt);
+        membershipCache.evict(chatId);
+
+        return users.stream()
+                .map(user -> new Member(user, actorMember.getChat(), MemberRole.DEFAULT, joinedAt))
+                .map(mapper::mapMemberToMemberDto)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public MemberDto updateChatMember(String chatId, String userId, MemberDto memberDto, User actor) {
         log.debug("Update member {} of the chat {}. Update details: {}", userId, chatId, memberDto);
@@ -131,6 +224,52 @@ public class MemberServiceImpl implements MemberService {
         }
     }
 
+    @Override
+    public void removeChatMembers(String chatId, MembersBatchRequest request, User actor) {
+        log.debug("Remove {} members from chat {}", request.getUsers().size(), chatId);
+
+        Member actorMember = getMemberDomainObject(actor.getId(), chatId);
+        if (actorMember.getRole() == MemberRole.DEFAULT) {
+            log.error("Only the owner and admins can remove other users");
+            throw new IllegalStateException("Only the owner and admins can remove other users");
+        }
+
+        Set<String> userIds = getUserIds(request);
+        if (userIds.contains(actor.getId())) {
+            log.error("User {} cannot remove themselves together with other members", actor.getId());
+            throw new IllegalStateException("Cannot remove yourself together with other members");
+        }
+
+        List<MemberRole> roles = memberRepository.findRolesByChatIdAndUserIdIn(chatId, userIds);
+        if (roles.size() != userIds.size()) {
+            log.error("Not all users {} are members of chat {}", userIds, chatId);
+            throw new IllegalStateException("Not a member of the chat");
+        }
+
+        if (roles.contains(MemberRole.OWNER)) {
+            log.error("No one can remove the owner of the chat");
+            throw new IllegalStateException("No one can remove the owner of the chat");
+        }
+
+        if (roles.contains(MemberRole.ADMIN) && actorMember.getRole() != MemberRole.OWNER) {
+            log.error("Only owner can remove admin");
+            throw new IllegalStateException("Only owner can remove admin");
+        }
+
+        memberRepository.deleteByChatIdAndUserIdIn(chatId, userIds);
+        membershipCache.evict(chatId);
+    }
+
+    @Override
+    public void deleteMembersOfChat(String chatId) {
+        log.debug("Delete members of the chat {}", chatId);
+
+        int deleted = memberRepository.deleteByChatId(chatId);
+        membershipCache.evict(chatId);
+
+        log.debug("Deleted {} members of the chat {}", deleted, chatId);
+    }
+
     @Override
     public MemberDto getChatMember(String chatId, String userId, User actor) {
         log.debug("Get member {} of the chat {}", userId, chatId);
@@ -144,6 +283,12 @@ public class MemberServiceImpl implements MemberService {
         return mapper.mapMemberToMemberDto(member);
     }
 
+    private Set<String> getUserIds(MembersBatchRequest request) {
+        return request.getUsers().stream()
+                .map(UserId::getId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
     private void leaveChat(Member member) {
         if (member.getRole() == MemberRole.OWNER) {
             log.error("Owner must assign ownership over the chat to another member before leaving");
@@ -151,6 +296,7 @@ public class MemberServiceImpl implements MemberService {
         }
 
         memberRepository.delete(member);
+        membershipCache.evict(member.getChat().getId());
     }
 
     private void removeMember(String chatId, String userId, Member actorMember) {
@@ -171,5 +317,6 @@ public class MemberServiceImpl implements MemberService {
         }
 
         memberRepository.delete(member);
+        membershipCache.evict(chatId);
     }
 }
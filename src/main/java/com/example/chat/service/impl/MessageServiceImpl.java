@@ -1,34 +1,66 @@
 package com.example.chat.service.impl;
 
+import com.example.chat.cache.RecentMessagesCache;
+import com.example.chat.messaging.MessageBroadcaster;
+import com.example.chat.metrics.ChatMetrics;
 import com.example.chat.model.chat.Chat;
 import com.example.chat.model.chat.Message;
 import com.example.chat.model.chat.member.Member;
 import com.example.chat.model.user.User;
 import com.example.chat.payload.chat.MessageDto;
+import com.example.chat.payload.chat.InboxMessageDto;
+import com.example.chat.payload.chat.MessageHistoryDto;
+import com.example.chat.payload.chat.MessageSearchDto;
+import com.example.chat.payload.chat.ReadReceiptDto;
+import com.example.chat.persistence.MessageIdGenerator;
+import com.example.chat.persistence.MessageWriteBehindQueue;
+import com.example.chat.persistence.PendingMessage;
+import com.example.chat.persistence.UnreadCounters;
 import com.example.chat.repository.MessageRepository;
+import com.example.chat.search.IndexedMessage;
+import com.example.chat.search.MessageIndex;
 import com.example.chat.service.MemberService;
 import com.example.chat.service.MessageService;
 import com.example.chat.utils.PayloadMapper;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @RequiredArgsConstructor
 @Service
 @Transactional
 public class MessageServiceImpl implements MessageService {
+    private static final int MAX_SEARCH_LIMIT = 50;
+
     private final MessageRepository messageRepository;
     private final MemberService memberService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final MessageIdGenerator messageIdGenerator;
+    private final MessageWriteBehindQueue writeBehindQueue;
+    private final MessageBroadcaster broadcaster;
+    private final UnreadCounters unreadCounters;
+    private final TransactionTemplate transactionTemplate;
+    private final ChatMetrics metrics;
+    private final MessageIndex messageIndex;
+    private final RecentMessagesCache recentMessagesCache;
     private final PayloadMapper mapper;
 
     @Transactional(readOnly = true)
@@ -49,6 +81,19 @@ public class MessageServiceImpl implements MessageService {
         Sort sort = Sort.by(Sort.Direction.DESC, "id");
         Pageable pageable = PageRequest.ofSize(limit).withSort(sort);
 
+        Timer.Sample sample = metrics.startTimer();
+
+        // the first page is usually requested when the chat is opened, so it's served from the recent messages
+        if (lastMessageId == null && limit <= recentMessagesCache.getSize()) {
+            RecentMessagesCache.LatestMessages latest = recentMessagesCache.getLatest(chatId, limit);
+            metrics.recordHistoryFetch(sample, ChatMetrics.HISTORY_RECENT);
+
+            // the page reports the total, so it's counted only if the chat has more messages than the page
+            List<MessageDto> messages = latest.getMessages();
+            long total = latest.isHasMore() ? messageRepository.countByChatId(chatId) : messages.size();
+            return new PageImpl<>(messages, pageable, total);
+        }
+
         Page<Message> messages;
         if (lastMessageId == null) {
             messages = messageRepository.findAllByChatId(chatId, pageable);
@@ -56,25 +101,239 @@ public class MessageServiceImpl implements MessageService {
             messages = messageRepository.findAllByChatIdAndIdIsBefore(chatId, lastMessageId, pageable);
         }
 
+        metrics.recordHistoryFetch(sample, ChatMetrics.HISTORY_PAGE);
+
         return messages.map(mapper::mapMessageToMessageDto);
     }
 
+    @Transactional(readOnly = true)
+    @Override
+    public MessageHistoryDto getMessageHistory(String chatId, Long beforeId, Long afterId, Integer limit, User actor) {
+        log.debug("Get {} messages of the chat {} before message {} or after message {}", limit, chatId, beforeId, afterId);
+
+        if (!memberService.isMemberOfTheChat(actor.getId(), chatId)) {
+            log.error("User {} is not a member of chat {}", actor.getId(), chatId);
+            throw new IllegalStateException("Not a member of the chat");
+        }
+
+        if (limit < 1) {
+            log.error("Number of messages is less than 1");
+            throw new IllegalStateException("Page size must not be less than one");
+        }
+
+        if (beforeId != null && afterId != null) {
+            log.error("Both before and after cursors are given");
+            throw new IllegalStateException("Only one of the before and after cursors can be given");
+        }
+
+        Timer.Sample sample = metrics.startTimer();
+
+        if (beforeId == null && afterId == null && limit <= recentMessagesCache.getSize()) {
+            RecentMessagesCache.LatestMessages latest = recentMessagesCache.getLatest(chatId, limit);
+            metrics.recordHistoryFetch(sample, ChatMetrics.HISTORY_RECENT);
+
+            List<MessageDto> messages = latest.getMessages();
+            return MessageHistoryDto.builder()
+                    .messages(messages)
+                    .nextCursor(messages.isEmpty() ? null : messages.get(messages.size() - 1).getId())
+                    .hasMore(latest.isHasMore())
+                    .build();
+        }
+
+        // slices don't issue a count query, they fetch one extra row to find out if there is a next page
+        Slice<Message> messages;
+        if (afterId != null) {
+            Pageable pageable = PageRequest.ofSize(limit).withSort(Sort.by(Sort.Direction.ASC, "id"));
+            messages = messageRepository.findSliceByChatIdAndIdIsAfter(chatId, afterId, pageable);
+        } else if (beforeId != null) {
+            Pageable pageable = PageRequest.ofSize(limit).withSort(Sort.by(Sort.Direction.DESC, "id"));
+            messages = messageRepository.findSliceByChatIdAndIdIsBefore(chatId, beforeId, pageable);
+        } else {
+            Pageable pageable = PageRequest.ofSize(limit).withSort(Sort.by(Sort.Direction.DESC, "id"));
+            messages = messageRepository.findSliceByChatId(chatId, pageable);
+        }
+
+        metrics.recordHistoryFetch(sample, ChatMetrics.HISTORY_CURSOR);
+
+        return buildMessageHistory(messages);
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public MessageHistoryDto searchMessages(String chatId, String query, Long beforeId, Integer limit, User actor) {
+        log.debug("Search {} messages of the chat {} before message {} by query {}", limit, chatId, beforeId, query);
+
+        if (!memberService.isMemberOfTheChat(actor.getId(), chatId)) {
+            log.error("User {} is not a member of chat {}", actor.getId(), chatId);
+            throw new IllegalStateException("Not a member of the chat");
+        }
+
+        MessageSearchDto found = findMessages(List.of(chatId), query, beforeId, limit);
+
+        return MessageHistoryDto.builder()
+                .messages(found.getMessages().stream().map(InboxMessageDto::getMessage).collect(Collectors.toList()))
+                .nextCursor(found.getNextCursor())
+                .hasMore(found.isHasMore())
+                .build();
+    }
+
+    @Transactional(readOnly = true)
+    @Override
+    public MessageSearchDto searchAllMessages(String query, Long beforeId, Integer limit, User actor) {
+        log.debug("Search {} messages of the user {} before message {} by query {}", limit, actor.getId(), beforeId, query);
+
+        // the search is restricted to the chats of the actor by the index itself
+        List<String> chatIds = memberService.getChatIdsOfUser(actor.getId());
+
+        return findMessages(chatIds, query, beforeId, limit);
+    }
+
+    // the transaction is opened only when the message is saved synchronously
+    @Transactional(propagation = Propagation.SUPPORTS)
     @Override
     public MessageDto saveMessage(String chatId, MessageDto messageDto, User actor) {
         log.debug("Save message {} sent to the chat {}", messageDto, chatId);
 
-        Member actorMember = memberService.getMemberDomainObject(actor.getId(), chatId);
+        Timer.Sample sample = metrics.startTimer();
+        String mode = writeBehindQueue.isEnabled() ? ChatMetrics.MODE_WRITE_BEHIND : ChatMetrics.MODE_SYNC;
+        boolean success = false;
 
-        // map and save the message
-        Message message = saveMessage(messageDto, actor, actorMember);
+        MessageDto responseMessageDto;
+        try {
+            if (writeBehindQueue.isEnabled()) {
+                responseMessageDto = queueMessage(chatId, messageDto, actor);
+            } else {
+                responseMessageDto = transactionTemplate.execute(status -> {
+                    Member actorMember = memberService.getMemberDomainObject(actor.getId(), chatId);
 
-        // send message to corresponding topic
-        MessageDto responseMessageDto = mapper.mapMessageToMessageDto(message);
-        sendMessageToTopic(chatId, responseMessageDto);
+                    // map and save the message
+                    Message message = saveMessage(messageDto, actor, actorMember);
+                    return mapper.mapMessageToMessageDto(message);
+                });
+            }
+            success = true;
+        } finally {
+            metrics.recordMessageSave(sample, chatId, mode, success);
+        }
+
+        recentMessagesCache.add(chatId, responseMessageDto);
+        unreadCounters.messageSent(chatId, actor.getId(), responseMessageDto.getId());
+        messageIndex.submit(new IndexedMessage(responseMessageDto.getId(), chatId, responseMessageDto.getContent()));
+
+        // deliver message to the members of the chat
+        broadcaster.broadcastMessage(chatId, responseMessageDto);
 
         return responseMessageDto;
     }
 
+    @Transactional(readOnly = true)
+    @Override
+    public ReadReceiptDto markAsRead(String chatId, ReadReceiptDto receipt, User actor) {
+        log.debug("Mark messages of the chat {} as read up to {}", chatId, receipt.getMessageId());
+
+        // read before the chat, so a message written in between is found either in the queue or in the database
+        Long lastQueuedId = writeBehindQueue.isEnabled() ? writeBehindQueue.getLastQueuedId(chatId) : null;
+
+        Member member = memberService.getMemberDomainObject(actor.getId(), chatId);
+        int persistedUnread = member.getUnreadCount() == null ? 0 : member.getUnreadCount();
+
+        Long lastRead = unreadCounters.getLastReadMessageId(chatId, actor.getId(), member.getLastReadMessageId());
+        long messageId = receipt.getMessageId();
+        if (lastRead != null && messageId <= lastRead) {
+            int unread = unreadCounters.getUnreadCount(chatId, actor.getId(), persistedUnread);
+            return new ReadReceiptDto(lastRead, unread);
+        }
+
+        // queued messages are not yet the last message of the chat, so the highest queued id is accepted too.
+        // Messages queued on other instances are accepted once they are written
+        Message lastMessage = member.getChat().getLastMessage();
+        long lastMessageId = Math.max(lastMessage == null ? 0 : lastMessage.getId(), lastQueuedId == null ? 0 : lastQueuedId);
+        if (messageId > lastMessageId) {
+            log.error("Message {} doesn't exist in the chat {}", messageId, chatId);
+            throw new IllegalStateException("Message doesn't exist in the chat");
+        }
+
+        // usually the latest message is read, otherwise only the messages after the read one are counted
+        int unread = lastMessage == null || messageId >= lastMessage.getId()
+                ? 0
+                : (int) messageRepository.countByChatIdAndIdGreaterThan(chatId, messageId);
+
+        unreadCounters.markRead(chatId, actor.getId(), messageId, unread);
+
+        return new ReadReceiptDto(messageId, unread);
+    }
+
+    @Override
+    public void discardQueuedMessagesOfChat(String chatId) {
+        if (writeBehindQueue.isEnabled()) {
+            writeBehindQueue.discardChat(chatId);
+        }
+    }
+
+    @Override
+    public void deleteMessagesOfChat(String chatId) {
+        log.debug("Delete messages of the chat {}", chatId);
+
+        int deleted = messageRepository.deleteByChatId(chatId);
+        log.debug("Deleted {} messages of the chat {}", deleted, chatId);
+
+        messageIndex.deleteChat(chatId);
+        recentMessagesCache.evict(chatId);
+    }
+
+    private MessageSearchDto findMessages(Collection<String> chatIds, String query, Long beforeId, int limit) {
+        if (limit < 1) {
+            log.error("Number of messages is less than 1");
+            throw new IllegalStateException("Page size must not be less than one");
+        }
+
+        if (query == null || query.isBlank()) {
+            return new MessageSearchDto(List.of(), null, false);
+        }
+
+        Timer.Sample sample = metrics.startTimer();
+
+        // one extra message is searched to find out if there is a next page
+        int pageSize = Math.min(limit, MAX_SEARCH_LIMIT);
+        List<Long> ids = messageIndex.search(chatIds, query, beforeId, pageSize + 1);
+        List<Long> pageIds = ids.subList(0, Math.min(pageSize, ids.size()));
+
+        Map<Long, Message> messages = pageIds.isEmpty()
+                ? Map.of()
+                : messageRepository.findWithUsersByIdIn(pageIds).stream()
+                        .collect(Collectors.toMap(Message::getId, Function.identity()));
+
+        // messages queued in write-behind mode are indexed before they are written, so they are skipped until then
+        List<InboxMessageDto> found = pageIds.stream()
+                .map(messages::get)
+                .filter(Objects::nonNull)
+                .map(message -> new InboxMessageDto(message.getChat().getId(), mapper.mapMessageToMessageDto(message)))
+                .collect(Collectors.toList());
+
+        metrics.recordHistoryFetch(sample, ChatMetrics.HISTORY_SEARCH);
+
+        return MessageSearchDto.builder()
+                .messages(found)
+                .nextCursor(pageIds.isEmpty() ? null : pageIds.get(pageIds.size() - 1))
+                .hasMore(ids.size() > pageSize)
+                .build();
+    }
+
+    private MessageHistoryDto buildMessageHistory(Slice<Message> slice) {
+        List<MessageDto> messages = slice.getContent().stream()
+                .map(mapper::mapMessageToMessageDto)
+                .collect(Collectors.toList());
+
+        // the cursor of the next page is the id of the last message in the page
+        Long nextCursor = messages.isEmpty() ? null : messages.get(messages.size() - 1).getId();
+
+        return MessageHistoryDto.builder()
+                .messages(messages)
+                .nextCursor(nextCursor)
+                .hasMore(slice.hasNext())
+                .build();
+    }
+
     private Message buildMessage(MessageDto messageDto, User actor, Chat chat) {
         return Message.builder().user(actor).chat(chat)
                 .content(messageDto.getContent())
@@ -87,12 +346,35 @@ public class MessageServiceImpl implements MessageService {
         Message message = buildMessage(messageDto, actor, chat);
         message = messageRepository.save(message);
         chat.setLastMessage(message);
+        chat.setLastActivityAt(message.getSentAt());
 
         return message;
     }
 
-    private void sendMessageToTopic(String chatId, MessageDto message) {
-        String destination = "/topic/chats/" + chatId + "/messages";
-        messagingTemplate.convertAndSend(destination, message);
+    private MessageDto queueMessage(String chatId, MessageDto messageDto, User actor) {
+        if (!memberService.isMemberOfTheChat(actor.getId(), chatId)) {
+            log.error("User {} is not a member of chat {}", actor.getId(), chatId);
+            throw new IllegalStateException("Not a member of the chat");
+        }
+
+        Message message = Message.builder().id(messageIdGenerator.nextId()).user(actor)
+                .content(messageDto.getContent())
+                .sentAt(LocalDateTime.now()).build();
+
+        PendingMessage pendingMessage = new PendingMessage(
+                message.getId(), chatId, actor.getId(), message.getContent(), message.getSentAt()
+        );
+        MessageDto responseMessageDto = mapper.mapMessageToMessageDto(message);
+
+        // registered before the message is queued, so the writer can't report it before
+        recentMessagesCache.addUnwritten(chatId, responseMessageDto);
+        try {
+            writeBehindQueue.submit(pendingMessage);
+        } catch (RuntimeException e) {
+            recentMessagesCache.dropped(chatId, message.getId());
+            throw e;
+        }
+
+        return responseMessageDto;
     }
 }
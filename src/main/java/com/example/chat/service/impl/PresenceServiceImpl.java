@@ -0,0 +1,191 @@
+package com.example.chat.service.impl;
+
+import com.example.chat.cache.MembershipCache;
+import com.example.chat.model.user.User;
+import com.example.chat.payload.user.PresenceDto;
+import com.example.chat.repository.MemberRepository;
+import com.example.chat.repository.projection.MemberChat;
+import com.example.chat.service.PresenceService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.security.Principal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Tracks the presence of the users. A user is online while at least one of its sessions is connected to any instance,
+ * as seen by the user registry, which is shared between the instances in relay mode.
+ * Connects and disconnects of the sessions of this instance are collected and broadcast once per debounce interval: a connection that drops and comes back
+ * within the interval isn't announced at all, and every online co-member receives a single frame
+ * with all changes of its chats
+ */
+@Slf4j
+@Service
+public class PresenceServiceImpl implements PresenceService {
+    public static final String PRESENCE_DESTINATION = "/queue/presence";
+
+    private static final int MAX_USERS = 1000;
+
+    private final MemberRepository memberRepository;
+    private final MembershipCache membershipCache;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry userRegistry;
+    private final long debounceMs;
+
+    // users whose sessions changed since the last broadcast
+    private final Set<String> changedUsers = ConcurrentHashMap.newKeySet();
+
+    // users announced as online to their co-members, accessed only by the broadcaster thread
+    private final Set<String> announcedOnline = new HashSet<>();
+
+    private ScheduledExecutorService broadcaster;
+
+    public PresenceServiceImpl(
+            MemberRepository memberRepository,
+            MembershipCache membershipCache,
+            SimpMessagingTemplate messagingTemplate,
+            SimpUserRegistry userRegistry,
+            @Value("${chat.presence.debounce-ms}") long debounceMs
+    ) {
+        this.memberRepository = memberRepository;
+        this.membershipCache = membershipCache;
+        this.messagingTemplate = messagingTemplate;
+        this.userRegistry = userRegistry;
+        this.debounceMs = debounceMs;
+    }
+
+    @PostConstruct
+    void start() {
+        broadcaster = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "presence-broadcaster"));
+        broadcaster.scheduleWithFixedDelay(this::broadcastChanges, debounceMs, debounceMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        broadcaster.shutdownNow();
+    }
+
+    @EventListener
+    public void onConnect(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (user == null || sessionId == null) {
+            return;
+        }
+
+        log.debug("Session {} of the user {} connected", sessionId, user.getName());
+
+        // the registry is updated by the same events, so the state is read when the changes are broadcast
+        changedUsers.add(user.getName());
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Principal user = event.getUser();
+        if (user == null) {
+            return;
+        }
+
+        log.debug("Session {} of the user {} disconnected", event.getSessionId(), user.getName());
+
+        changedUsers.add(user.getName());
+    }
+
+    @Override
+    public List<PresenceDto> getPresence(Collection<String> userIds, User actor) {
+        log.debug("Get presence of {} users for the user {}", userIds.size(), actor.getId());
+
+        Set<String> ids = new LinkedHashSet<>(userIds);
+        if (ids.size() > MAX_USERS) {
+            log.error("Too many users requested: {}", ids.size());
+            throw new IllegalStateException("Max number of users is " + MAX_USERS);
+        }
+
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Set<String> coMembers = new HashSet<>(memberRepository.findCoMemberIdsByUserIdAndUserIdIn(actor.getId(), ids));
+
+        return ids.stream()
+                .filter(coMembers::contains)
+                .map(userId -> new PresenceDto(userId, isOnline(userId)))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean isOnline(String userId) {
+        return userRegistry.getUser(userId) != null;
+    }
+
+    void broadcastChanges() {
+        try {
+            Map<String, Boolean> changes = collectChanges();
+            if (changes.isEmpty()) {
+                return;
+            }
+
+            log.debug("Broadcast presence of {} users", changes.size());
+
+            // a recipient that shares several chats with the user receives its change once
+            Map<String, Set<PresenceDto>> frames = new HashMap<>();
+            for (MemberChat memberChat : memberRepository.findChatsByUserIdIn(changes.keySet())) {
+                PresenceDto presence = new PresenceDto(memberChat.getUserId(), changes.get(memberChat.getUserId()));
+
+                for (String recipient : membershipCache.getMembers(memberChat.getChatId())) {
+                    if (recipient.equals(memberChat.getUserId()) || !isOnline(recipient)) {
+                        continue;
+                    }
+
+                    frames.computeIfAbsent(recipient, id -> new LinkedHashSet<>()).add(presence);
+                }
+            }
+
+            frames.forEach((recipient, presences) ->
+                    messagingTemplate.convertAndSendToUser(recipient, PRESENCE_DESTINATION, presences));
+        } catch (Exception e) {
+            // the exception would cancel the following broadcasts
+            log.error("Failed to broadcast presence changes", e);
+        }
+    }
+
+    // users whose current state differs from the announced one
+    private Map<String, Boolean> collectChanges() {
+        Map<String, Boolean> changes = new HashMap<>();
+
+        Iterator<String> iterator = changedUsers.iterator();
+        while (iterator.hasNext()) {
+            String userId = iterator.next();
+            iterator.remove();
+
+            boolean online = isOnline(userId);
+            boolean changed = online ? announcedOnline.add(userId) : announcedOnline.remove(userId);
+            if (changed) {
+                changes.put(userId, online);
+            }
+        }
+
+        return changes;
+    }
+}
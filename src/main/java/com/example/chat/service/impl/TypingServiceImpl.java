@@ -0,0 +1,55 @@
+package com.example.chat.service.impl;
+
+import com.example.chat.cache.MembershipCache;
+import com.example.chat.messaging.MessageBroadcaster;
+import com.example.chat.model.chat.member.MemberId;
+import com.example.chat.model.user.User;
+import com.example.chat.payload.chat.TypingDto;
+import com.example.chat.service.TypingService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+@Slf4j
+@Service
+public class TypingServiceImpl implements TypingService {
+    private static final long MAX_TYPING_MEMBERS = 100_000;
+
+    private final MembershipCache membershipCache;
+    private final MessageBroadcaster broadcaster;
+
+    // members that were broadcast within the interval, the entry expires when the next notification may be sent
+    private final Cache<MemberId, Boolean> recentlyTyping;
+
+    public TypingServiceImpl(
+            MembershipCache membershipCache,
+            MessageBroadcaster broadcaster,
+            @Value("${chat.typing.interval-ms}") long intervalMs
+    ) {
+        this.membershipCache = membershipCache;
+        this.broadcaster = broadcaster;
+        this.recentlyTyping = Caffeine.newBuilder()
+                .maximumSize(MAX_TYPING_MEMBERS)
+                .expireAfterWrite(Duration.ofMillis(intervalMs))
+                .build();
+    }
+
+    @Override
+    public void notifyTyping(String chatId, User actor) {
+        if (!membershipCache.isMember(chatId, actor.getId())) {
+            log.error("User {} is not a member of the chat {}", actor.getId(), chatId);
+            throw new IllegalStateException("Not a member of the chat");
+        }
+
+        // coalesce the notifications of the member, only the first one within the interval is broadcast
+        if (recentlyTyping.asMap().putIfAbsent(new MemberId(actor.getId(), chatId), Boolean.TRUE) != null) {
+            return;
+        }
+
+        broadcaster.broadcastTyping(chatId, new TypingDto(actor.getId(), actor.getNickname()));
+    }
+}
@@ -1,18 +1,29 @@
 package com.example.chat.service.impl;
 
+import com.example.chat.cache.UserProfileCache;
 import com.example.chat.exception.ResourceNotFoundException;
 import com.example.chat.model.user.User;
 import com.example.chat.payload.user.UserDto;
+import com.example.chat.payload.user.UserProfileDto;
 import com.example.chat.repository.UserRepository;
 import com.example.chat.service.UserService;
 import com.example.chat.utils.PayloadMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -20,7 +31,11 @@ import java.util.stream.Collectors;
 @Service
 @Transactional
 public class UserServiceImpl implements UserService {
+    private static final int MAX_SEARCH_LIMIT = 50;
+    private static final int MAX_PROFILES = 1000;
+
     private final UserRepository userRepository;
+    private final UserProfileCache userProfileCache;
     private final PayloadMapper mapper;
 
     @Override
@@ -36,6 +51,24 @@ public class UserServiceImpl implements UserService {
         return user.get();
     }
 
+    @Override
+    public List<User> getUserDomainObjects(Collection<String> userIds) {
+        log.debug("Get user domain objects. Ids {}", userIds);
+
+        Set<String> ids = new LinkedHashSet<>(userIds);
+        List<User> users = userRepository.findAllById(ids);
+
+        if (users.size() != ids.size()) {
+            Set<String> foundIds = users.stream().map(User::getId).collect(Collectors.toSet());
+            String missingId = ids.stream().filter(id -> !foundIds.contains(id)).findFirst().orElseThrow();
+
+            log.error("User with id {} doesn't exist", missingId);
+            throw new ResourceNotFoundException(missingId, User.class);
+        }
+
+        return users;
+    }
+
     @Override
     public UserDto getUser(String userId) {
         log.debug("Get user by id {}", userId);
@@ -44,11 +77,44 @@ public class UserServiceImpl implements UserService {
         return mapper.mapUserToUserDto(user);
     }
 
+    @Transactional(readOnly = true)
     @Override
-    public List<UserDto> getUsersByNickname(String nickname) {
-        log.debug("Get users with nickname that matches '{}'", nickname);
+    public List<UserProfileDto> getUserProfiles(Collection<String> userIds) {
+        log.debug("Get profiles of {} users", userIds.size());
+
+        Set<String> ids = new LinkedHashSet<>(userIds);
+        if (ids.size() > MAX_PROFILES) {
+            log.error("Too many users requested: {}", ids.size());
+            throw new IllegalStateException("Max number of users is " + MAX_PROFILES);
+        }
+
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<String, UserProfileDto> profiles = userProfileCache.getProfiles(ids);
+        return ids.stream()
+                .map(profiles::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<UserDto> getUsersByNickname(String nickname, Integer page, Integer limit) {
+        log.debug("Get page {} of {} users with nickname that starts with '{}'", page, limit, nickname);
+
+        if (page < 0 || limit < 1) {
+            log.error("Invalid page {} or number of users {}", page, limit);
+            throw new IllegalStateException("Page must not be negative and page size must not be less than one");
+        }
+
+        String prefix = User.normalizeNickname(nickname);
+        if (prefix == null || prefix.isEmpty()) {
+            return List.of();
+        }
 
-        List<User> users = userRepository.findByNicknameContainingIgnoreCase(nickname);
+        Pageable pageable = PageRequest.of(page, Math.min(limit, MAX_SEARCH_LIMIT), Sort.by("searchNickname", "id"));
+        Slice<User> users = userRepository.findBySearchNicknameStartingWith(prefix, pageable);
 
         return users.stream().map(mapper::mapUserToUserDto).collect(Collectors.toList());
     }
@@ -8,44 +8,164 @@ import com.example.chat.payload.chat.ChatDto;
 import com.example.chat.payload.chat.MemberDto;
 import com.example.chat.payload.chat.MessageDto;
 import com.example.chat.payload.user.UserDto;
-import lombok.RequiredArgsConstructor;
-import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Component;
 
-@RequiredArgsConstructor
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Maps domain objects to payloads and back.
+ * Mappings are written by hand, as they are on the hot path of every request and broadcast
+ */
 @Component
 public class PayloadMapper {
-    private final ModelMapper modelMapper;
 
     public UserDto mapUserToUserDto(User user) {
-        return modelMapper.map(user, UserDto.class);
+        if (user == null) {
+            return null;
+        }
+
+        return UserDto.builder()
+                .id(user.getId())
+                .nickname(user.getNickname())
+                .email(user.getEmail())
+                .createdAt(user.getCreatedAt())
+                .updatedAt(user.getUpdatedAt())
+                .build();
     }
 
     public User mapUserDtoToUser(UserDto userDto) {
-        return modelMapper.map(userDto, User.class);
+        if (userDto == null) {
+            return null;
+        }
+
+        return User.builder()
+                .id(userDto.getId())
+                .nickname(userDto.getNickname())
+                .email(userDto.getEmail())
+                .password(userDto.getPassword())
+                .createdAt(userDto.getCreatedAt())
+                .updatedAt(userDto.getUpdatedAt())
+                .build();
     }
 
     public ChatDto mapChatToChatDto(Chat chat) {
-        return modelMapper.map(chat, ChatDto.class);
+        if (chat == null) {
+            return null;
+        }
+
+        Set<Member> members = chat.getMembers();
+        return mapChatToChatDto(chat, members, members == null ? null : members.size());
+    }
+
+    /**
+     * Map chat with the given members instead of the members collection of the chat
+     *
+     * @param chat        chat to map
+     * @param members     members of the chat, or null to omit the members
+     * @param memberCount number of members of the chat
+     * @return mapped chat
+     */
+    public ChatDto mapChatToChatDto(Chat chat, Collection<Member> members, Integer memberCount) {
+        if (chat == null) {
+            return null;
+        }
+
+        Set<MemberDto> memberDtos = null;
+        if (members != null) {
+            memberDtos = new HashSet<>();
+            for (Member member : members) {
+                memberDtos.add(mapMemberToMemberDto(member));
+            }
+        }
+
+        return ChatDto.builder()
+                .id(chat.getId())
+                .name(chat.getName())
+                .description(chat.getDescription())
+                .members(memberDtos)
+                .memberCount(memberCount)
+                .lastMessage(mapMessageToMessageDto(chat.getLastMessage()))
+                .createdAt(chat.getCreatedAt())
+                .updatedAt(chat.getUpdatedAt())
+                .lastActivityAt(chat.getLastActivityAt())
+                .build();
     }
 
     public Chat mapChatDtoToChat(ChatDto chatDto) {
-        return modelMapper.map(chatDto, Chat.class);
+        if (chatDto == null) {
+            return null;
+        }
+
+        Set<Member> members = new HashSet<>();
+        if (chatDto.getMembers() != null) {
+            for (MemberDto memberDto : chatDto.getMembers()) {
+                members.add(mapMemberDtoToMember(memberDto));
+            }
+        }
+
+        return Chat.builder()
+                .id(chatDto.getId())
+                .name(chatDto.getName())
+                .description(chatDto.getDescription())
+                .members(members)
+                .lastMessage(mapMessageDtoToMessage(chatDto.getLastMessage()))
+                .createdAt(chatDto.getCreatedAt())
+                .updatedAt(chatDto.getUpdatedAt())
+                .lastActivityAt(chatDto.getLastActivityAt())
+                .build();
     }
 
     public MemberDto mapMemberToMemberDto(Member member) {
-        return modelMapper.map(member, MemberDto.class);
+        if (member == null) {
+            return null;
+        }
+
+        return MemberDto.builder()
+                .user(mapUserToUserDto(member.getUser()))
+                .role(member.getRole())
+                .joinedAt(member.getJoinedAt())
+                .updatedAt(member.getUpdatedAt())
+                .build();
     }
 
     public Member mapMemberDtoToMember(MemberDto memberDto) {
-        return modelMapper.map(memberDto, Member.class);
+        if (memberDto == null) {
+            return null;
+        }
+
+        return Member.builder()
+                .user(mapUserDtoToUser(memberDto.getUser()))
+                .role(memberDto.getRole())
+                .joinedAt(memberDto.getJoinedAt())
+                .updatedAt(memberDto.getUpdatedAt())
+                .build();
     }
 
     public MessageDto mapMessageToMessageDto(Message message) {
-        return modelMapper.map(message, MessageDto.class);
+        if (message == null) {
+            return null;
+        }
+
+        return MessageDto.builder()
+                .id(message.getId())
+                .user(mapUserToUserDto(message.getUser()))
+                .content(message.getContent())
+                .sentAt(message.getSentAt())
+                .build();
     }
 
     public Message mapMessageDtoToMessage(MessageDto messageDto) {
-        return modelMapper.map(messageDto, Message.class);
+        if (messageDto == null) {
+            return null;
+        }
+
+        return Message.builder()
+                .id(messageDto.getId())
+                .user(mapUserDtoToUser(messageDto.getUser()))
+                .content(messageDto.getContent())
+                .sentAt(messageDto.getSentAt())
+                .build();
     }
 }
@@ -3,7 +3,8 @@ package com.example.chat;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// the search index is a local directory, so it is not created by the tests
+@SpringBootTest(properties = "chat.search.enabled=false")
 class ApplicationTests {
 
 	@Test
@@ -0,0 +1,117 @@
+package com.example.chat.cache;
+
+import com.example.chat.messaging.ClusterEvents;
+import com.example.chat.repository.MemberRepository;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MembershipCacheTest {
+    @Mock
+    MemberRepository memberRepository;
+    @Mock
+    ClusterEvents clusterEvents;
+
+    MembershipCache membershipCache;
+
+    @BeforeEach
+    void init() {
+        membershipCache = new MembershipCache(memberRepository, clusterEvents, 1000, 10);
+    }
+
+    @Test
+    void whenIsMember_givenMembersAreCached_thenDontQueryRepositoryAgain() {
+        // given
+        String chatId = "qwer-1234";
+
+        // when
+        when(memberRepository.findUserIdsByChatId(chatId)).thenReturn(List.of("1234-qwer", "abcd-1234"));
+
+        boolean first = membershipCache.isMember(chatId, "1234-qwer");
+        boolean second = membershipCache.isMember(chatId, "abcd-1234");
+        boolean third = membershipCache.isMember(chatId, "4321-qwer");
+
+        // then
+        verify(memberRepository, times(1)).findUserIdsByChatId(chatId);
+
+        assertThat(first, Matchers.is(true));
+        assertThat(second, Matchers.is(true));
+        assertThat(third, Matchers.is(false));
+        assertThat(membershipCache.stats().hitCount(), Matchers.is(2L));
+        assertThat(membershipCache.stats().missCount(), Matchers.is(1L));
+    }
+
+    @Test
+    void whenEvict_givenMembersAreCached_thenReloadMembers() {
+        // given
+        String chatId = "qwer-1234";
+
+        // when
+        when(memberRepository.findUserIdsByChatId(chatId))
+                .thenReturn(List.of("1234-qwer"))
+                .thenReturn(List.of("1234-qwer", "abcd-1234"));
+
+        boolean before = membershipCache.isMember(chatId, "abcd-1234");
+        membershipCache.evict(chatId);
+        boolean after = membershipCache.isMember(chatId, "abcd-1234");
+
+        // then
+        verify(memberRepository, times(2)).findUserIdsByChatId(chatId);
+
+        assertThat(before, Matchers.is(false));
+        assertThat(after, Matchers.is(true));
+    }
+
+    @Test
+    void whenEvict_givenNoTransaction_thenPublishEvictionToOtherInstances() {
+        // given
+        String chatId = "qwer-1234";
+
+        // when
+        membershipCache.evict(chatId);
+
+        // then
+        verify(clusterEvents).publish(ClusterEvents.MEMBERSHIP_EVICTIONS, chatId);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void whenEvictionIsReceived_givenMembersAreCached_thenReloadMembers() {
+        // given
+        String chatId = "qwer-1234";
+
+        ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(clusterEvents).subscribe(eq(ClusterEvents.MEMBERSHIP_EVICTIONS), listener.capture());
+
+        // when
+        when(memberRepository.findUserIdsByChatId(chatId))
+                .thenReturn(List.of("1234-qwer", "abcd-1234"))
+                .thenReturn(List.of("1234-qwer"));
+
+        boolean before = membershipCache.isMember(chatId, "abcd-1234");
+        listener.getValue().accept(chatId);
+        boolean after = membershipCache.isMember(chatId, "abcd-1234");
+
+        // then
+        verify(memberRepository, times(2)).findUserIdsByChatId(chatId);
+        verify(clusterEvents, never()).publish(ClusterEvents.MEMBERSHIP_EVICTIONS, chatId);
+
+        assertThat(before, Matchers.is(true));
+        assertThat(after, Matchers.is(false));
+    }
+}
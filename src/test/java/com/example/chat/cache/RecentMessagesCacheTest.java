@@ -0,0 +1,211 @@
+package com.example.chat.cache;
+
+import com.example.chat.messaging.ClusterEvents;
+import com.example.chat.model.chat.Message;
+import com.example.chat.payload.chat.MessageDto;
+import com.example.chat.payload.user.UserDto;
+import com.example.chat.repository.MessageRepository;
+import com.example.chat.utils.PayloadMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RecentMessagesCacheTest {
+    @Mock
+    MessageRepository messageRepository;
+    @Mock
+    ClusterEvents clusterEvents;
+
+    RecentMessagesCache recentMessagesCache;
+
+    @BeforeEach
+    void init() {
+        recentMessagesCache = new RecentMessagesCache(messageRepository, new PayloadMapper(), clusterEvents,
+                new ObjectMapper().findAndRegisterModules(), 100, 3, 10);
+    }
+
+    @Test
+    void whenGetLatest_givenChatIsCached_thenDontQueryRepositoryAgain() {
+        // given
+        String chatId = "qwer-1234";
+        PageRequest pageRequest = PageRequest.ofSize(3).withSort(Sort.by(Sort.Direction.DESC, "id"));
+
+        // when
+        when(messageRepository.findSliceByChatId(chatId, pageRequest)).thenReturn(new SliceImpl<>(
+                List.of(Message.builder().id(30L).build(), Message.builder().id(20L).build(), Message.builder().id(10L).build()),
+                pageRequest, true
+        ));
+
+        RecentMessagesCache.LatestMessages first = recentMessagesCache.getLatest(chatId, 2);
+        RecentMessagesCache.LatestMessages second = recentMessagesCache.getLatest(chatId, 3);
+
+        // then
+        verify(messageRepository, times(1)).findSliceByChatId(chatId, pageRequest);
+        verify(messageRepository, never()).findAllByChatId(any(), any());
+
+        assertThat(ids(first), Matchers.contains(30L, 20L));
+        assertThat(first.isHasMore(), Matchers.is(true));
+        assertThat(ids(second), Matchers.contains(30L, 20L, 10L));
+        assertThat(second.isHasMore(), Matchers.is(true));
+    }
+
+    @Test
+    void whenAdd_givenChatIsCached_thenKeepOnlyLatestMessagesInOrder() {
+        // given
+        String chatId = "qwer-1234";
+
+        // when
+        when(messageRepository.findSliceByChatId(any(), any()))
+                .thenReturn(new SliceImpl<>(List.of(Message.builder().id(10L).build())));
+
+        recentMessagesCache.getLatest(chatId, 1);
+        recentMessagesCache.add(chatId, MessageDto.builder().id(30L).build());
+        recentMessagesCache.add(chatId, MessageDto.builder().id(40L).build());
+        recentMessagesCache.add(chatId, MessageDto.builder().id(20L).build());
+        recentMessagesCache.add(chatId, MessageDto.builder().id(40L).build());
+
+        RecentMessagesCache.LatestMessages latest = recentMessagesCache.getLatest(chatId, 3);
+
+        // then
+        assertThat(ids(latest), Matchers.contains(40L, 30L, 20L));
+        assertThat(latest.isHasMore(), Matchers.is(true));
+    }
+
+    @Test
+    void whenAdd_givenChatIsNotCached_thenSkipIt() {
+        // given
+        String chatId = "qwer-1234";
+
+        // when
+        recentMessagesCache.add(chatId, MessageDto.builder().id(30L).build());
+
+        // then
+        verify(messageRepository, never()).findSliceByChatId(any(), any());
+        assertThat(recentMessagesCache.stats().loadCount(), Matchers.is(0L));
+    }
+
+    @Test
+    void whenGetLatest_givenUnwrittenMessageOfUncachedChat_thenIncludeItInLoadedMessages() {
+        // given
+        String chatId = "qwer-1234";
+
+        // when
+        when(messageRepository.findSliceByChatId(any(), any()))
+                .thenReturn(new SliceImpl<>(List.of(Message.builder().id(20L).build(), Message.builder().id(10L).build())));
+
+        recentMessagesCache.addUnwritten(chatId, MessageDto.builder().id(30L).build());
+        recentMessagesCache.add(chatId, MessageDto.builder().id(30L).build());
+
+        RecentMessagesCache.LatestMessages latest = recentMessagesCache.getLatest(chatId, 3);
+
+        // then
+        assertThat(ids(latest), Matchers.contains(30L, 20L, 10L));
+        assertThat(latest.isHasMore(), Matchers.is(false));
+    }
+
+    @Test
+    void whenDropped_givenCachedUnwrittenMessage_thenReloadChatWithoutIt() {
+        // given
+        String chatId = "qwer-1234";
+
+        // when
+        when(messageRepository.findSliceByChatId(any(), any()))
+                .thenReturn(new SliceImpl<>(List.of(Message.builder().id(10L).build())));
+
+        recentMessagesCache.getLatest(chatId, 1);
+        recentMessagesCache.addUnwritten(chatId, MessageDto.builder().id(30L).build());
+        recentMessagesCache.add(chatId, MessageDto.builder().id(30L).build());
+        recentMessagesCache.dropped(chatId, 30L);
+
+        RecentMessagesCache.LatestMessages latest = recentMessagesCache.getLatest(chatId, 3);
+
+        // then
+        verify(messageRepository, times(2)).findSliceByChatId(any(), any());
+        verify(clusterEvents).publish(ClusterEvents.RECENT_MESSAGES_EVICTIONS, chatId);
+        assertThat(ids(latest), Matchers.contains(10L));
+        assertThat(latest.isHasMore(), Matchers.is(false));
+    }
+
+    @Test
+    void whenMessageIsReceived_givenChatIsCached_thenAddPublishedMessage() {
+        // given
+        String chatId = "qwer-1234";
+        MessageDto message = MessageDto.builder()
+                .id(30L)
+                .user(UserDto.builder().id("1234-qwer").nickname("j.doe").build())
+                .content("Test message")
+                .sentAt(LocalDateTime.of(2023, 1, 1, 12, 0))
+                .build();
+
+        // when
+        when(messageRepository.findSliceByChatId(any(), any()))
+                .thenReturn(new SliceImpl<>(List.of(Message.builder().id(10L).build())));
+
+        recentMessagesCache.getLatest(chatId, 1);
+        recentMessagesCache.add("other-chat", message);
+
+        ArgumentCaptor<String> published = ArgumentCaptor.forClass(String.class);
+        verify(clusterEvents).publish(eq(ClusterEvents.RECENT_MESSAGES), published.capture());
+
+        // the other instance publishes the same message to the cached chat
+        listener(ClusterEvents.RECENT_MESSAGES).accept(published.getValue().replace("other-chat", chatId));
+
+        RecentMessagesCache.LatestMessages latest = recentMessagesCache.getLatest(chatId, 3);
+
+        // then
+        assertThat(ids(latest), Matchers.contains(30L, 10L));
+        assertThat(latest.getMessages().get(0), Matchers.is(message));
+    }
+
+    @Test
+    void whenChatDeletionIsReceived_givenChatIsCached_thenLoadChatAgain() {
+        // given
+        String chatId = "qwer-1234";
+
+        // when
+        when(messageRepository.findSliceByChatId(any(), any()))
+                .thenReturn(new SliceImpl<>(List.of(Message.builder().id(10L).build())), new SliceImpl<>(List.of()));
+
+        recentMessagesCache.getLatest(chatId, 1);
+        listener(ClusterEvents.CHAT_DELETIONS).accept(chatId);
+
+        RecentMessagesCache.LatestMessages latest = recentMessagesCache.getLatest(chatId, 1);
+
+        // then
+        verify(messageRepository, times(2)).findSliceByChatId(any(), any());
+        assertThat(latest.getMessages(), Matchers.empty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Consumer<String> listener(String destination) {
+        ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(clusterEvents).subscribe(eq(destination), listener.capture());
+        return listener.getValue();
+    }
+
+    private List<Long> ids(RecentMessagesCache.LatestMessages latest) {
+        return latest.getMessages().stream().map(MessageDto::getId).collect(Collectors.toList());
+    }
+}
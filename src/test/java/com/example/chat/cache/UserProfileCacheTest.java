@@ -0,0 +1,68 @@
+package com.example.chat.cache;
+
+import com.example.chat.payload.user.UserProfileDto;
+import com.example.chat.repository.UserRepository;
+import com.example.chat.repository.projection.UserProfile;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserProfileCacheTest {
+    @Mock
+    UserRepository userRepository;
+
+    UserProfileCache userProfileCache;
+
+    @BeforeEach
+    void init() {
+        userProfileCache = new UserProfileCache(userRepository, 1000, 10);
+    }
+
+    @Test
+    void whenGetProfiles_givenSomeProfilesAreCached_thenLoadOnlyMissingOnesInSingleQuery() {
+        // given
+        UserProfile first = profile("1234-qwer", "first");
+        UserProfile second = profile("qwer-1234", "second");
+
+        // when
+        when(userRepository.findProfilesByIdIn(Set.of("1234-qwer"))).thenReturn(List.of(first));
+        when(userRepository.findProfilesByIdIn(Set.of("qwer-1234", "abcd-1234"))).thenReturn(List.of(second));
+
+        userProfileCache.getProfiles(List.of("1234-qwer"));
+        Map<String, UserProfileDto> result = userProfileCache.getProfiles(List.of("1234-qwer", "qwer-1234", "abcd-1234"));
+
+        // then
+        verify(userRepository).findProfilesByIdIn(Set.of("1234-qwer"));
+        verify(userRepository).findProfilesByIdIn(Set.of("qwer-1234", "abcd-1234"));
+
+        assertThat(result.keySet(), Matchers.containsInAnyOrder("1234-qwer", "qwer-1234"));
+        assertThat(result.get("qwer-1234").getNickname(), Matchers.is("second"));
+        assertThat(userProfileCache.stats().hitCount(), Matchers.is(1L));
+    }
+
+    private UserProfile profile(String id, String nickname) {
+        return new UserProfile() {
+            @Override
+            public String getId() {
+                return id;
+            }
+
+            @Override
+            public String getNickname() {
+                return nickname;
+            }
+        };
+    }
+}
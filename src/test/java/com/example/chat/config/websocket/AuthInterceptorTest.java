@@ -0,0 +1,186 @@
+package com.example.chat.config.websocket;
+
+import com.example.chat.config.security.jwt.JwtAuthenticationToken;
+import com.example.chat.metrics.ChatMetrics;
+import com.example.chat.model.user.User;
+import com.example.chat.service.JwtService;
+import com.example.chat.service.MemberService;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AuthInterceptorTest {
+    @Mock
+    JwtService jwtService;
+    @Mock
+    MemberService memberService;
+    @Mock
+    ChatMetrics metrics;
+    @Mock
+    MessageChannel channel;
+
+    AuthInterceptor authInterceptor;
+    Map<String, Object> sessionAttributes;
+    User user;
+
+    @BeforeEach
+    void init() {
+        authInterceptor = new AuthInterceptor(jwtService, memberService, metrics);
+        sessionAttributes = new HashMap<>();
+        user = User.builder().id("1234-qwer").email("test@mail.com").build();
+    }
+
+    @Test
+    void whenPreSend_givenConnectWithValidToken_thenBindAuthenticationToSession() {
+        // given
+        JwtAuthenticationToken authentication = authentication(Instant.now().plusSeconds(60));
+        Message<?> message = frame(StompCommand.CONNECT, null, "Bearer valid.token");
+
+        // when
+        when(jwtService.verifyToken("valid.token")).thenReturn(authentication);
+
+        authInterceptor.preSend(message, channel);
+
+        // then
+        assertThat(sessionAttributes.get(AuthInterceptor.SESSION_AUTHENTICATION), Matchers.is(authentication));
+        assertThat(StompHeaderAccessor.wrap(message).getUser(), Matchers.is(authentication));
+    }
+
+    @Test
+    void whenPreSend_givenConnectWithoutToken_thenThrowException() {
+        // given
+        Message<?> message = frame(StompCommand.CONNECT, null, null);
+
+        // then
+        assertThrows(IllegalStateException.class, () -> authInterceptor.preSend(message, channel));
+        verify(jwtService, never()).verifyToken(anyString());
+        assertThat(sessionAttributes.containsKey(AuthInterceptor.SESSION_AUTHENTICATION), Matchers.is(false));
+    }
+
+    @Test
+    void whenPreSend_givenSendBeforeConnect_thenThrowException() {
+        // given
+        Message<?> message = frame(StompCommand.SEND, "/app/chats/qwer-1234/messages", "Bearer valid.token");
+
+        // then
+        assertThrows(IllegalStateException.class, () -> authInterceptor.preSend(message, channel));
+        verify(jwtService, never()).verifyToken(anyString());
+    }
+
+    @Test
+    void whenPreSend_givenSessionTokenExpiredAndNoNewToken_thenThrowException() {
+        // given
+        sessionAttributes.put(AuthInterceptor.SESSION_AUTHENTICATION, authentication(Instant.now().minusSeconds(1)));
+        Message<?> message = frame(StompCommand.SEND, "/app/chats/qwer-1234/messages", null);
+
+        // then
+        assertThrows(IllegalStateException.class, () -> authInterceptor.preSend(message, channel));
+        verify(jwtService, never()).verifyToken(anyString());
+    }
+
+    @Test
+    void whenPreSend_givenSessionTokenExpiredAndNewToken_thenReplaceSessionAuthentication() {
+        // given
+        sessionAttributes.put(AuthInterceptor.SESSION_AUTHENTICATION, authentication(Instant.now().minusSeconds(1)));
+        JwtAuthenticationToken renewed = authentication(Instant.now().plusSeconds(60));
+        Message<?> message = frame(StompCommand.SEND, "/app/chats/qwer-1234/messages", "Bearer new.token");
+
+        // when
+        when(jwtService.verifyToken("new.token")).thenReturn(renewed);
+
+        Message<?> result = authInterceptor.preSend(message, channel);
+
+        // then
+        assertThat(sessionAttributes.get(AuthInterceptor.SESSION_AUTHENTICATION), Matchers.is(renewed));
+        assertThat(StompHeaderAccessor.wrap(result).getUser(), Matchers.is(renewed));
+    }
+
+    @Test
+    void whenPreSend_givenSendToBrokerDestination_thenThrowException() {
+        // given
+        sessionAttributes.put(AuthInterceptor.SESSION_AUTHENTICATION, authentication(Instant.now().plusSeconds(60)));
+        Message<?> message = frame(StompCommand.SEND, "/topic/chats/qwer-1234/messages", null);
+
+        // then
+        assertThrows(IllegalStateException.class, () -> authInterceptor.preSend(message, channel));
+    }
+
+    @Test
+    void whenPreSend_givenSubscribeToQueueOfOtherSession_thenThrowException() {
+        // given
+        sessionAttributes.put(AuthInterceptor.SESSION_AUTHENTICATION, authentication(Instant.now().plusSeconds(60)));
+        Message<?> message = frame(StompCommand.SUBSCRIBE, "/queue/inbox-user1234", null);
+
+        // then
+        assertThrows(IllegalStateException.class, () -> authInterceptor.preSend(message, channel));
+    }
+
+    @Test
+    void whenPreSend_givenSubscribeToChatOfNonMember_thenThrowException() {
+        // given
+        sessionAttributes.put(AuthInterceptor.SESSION_AUTHENTICATION, authentication(Instant.now().plusSeconds(60)));
+        Message<?> message = frame(StompCommand.SUBSCRIBE, "/topic/chats/qwer-1234/messages", null);
+
+        // when
+        when(memberService.isMemberOfTheChat(user.getId(), "qwer-1234")).thenReturn(false);
+
+        // then
+        assertThrows(IllegalStateException.class, () -> authInterceptor.preSend(message, channel));
+    }
+
+    @Test
+    void whenPreSend_givenSubscribeToChatOfMember_thenPassFrameWithSessionUser() {
+        // given
+        JwtAuthenticationToken authentication = authentication(Instant.now().plusSeconds(60));
+        sessionAttributes.put(AuthInterceptor.SESSION_AUTHENTICATION, authentication);
+        Message<?> message = frame(StompCommand.SUBSCRIBE, "/topic/chats/qwer-1234/messages", null);
+
+        // when
+        when(memberService.isMemberOfTheChat(user.getId(), "qwer-1234")).thenReturn(true);
+
+        Message<?> result = authInterceptor.preSend(message, channel);
+
+        // then
+        assertThat(StompHeaderAccessor.wrap(result).getUser(), Matchers.is(authentication));
+    }
+
+    private JwtAuthenticationToken authentication(Instant expiresAt) {
+        return new JwtAuthenticationToken("token", user, true, expiresAt);
+    }
+
+    private Message<?> frame(StompCommand command, String destination, String authorization) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId("session-1");
+        accessor.setSessionAttributes(sessionAttributes);
+        if (destination != null) {
+            accessor.setDestination(destination);
+        }
+        if (authorization != null) {
+            accessor.setNativeHeader(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        accessor.setLeaveMutable(true);
+
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
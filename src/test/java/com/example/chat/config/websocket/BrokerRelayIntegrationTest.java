@@ -0,0 +1,226 @@
+package com.example.chat.config.websocket;
+
+import com.example.chat.Application;
+import com.example.chat.model.user.User;
+import com.example.chat.payload.chat.ChatDto;
+import com.example.chat.payload.chat.MessageHistoryDto;
+import com.example.chat.payload.chat.MessageDto;
+import com.example.chat.payload.chat.UserId;
+import com.example.chat.repository.UserRepository;
+import com.example.chat.service.ChatService;
+import com.example.chat.service.JwtService;
+import com.example.chat.service.MessageService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.activemq.artemis.core.config.Configuration;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Starts an embedded STOMP broker and two instances of the application relaying to it,
+ * to verify that a message saved on one instance reaches the subscribers of both instances
+ * and becomes searchable on both of them
+ */
+class BrokerRelayIntegrationTest {
+    private static final long TIMEOUT_SEC = 10;
+
+    // every node holds the lock of its own index, as separate instances do
+    @TempDir
+    static Path indexDir;
+
+    static EmbeddedActiveMQ broker;
+    static ConfigurableApplicationContext node1;
+    static ConfigurableApplicationContext node2;
+
+    @BeforeAll
+    static void init() throws Exception {
+        int brokerPort = findFreePort();
+
+        Configuration configuration = new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .addAcceptorConfiguration("stomp", "tcp://localhost:" + brokerPort + "?protocols=STOMP");
+
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(configuration);
+        broker.start();
+
+        // both nodes share the same in-memory database
+        node1 = startNode(brokerPort, indexDir.resolve("node1"));
+        node2 = startNode(brokerPort, indexDir.resolve("node2"));
+    }
+
+    @AfterAll
+    static void destroy() throws Exception {
+        if (node1 != null) {
+            node1.close();
+        }
+        if (node2 != null) {
+            node2.close();
+        }
+        if (broker != null) {
+            broker.stop();
+        }
+    }
+
+    @Test
+    void whenSaveMessage_givenSubscribersOnBothNodes_thenBothReceiveMessage() throws Exception {
+        // given
+        User owner = saveUser("owner");
+        User member = saveUser("member");
+
+        ChatDto chatDto = ChatDto.builder().name("Cluster chat").users(List.of(new UserId(member.getId()))).build();
+        String chatId = node1.getBean(ChatService.class).createChat(chatDto, owner).getId();
+        String destination = "/topic/chats/" + chatId + "/messages";
+
+        BlockingQueue<Map<?, ?>> node1Messages = subscribe(node1, member, destination);
+        BlockingQueue<Map<?, ?>> node2Messages = subscribe(node2, member, destination);
+
+        // when
+        MessageDto messageDto = MessageDto.builder().content("Hello from node 1").build();
+        node1.getBean(MessageService.class).saveMessage(chatId, messageDto, owner);
+
+        // then
+        Map<?, ?> node1Message = node1Messages.poll(TIMEOUT_SEC, TimeUnit.SECONDS);
+        Map<?, ?> node2Message = node2Messages.poll(TIMEOUT_SEC, TimeUnit.SECONDS);
+
+        assertThat(node1Message, Matchers.notNullValue());
+        assertThat(node2Message, Matchers.notNullValue());
+        assertThat(node2Message.get("content"), Matchers.equalTo("Hello from node 1"));
+    }
+
+    private static ConfigurableApplicationContext startNode(int brokerPort, Path nodeIndexDir) throws InterruptedException {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:cluster;DB_CLOSE_DELAY=-1",
+                        "chat.broker.mode=" + WebsocketConfig.BROKER_MODE_RELAY,
+                        "chat.broker.relay.port=" + brokerPort,
+                        "chat.search.index-dir=" + nodeIndexDir,
+                        "chat.search.poll-interval-ms=100"
+                )
+                .run();
+
+        // messages published before the system session is connected are dropped
+        AbstractBrokerMessageHandler relay = context.getBean(AbstractBrokerMessageHandler.class);
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SEC);
+        while (!relay.isBrokerAvailable() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        return context;
+    }
+
+    @Test
+    void whenSaveMessage_givenOtherNode_thenMessageIsSearchableOnOtherNode() throws Exception {
+        // given
+        User owner = saveUser("owner");
+
+        ChatDto chatDto = ChatDto.builder().name("Search chat").users(List.of()).build();
+        String chatId = node1.getBean(ChatService.class).createChat(chatDto, owner).getId();
+
+        // when
+        MessageDto messageDto = MessageDto.builder().content("Searchable from node 2").build();
+        node1.getBean(MessageService.class).saveMessage(chatId, messageDto, owner);
+
+        // the message is indexed on the other node by its next poll of the messages table
+        MessageService node2MessageService = node2.getBean(MessageService.class);
+        MessageHistoryDto found = node2MessageService.searchMessages(chatId, "searchable", null, 10, owner);
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SEC);
+        while (found.getMessages().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            found = node2MessageService.searchMessages(chatId, "searchable", null, 10, owner);
+        }
+
+        // then
+        assertThat(found.getMessages(), Matchers.hasSize(1));
+        assertThat(found.getMessages().get(0).getContent(), Matchers.equalTo("Searchable from node 2"));
+    }
+
+    private User saveUser(String nickname) {
+        User user = User.builder()
+                .nickname(nickname + System.nanoTime())
+                .email(nickname + System.nanoTime() + "@mail.com")
+                .password("password")
+                .enabled(true)
+                .createdAt(LocalDateTime.now())
+                .build();
+
+        return node1.getBean(UserRepository.class).save(user);
+    }
+
+    private BlockingQueue<Map<?, ?>> subscribe(ConfigurableApplicationContext node, User user, String destination) throws Exception {
+        String token = node.getBean(JwtService.class).createToken(new UsernamePasswordAuthenticationToken(user, null, List.of()));
+
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(new ObjectMapper().findAndRegisterModules());
+
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        client.setMessageConverter(converter);
+
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+
+        String url = "ws://localhost:" + node.getEnvironment().getProperty("local.server.port") + "/ws";
+        StompSession session = client.connect(url, new WebSocketHttpHeaders(), connectHeaders, new StompSessionHandlerAdapter() {})
+                .get(TIMEOUT_SEC, TimeUnit.SECONDS);
+
+        // the receipt is sent by the broker once the subscription is registered
+        BlockingQueue<Map<?, ?>> messages = new LinkedBlockingQueue<>();
+        CountDownLatch subscribed = new CountDownLatch(1);
+
+        session.setAutoReceipt(true);
+        StompSession.Subscription subscription = session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                messages.add((Map<?, ?>) payload);
+            }
+        });
+        subscription.addReceiptTask(subscribed::countDown);
+
+        assertThat(subscribed.await(TIMEOUT_SEC, TimeUnit.SECONDS), Matchers.is(true));
+
+        return messages;
+    }
+
+    private static int findFreePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
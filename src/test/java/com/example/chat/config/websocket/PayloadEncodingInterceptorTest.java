@@ -0,0 +1,102 @@
+package com.example.chat.config.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class PayloadEncodingInterceptorTest {
+    private static final byte[] JSON = "{\"id\":1,\"content\":\"Hello\"}".getBytes(StandardCharsets.UTF_8);
+
+    ObjectMapper jsonMapper;
+    PayloadEncodingInterceptor interceptor;
+
+    @BeforeEach
+    void init() {
+        jsonMapper = new ObjectMapper();
+        interceptor = new PayloadEncodingInterceptor(jsonMapper, Jackson2ObjectMapperBuilder.json());
+    }
+
+    @Test
+    void whenPreSend_givenSessionAcceptedCbor_thenEncodeMessageToCborOnce() throws Exception {
+        // given
+        interceptor.preSend(connect("session-1", "application/cbor"), null);
+        interceptor.preSend(connect("session-2", "application/cbor"), null);
+
+        // when
+        Message<?> first = interceptor.preSend(message("session-1", JSON), null);
+        Message<?> second = interceptor.preSend(message("session-2", JSON), null);
+
+        // then
+        assertThat(interceptor.isBinarySession("session-1"), Matchers.is(true));
+        assertThat(first.getHeaders().get(MessageHeaders.CONTENT_TYPE), Matchers.is(PayloadEncodingInterceptor.APPLICATION_CBOR));
+        assertThat(first.getPayload(), Matchers.sameInstance(second.getPayload()));
+
+        JsonNode decoded = new ObjectMapper(new CBORFactory()).readTree((byte[]) first.getPayload());
+        assertThat(decoded, Matchers.is(jsonMapper.readTree(JSON)));
+    }
+
+    @Test
+    void whenPreSend_givenSessionDidntAcceptCbor_thenKeepJson() {
+        // given
+        interceptor.preSend(connect("session-1", null), null);
+        Message<?> message = message("session-1", JSON);
+
+        // when
+        Message<?> result = interceptor.preSend(message, null);
+
+        // then
+        assertThat(interceptor.isBinarySession("session-1"), Matchers.is(false));
+        assertThat(result, Matchers.sameInstance(message));
+    }
+
+    @Test
+    void whenPreSend_givenSessionDisconnected_thenForgetSession() {
+        // given
+        interceptor.preSend(connect("session-1", "application/cbor"), null);
+
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        accessor.setSessionId("session-1");
+
+        // when
+        interceptor.preSend(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), null);
+
+        // then
+        assertThat(interceptor.isBinarySession("session-1"), Matchers.is(false));
+    }
+
+    private Message<byte[]> connect(String sessionId, String acceptContentType) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        if (acceptContentType != null) {
+            accessor.setNativeHeader(PayloadEncodingInterceptor.ACCEPT_CONTENT_TYPE_HEADER, acceptContentType);
+        }
+
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private Message<byte[]> message(String sessionId, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination("/topic/chats/1/messages");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
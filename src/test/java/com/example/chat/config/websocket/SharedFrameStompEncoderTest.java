@@ -0,0 +1,107 @@
+package com.example.chat.config.websocket;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class SharedFrameStompEncoderTest {
+    private static final byte[] PAYLOAD = "{\"id\":1,\"content\":\"Hello\"}".getBytes(StandardCharsets.UTF_8);
+
+    SharedFrameStompEncoder encoder = new SharedFrameStompEncoder();
+    StompDecoder decoder = new StompDecoder();
+
+    @Test
+    void whenEncode_givenSamePayloadForManySubscribers_thenFramesMatchDefaultEncoder() {
+        // given
+        Message<byte[]> first = message("/topic/chats/1/messages", "sub-0", "session-1-0", PAYLOAD);
+        Message<byte[]> second = message("/topic/chats/1/messages", "sub-5", "session-2-0", PAYLOAD);
+
+        // when
+        byte[] firstFrame = encoder.encode(first);
+        byte[] secondFrame = encoder.encode(second);
+
+        // then
+        assertSameFrame(firstFrame, new StompEncoder().encode(first));
+        assertSameFrame(secondFrame, new StompEncoder().encode(second));
+    }
+
+    @Test
+    void whenEncode_givenSamePayloadWithOtherDestination_thenEncodeOtherDestination() {
+        // given
+        Message<byte[]> first = message("/topic/chats/1/messages", "sub-0", "session-1-0", PAYLOAD);
+        Message<byte[]> second = message("/topic/chats/2/messages", "sub-0", "session-1-1", PAYLOAD);
+
+        // when
+        encoder.encode(first);
+        byte[] secondFrame = encoder.encode(second);
+
+        // then
+        StompHeaderAccessor decoded = decode(secondFrame);
+        assertThat(decoded.getDestination(), Matchers.is("/topic/chats/2/messages"));
+    }
+
+    @Test
+    void whenEncode_givenFrameOtherThanMessage_thenUseDefaultEncoding() {
+        // given
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.ERROR);
+        accessor.setMessage("Not a member of the chat");
+        Message<byte[]> error = MessageBuilder.createMessage(PAYLOAD, accessor.getMessageHeaders());
+
+        // when
+        byte[] frame = encoder.encode(error);
+
+        // then
+        assertThat(frame, Matchers.is(new StompEncoder().encode(error)));
+    }
+
+    @Test
+    void whenEncode_givenHeaderThatMustBeEscaped_thenEscapeIt() {
+        // given
+        Message<byte[]> message = message("/topic/chats/1/messages", "sub:0", "session-1-0", PAYLOAD);
+
+        // when
+        byte[] frame = encoder.encode(message);
+
+        // then
+        assertThat(decode(frame).getSubscriptionId(), Matchers.is("sub:0"));
+    }
+
+    private void assertSameFrame(byte[] frame, byte[] expected) {
+        StompHeaderAccessor decoded = decode(frame);
+        StompHeaderAccessor expectedDecoded = decode(expected);
+
+        assertThat(decoded.getCommand(), Matchers.is(StompCommand.MESSAGE));
+        assertThat(decoded.toNativeHeaderMap(), Matchers.is(expectedDecoded.toNativeHeaderMap()));
+        assertThat(frame.length, Matchers.is(expected.length));
+    }
+
+    private StompHeaderAccessor decode(byte[] frame) {
+        List<Message<byte[]>> messages = decoder.decode(ByteBuffer.wrap(frame));
+        assertThat(messages, Matchers.hasSize(1));
+        assertThat(messages.get(0).getPayload(), Matchers.is(PAYLOAD));
+
+        return StompHeaderAccessor.wrap(messages.get(0));
+    }
+
+    private Message<byte[]> message(String destination, String subscriptionId, String messageId, byte[] payload) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setMessageId(messageId);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.chat.messaging;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterEventsTest {
+    @Mock
+    ObjectProvider<SimpMessagingTemplate> messagingTemplateProvider;
+    @Mock
+    ObjectProvider<StompBrokerRelayMessageHandler> brokerRelayProvider;
+    @Mock
+    SimpMessagingTemplate messagingTemplate;
+    @Mock
+    StompBrokerRelayMessageHandler brokerRelay;
+    @Mock
+    MessageHandler userRegistryHandler;
+
+    ClusterEvents clusterEvents;
+
+    @BeforeEach
+    void init() {
+        clusterEvents = new ClusterEvents(messagingTemplateProvider, brokerRelayProvider);
+    }
+
+    @Test
+    void whenPublish_givenSimpleBroker_thenDontSend() {
+        // given
+        when(brokerRelayProvider.getIfAvailable()).thenReturn(null);
+        clusterEvents.afterSingletonsInstantiated();
+
+        // when
+        clusterEvents.publish(ClusterEvents.MEMBERSHIP_EVICTIONS, "qwer-1234");
+
+        // then
+        verify(messagingTemplateProvider, never()).getObject();
+    }
+
+    @Test
+    void whenPublish_givenRelay_thenSendValueToBroker() {
+        // given
+        when(brokerRelayProvider.getIfAvailable()).thenReturn(brokerRelay);
+        when(messagingTemplateProvider.getObject()).thenReturn(messagingTemplate);
+        clusterEvents.afterSingletonsInstantiated();
+
+        // when
+        clusterEvents.publish(ClusterEvents.MEMBERSHIP_EVICTIONS, "qwer-1234");
+
+        // then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Message<byte[]>> message = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate).send(eq(ClusterEvents.MEMBERSHIP_EVICTIONS), message.capture());
+
+        assertThat(new String(message.getValue().getPayload(), StandardCharsets.UTF_8), Matchers.is("qwer-1234"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void whenEventIsReceived_givenRelay_thenCallListenersAndKeepOtherSubscriptions() throws Exception {
+        // given
+        List<String> received = new ArrayList<>();
+        clusterEvents.subscribe(ClusterEvents.MEMBERSHIP_EVICTIONS, received::add);
+
+        when(brokerRelayProvider.getIfAvailable()).thenReturn(brokerRelay);
+        when(brokerRelay.getSystemSubscriptions()).thenReturn(Map.of("/topic/simp-user-registry", userRegistryHandler));
+
+        // when
+        clusterEvents.afterSingletonsInstantiated();
+
+        ArgumentCaptor<Map<String, MessageHandler>> subscriptions = ArgumentCaptor.forClass(Map.class);
+        verify(brokerRelay).setSystemSubscriptions(subscriptions.capture());
+
+        subscriptions.getValue().get(ClusterEvents.MEMBERSHIP_EVICTIONS)
+                .handleMessage(MessageBuilder.withPayload("qwer-1234".getBytes(StandardCharsets.UTF_8)).build());
+
+        // then
+        verify(userRegistryHandler, never()).handleMessage(any());
+
+        assertThat(subscriptions.getValue().get("/topic/simp-user-registry"), Matchers.is(userRegistryHandler));
+        assertThat(received, Matchers.contains("qwer-1234"));
+    }
+}
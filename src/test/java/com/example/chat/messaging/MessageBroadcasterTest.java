@@ -0,0 +1,83 @@
+package com.example.chat.messaging;
+
+import com.example.chat.cache.MembershipCache;
+import com.example.chat.metrics.ChatMetrics;
+import com.example.chat.payload.chat.MessageDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MessageBroadcasterTest {
+    @Mock
+    SimpMessagingTemplate messagingTemplate;
+    @Mock
+    SimpUserRegistry userRegistry;
+    @Mock
+    MembershipCache membershipCache;
+    @Mock
+    ChatMetrics metrics;
+
+    @Test
+    void whenBroadcastMessage_givenTopicDelivery_thenSendToChatTopic() {
+        // given
+        MessageBroadcaster broadcaster = broadcaster(MessageBroadcaster.DELIVERY_TOPIC);
+
+        String chatId = "qwer-1234";
+        MessageDto message = MessageDto.builder().id(1L).content("Test message").build();
+
+        // when
+        broadcaster.broadcastMessage(chatId, message);
+
+        // then
+        verify(messagingTemplate).convertAndSend("/topic/chats/" + chatId + "/messages", message);
+        verify(messagingTemplate, never()).send(anyString(), any(Message.class));
+    }
+
+    @Test
+    void whenBroadcastMessage_givenInboxDelivery_thenSendToInboxesOfOnlineMembers() {
+        // given
+        MessageBroadcaster broadcaster = broadcaster(MessageBroadcaster.DELIVERY_INBOX);
+
+        String chatId = "qwer-1234";
+        MessageDto message = MessageDto.builder().id(1L).content("Test message").build();
+
+        // when
+        when(messagingTemplate.getMessageConverter()).thenReturn(new MappingJackson2MessageConverter());
+        when(membershipCache.getMembers(chatId)).thenReturn(Set.of("online", "offline"));
+        when(userRegistry.getUser("online")).thenReturn(Mockito.mock(SimpUser.class));
+        when(userRegistry.getUser("offline")).thenReturn(null);
+
+        broadcaster.broadcastMessage(chatId, message);
+
+        // then
+        verify(messagingTemplate).send(Mockito.eq("/user/online/queue/inbox"), any(Message.class));
+        verify(messagingTemplate, never()).send(Mockito.eq("/user/offline/queue/inbox"), any(Message.class));
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void whenCreateBroadcaster_givenUnknownDelivery_thenThrowException() {
+        assertThrows(IllegalStateException.class, () -> broadcaster("everywhere"));
+    }
+
+    private MessageBroadcaster broadcaster(String delivery) {
+        return new MessageBroadcaster(messagingTemplate, userRegistry, membershipCache, metrics, delivery);
+    }
+}
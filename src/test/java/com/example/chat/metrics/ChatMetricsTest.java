@@ -0,0 +1,86 @@
+package com.example.chat.metrics;
+
+import com.example.chat.cache.MembershipCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChatMetricsTest {
+    @Mock
+    MembershipCache membershipCache;
+
+    MeterRegistry registry;
+    ChatMetrics metrics;
+
+    @BeforeEach
+    void init() {
+        registry = new SimpleMeterRegistry();
+        metrics = new ChatMetrics(registry, membershipCache);
+    }
+
+    @Test
+    void whenRecordMessageSave_givenChatWithManyMembers_thenTagBySizeBucket() {
+        // given
+        String chatId = "qwer-1234";
+        Set<String> members = IntStream.range(0, 50).mapToObj(String::valueOf).collect(Collectors.toSet());
+
+        // when
+        when(membershipCache.getMembersIfPresent(chatId)).thenReturn(Optional.of(members));
+
+        metrics.recordMessageSave(metrics.startTimer(), chatId, ChatMetrics.MODE_SYNC, true);
+
+        // then
+        Timer timer = registry.find("chat.messages.save")
+                .tags("mode", ChatMetrics.MODE_SYNC, "chat.size", "11-100", "outcome", "success")
+                .timer();
+
+        assertThat(timer, Matchers.notNullValue());
+        assertThat(timer.count(), Matchers.equalTo(1L));
+    }
+
+    @Test
+    void whenRecordMessageSave_givenMembersAreNotCached_thenTagUnknownSize() {
+        // given
+        String chatId = "qwer-1234";
+
+        // when
+        when(membershipCache.getMembersIfPresent(chatId)).thenReturn(Optional.empty());
+
+        metrics.recordMessageSave(metrics.startTimer(), chatId, ChatMetrics.MODE_SYNC, false);
+
+        // then
+        Timer timer = registry.find("chat.messages.save")
+                .tags("mode", ChatMetrics.MODE_SYNC, "chat.size", ChatMetrics.CHAT_SIZE_UNKNOWN, "outcome", "error")
+                .timer();
+
+        assertThat(timer, Matchers.notNullValue());
+        assertThat(timer.count(), Matchers.equalTo(1L));
+    }
+
+    @Test
+    void whenRecordMembershipCheck_givenMemberAndNotMember_thenCountSeparately() {
+        // when
+        metrics.recordMembershipCheck(true);
+        metrics.recordMembershipCheck(true);
+        metrics.recordMembershipCheck(false);
+
+        // then
+        assertThat(registry.get("chat.membership.checks").tag("result", "member").counter().count(), Matchers.equalTo(2.0));
+        assertThat(registry.get("chat.membership.checks").tag("result", "not-member").counter().count(), Matchers.equalTo(1.0));
+    }
+}
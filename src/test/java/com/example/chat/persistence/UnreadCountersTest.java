@@ -0,0 +1,179 @@
+package com.example.chat.persistence;
+
+import com.example.chat.cache.MembershipCache;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UnreadCountersTest {
+    @Mock
+    JdbcTemplate jdbcTemplate;
+    @Mock
+    MembershipCache membershipCache;
+
+    UnreadCounters unreadCounters;
+
+    @BeforeEach
+    void init() {
+        // transaction manager is not needed, as the jdbc template is mocked
+        TransactionTemplate transactionTemplate = new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class));
+
+        unreadCounters = new UnreadCounters(jdbcTemplate, transactionTemplate, membershipCache, 1000);
+    }
+
+    @Test
+    void whenMessageSent_givenMembersOfChat_thenIncrementOtherMembersAndMarkReadForSender() {
+        // given
+        String chatId = "qwer-1234";
+
+        // when
+        when(membershipCache.getMembers(chatId)).thenReturn(Set.of("sender", "receiver"));
+
+        unreadCounters.messageSent(chatId, "sender", 10L);
+        unreadCounters.messageSent(chatId, "sender", 11L);
+
+        // then
+        assertThat(unreadCounters.getUnreadCount(chatId, "receiver", 3), Matchers.is(5));
+        assertThat(unreadCounters.getLastReadMessageId(chatId, "receiver", 5L), Matchers.is(5L));
+
+        assertThat(unreadCounters.getUnreadCount(chatId, "sender", 3), Matchers.is(0));
+        assertThat(unreadCounters.getLastReadMessageId(chatId, "sender", 5L), Matchers.is(11L));
+    }
+
+    @Test
+    void whenMarkRead_givenOlderReceipt_thenKeepNewerReadPointer() {
+        // given
+        String chatId = "qwer-1234";
+
+        // when
+        unreadCounters.markRead(chatId, "reader", 20L, 0);
+        unreadCounters.markRead(chatId, "reader", 15L, 5);
+
+        // then
+        assertThat(unreadCounters.getUnreadCount(chatId, "reader", 7), Matchers.is(0));
+        assertThat(unreadCounters.getLastReadMessageId(chatId, "reader", 10L), Matchers.is(20L));
+    }
+
+    @Test
+    void whenFlush_givenPendingChanges_thenWriteThemInBatchesAndClearThem() {
+        // given
+        String chatId = "qwer-1234";
+
+        // when
+        when(membershipCache.getMembers(chatId)).thenReturn(Set.of("sender", "receiver"));
+
+        unreadCounters.messageSent(chatId, "sender", 10L);
+        unreadCounters.flush();
+
+        // then
+        verify(jdbcTemplate).batchUpdate(contains("unread_count = coalesce"),
+                argThat((Collection<Object> batch) -> batch.size() == 1), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        verify(jdbcTemplate).batchUpdate(contains("last_read_message_id = ?"),
+                argThat((Collection<Object> batch) -> batch.size() == 1), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+
+        assertThat(unreadCounters.getUnreadCount(chatId, "receiver", 3), Matchers.is(3));
+    }
+
+    @Test
+    void whenFlush_givenReceiptAndLaterMessages_thenWriteBothAsDeltas() {
+        // given
+        String chatId = "qwer-1234";
+
+        // when
+        when(membershipCache.getMembers(chatId)).thenReturn(Set.of("sender", "reader"));
+
+        unreadCounters.markRead(chatId, "reader", 10L, 0);
+        unreadCounters.messageSent(chatId, "sender", 11L);
+
+        int unread = unreadCounters.getUnreadCount(chatId, "reader", 4);
+        unreadCounters.flush();
+
+        // then
+        verify(jdbcTemplate).batchUpdate(contains("unread_count = coalesce"),
+                argThat((Collection<Object> batch) -> batch.size() == 1), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        verify(jdbcTemplate).batchUpdate(contains("last_read_message_id = ?"),
+                argThat((Collection<Object> batch) -> batch.size() == 2), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+
+        assertThat(unread, Matchers.is(1));
+    }
+
+    @Test
+    void whenFlush_givenNoChanges_thenDontQueryDatabase() {
+        // when
+        unreadCounters.flush();
+
+        // then
+        verify(jdbcTemplate, never()).batchUpdate(any(String.class), any(Collection.class), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void whenFlush_givenFailedFlushAndLaterMessage_thenWriteBothIncrementsWithNextFlush() throws Exception {
+        // given
+        String chatId = "qwer-1234";
+
+        // when
+        when(membershipCache.getMembers(chatId)).thenReturn(Set.of("sender", "receiver"));
+        when(jdbcTemplate.batchUpdate(any(String.class), any(Collection.class), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"))
+                .thenReturn(new int[0][]);
+
+        unreadCounters.messageSent(chatId, "sender", 10L);
+        unreadCounters.flush();
+
+        unreadCounters.messageSent(chatId, "sender", 11L);
+        int unread = unreadCounters.getUnreadCount(chatId, "receiver", 3);
+        Long lastRead = unreadCounters.getLastReadMessageId(chatId, "sender", 5L);
+        unreadCounters.flush();
+
+        // then
+        ArgumentCaptor<Collection<Map.Entry<?, ?>>> batch = ArgumentCaptor.forClass(Collection.class);
+        ArgumentCaptor<ParameterizedPreparedStatementSetter<Map.Entry<?, ?>>> setter =
+                ArgumentCaptor.forClass(ParameterizedPreparedStatementSetter.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(contains("unread_count = coalesce"),
+                batch.capture(), anyInt(), setter.capture());
+
+        PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+        List<Map.Entry<?, ?>> increments = List.copyOf(batch.getAllValues().get(1));
+        setter.getAllValues().get(1).setValues(statement, increments.get(0));
+        verify(statement).setInt(1, 2);
+
+        assertThat(increments, Matchers.hasSize(1));
+        assertThat(unread, Matchers.is(5));
+        assertThat(lastRead, Matchers.is(11L));
+        assertThat(unreadCounters.getUnreadCount(chatId, "receiver", 5), Matchers.is(5));
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.chat.persistence;
+
+import com.example.chat.cache.UserProfileCache;
+import com.example.chat.model.user.User;
+import com.example.chat.service.JwtService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserChangeListenerTest {
+    @Mock
+    ObjectProvider<JwtService> jwtServiceProvider;
+    @Mock
+    JwtService jwtService;
+    @Mock
+    ObjectProvider<UserProfileCache> userProfileCacheProvider;
+    @Mock
+    UserProfileCache userProfileCache;
+
+    UserChangeListener userChangeListener;
+
+    @BeforeEach
+    void init() {
+        userChangeListener = new UserChangeListener(jwtServiceProvider, userProfileCacheProvider);
+    }
+
+    @Test
+    void whenUserChanged_givenNoTransaction_thenEvictCachedTokensAndProfileOfUser() {
+        // given
+        User user = User.builder().id("1234-qwer").email("test@mail.com").build();
+
+        // when
+        when(jwtServiceProvider.getObject()).thenReturn(jwtService);
+        when(userProfileCacheProvider.getObject()).thenReturn(userProfileCache);
+
+        userChangeListener.userChanged(user);
+
+        // then
+        verify(jwtService).evictUser("1234-qwer");
+        verify(userProfileCache).evict("1234-qwer");
+    }
+}
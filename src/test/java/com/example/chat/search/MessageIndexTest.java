@@ -0,0 +1,201 @@
+package com.example.chat.search;
+
+import com.example.chat.messaging.ClusterEvents;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MessageIndexTest {
+    @Mock
+    JdbcTemplate jdbcTemplate;
+    @Mock
+    ClusterEvents clusterEvents;
+
+    @TempDir
+    Path indexDir;
+
+    MessageIndex messageIndex;
+
+    @BeforeEach
+    void init() throws Exception {
+        // messages that are already in the table are indexed on startup
+        when(jdbcTemplate.<IndexedMessage>query(anyString(), any(RowMapper.class), eq(0L), eq(1000))).thenReturn(List.of(
+                new IndexedMessage(1, "chat-1", "Hello world"),
+                new IndexedMessage(2, "chat-2", "hello there"),
+                new IndexedMessage(3, "chat-1", "hello again"),
+                new IndexedMessage(4, "chat-1", "bye")
+        ));
+
+        // polls and full rebuilds are not scheduled, the tests run them directly
+        messageIndex = new MessageIndex(jdbcTemplate, clusterEvents, true, indexDir.toString(), 100, 10, 1000, false, 0, 0, 2);
+        messageIndex.start();
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        messageIndex.stop();
+    }
+
+    @Test
+    void whenSearch_givenIndexedMessages_thenReturnMatchingMessagesOfChatsFromNewestToOldest() {
+        // when
+        List<Long> result = await(() -> messageIndex.search(List.of("chat-1"), "hello", null, 10), 2);
+
+        // then
+        assertThat(result, Matchers.contains(3L, 1L));
+    }
+
+    @Test
+    void whenSearch_givenBeforeCursor_thenReturnOlderMessagesOfAllGivenChats() {
+        // when
+        List<Long> result = await(() -> messageIndex.search(List.of("chat-1", "chat-2"), "hello", 3L, 10), 2);
+
+        // then
+        assertThat(result, Matchers.contains(2L, 1L));
+    }
+
+    @Test
+    void whenSubmit_givenNewMessage_thenMessageBecomesSearchable() {
+        // given
+        await(() -> messageIndex.search(List.of("chat-1"), "hello", null, 10), 2);
+
+        // when
+        messageIndex.submit(new IndexedMessage(5, "chat-1", "hello later"));
+
+        List<Long> result = await(() -> messageIndex.search(List.of("chat-1"), "later hello", null, 10), 1);
+
+        // then
+        assertThat(result, Matchers.contains(5L));
+    }
+
+    @Test
+    void whenDeleteChat_givenIndexedMessages_thenRemoveOnlyMessagesOfChat() {
+        // given
+        await(() -> messageIndex.search(List.of("chat-1", "chat-2"), "hello", null, 10), 3);
+
+        // when
+        messageIndex.deleteChat("chat-1");
+
+        List<Long> result = await(() -> messageIndex.search(List.of("chat-1", "chat-2"), "hello", null, 10), 1);
+
+        // then
+        assertThat(result, Matchers.contains(2L));
+    }
+
+    @Test
+    void whenDeleteChat_givenNoTransaction_thenPublishDeletionToOtherInstances() {
+        // when
+        messageIndex.deleteChat("chat-1");
+
+        // then
+        verify(clusterEvents).publish(ClusterEvents.CHAT_DELETIONS, "chat-1");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void whenChatDeletionIsReceived_givenIndexedMessages_thenRemoveMessagesOfChat() {
+        // given
+        await(() -> messageIndex.search(List.of("chat-1", "chat-2"), "hello", null, 10), 3);
+
+        ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+        verify(clusterEvents).subscribe(eq(ClusterEvents.CHAT_DELETIONS), listener.capture());
+
+        // when
+        listener.getValue().accept("chat-1");
+
+        List<Long> result = messageIndex.search(List.of("chat-1", "chat-2"), "hello", null, 10);
+
+        // then
+        assertThat(result, Matchers.contains(2L));
+    }
+
+    @Test
+    void whenPoll_givenMessagesOfOtherInstanceBelowHighestPolledId_thenIndexThem() {
+        // given
+        await(() -> messageIndex.search(List.of("chat-1"), "hello", null, 10), 2);
+
+        List<IndexedMessage> table = new ArrayList<>(List.of(
+                new IndexedMessage(1, "chat-1", "Hello world"),
+                new IndexedMessage(2, "chat-2", "hello there"),
+                new IndexedMessage(3, "chat-1", "hello again"),
+                new IndexedMessage(4, "chat-1", "bye")
+        ));
+        when(jdbcTemplate.<IndexedMessage>query(anyString(), any(RowMapper.class), anyLong(), eq(1000))).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(2);
+            return table.stream().filter(message -> message.getId() > afterId).collect(Collectors.toList());
+        });
+
+        // when
+        table.add(new IndexedMessage(7, "chat-1", "hello from another instance"));
+        messageIndex.poll();
+
+        // the other instance writes a message from its own block of ids after the higher one
+        table.add(4, new IndexedMessage(6, "chat-1", "hello late"));
+        messageIndex.poll();
+
+        List<Long> result = messageIndex.search(List.of("chat-1"), "hello", null, 10);
+
+        // then
+        assertThat(result, Matchers.contains(7L, 6L, 3L, 1L));
+    }
+
+    @Test
+    void whenRebuildAll_givenDeletedChat_thenRemoveMessagesOfChat() {
+        // given
+        await(() -> messageIndex.search(List.of("chat-1", "chat-2"), "hello", null, 10), 3);
+
+        // when
+        when(jdbcTemplate.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+                .thenReturn(List.of("chat-2"));
+
+        messageIndex.rebuildAll();
+
+        List<Long> result = messageIndex.search(List.of("chat-1", "chat-2"), "hello", null, 10);
+
+        // then
+        assertThat(result, Matchers.contains(2L));
+    }
+
+    // messages are indexed in the background, so the search is repeated until it finds the expected number of them
+    private List<Long> await(Supplier<List<Long>> search, int expected) {
+        long deadline = System.currentTimeMillis() + 5000;
+
+        List<Long> result = search.get();
+        while (result.size() != expected && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            result = search.get();
+        }
+
+        return result;
+    }
+}
@@ -15,7 +15,6 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -53,9 +52,7 @@ class AuthServiceImplTest {
 
     @BeforeEach
     void init() {
-        // payload mapper requires model mapper
-        ModelMapper modelMapper = Mockito.spy(ModelMapper.class);
-        mapper = Mockito.spy(new PayloadMapper(modelMapper));
+        mapper = Mockito.spy(new PayloadMapper());
 
         authService = new AuthServiceImpl(userRepository, passwordEncoder, jwtService, authManager, mapper);
     }
@@ -7,9 +7,11 @@ import com.example.chat.model.chat.member.MemberId;
 import com.example.chat.model.chat.member.MemberRole;
 import com.example.chat.model.user.User;
 import com.example.chat.payload.chat.ChatDto;
+import com.example.chat.payload.chat.InboxDto;
 import com.example.chat.payload.chat.UserId;
 import com.example.chat.repository.ChatRepository;
 import com.example.chat.service.MemberService;
+import com.example.chat.service.MessageService;
 import com.example.chat.service.UserService;
 import com.example.chat.utils.PayloadMapper;
 import org.hamcrest.Matchers;
@@ -18,12 +20,17 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -40,6 +47,8 @@ class ChatServiceImplTest {
     UserService userService;
     @Mock
     MemberService memberService;
+    @Mock
+    MessageService messageService;
 
     PayloadMapper mapper;
 
@@ -47,11 +56,9 @@ class ChatServiceImplTest {
 
     @BeforeEach
     void init() {
-        // payload mapper requires model mapper
-        ModelMapper modelMapper = Mockito.spy(ModelMapper.class);
-        mapper = Mockito.spy(new PayloadMapper(modelMapper));
+        mapper = Mockito.spy(new PayloadMapper());
 
-        chatService = new ChatServiceImpl(chatRepository, userService, memberService, mapper);
+        chatService = new ChatServiceImpl(chatRepository, userService, memberService, messageService, mapper);
     }
 
     @Test
@@ -92,13 +99,13 @@ class ChatServiceImplTest {
         ChatDto chatDto = ChatDto.builder().name("Test").description("Test chat").users(users).build();
 
         // when
-        when(userService.getUserDomainObject(other.getId())).thenReturn(other);
+        when(userService.getUserDomainObjects(List.of(other.getId()))).thenReturn(List.of(other));
         when(chatRepository.save(Mockito.any(Chat.class))).then(returnsFirstArg());
 
         ChatDto result = chatService.createChat(chatDto, actor);
 
         // then
-        verify(userService).getUserDomainObject(other.getId());
+        verify(userService).getUserDomainObjects(List.of(other.getId()));
         verify(chatRepository).save(Mockito.any(Chat.class));
 
         assertThat(result.getName(), Matchers.is(chatDto.getName()));
@@ -118,11 +125,11 @@ class ChatServiceImplTest {
 
         // when
         when(chatRepository.save(Mockito.any(Chat.class))).then(returnsFirstArg());
-        when(userService.getUserDomainObject(userId)).thenThrow(new ResourceNotFoundException(userId, User.class));
+        when(userService.getUserDomainObjects(List.of(userId))).thenThrow(new ResourceNotFoundException(userId, User.class));
 
         // then
         assertThrows(ResourceNotFoundException.class, () -> chatService.createChat(chatDto, actor));
-        verify(userService).getUserDomainObject(userId);
+        verify(userService).getUserDomainObjects(List.of(userId));
     }
 
     @Test
@@ -140,11 +147,11 @@ class ChatServiceImplTest {
 
         // when
         when(chatRepository.save(Mockito.any(Chat.class))).then(returnsFirstArg());
-        when(userService.getUserDomainObject(id)).thenReturn(other);
+        when(userService.getUserDomainObjects(List.of(id))).thenReturn(List.of(other));
 
         // then
         assertThrows(RuntimeException.class, () -> chatService.createChat(chatDto, actor));
-        verify(userService).getUserDomainObject(id);
+        verify(userService).getUserDomainObjects(List.of(id));
     }
 
 
@@ -244,7 +251,12 @@ class ChatServiceImplTest {
 
         // then
         verify(memberService).getMemberDomainObject(actorId, chatId);
-        verify(chatRepository).delete(chat);
+        InOrder inOrder = Mockito.inOrder(chatRepository, messageService, memberService);
+        inOrder.verify(messageService).discardQueuedMessagesOfChat(chatId);
+        inOrder.verify(chatRepository).clearLastMessage(chatId);
+        inOrder.verify(messageService).deleteMessagesOfChat(chatId);
+        inOrder.verify(memberService).deleteMembersOfChat(chatId);
+        inOrder.verify(chatRepository).deleteChatById(chatId);
     }
 
     @Test
@@ -336,15 +348,103 @@ class ChatServiceImplTest {
         Chat chat2 = Chat.builder().id("qwer-4321").name("Test 1").build();
 
         List<Chat> chats = List.of(chat1, chat2);
+        List<String> chatIds = List.of(chat1.getId(), chat2.getId());
+
+        Member member1 = new Member(actor, chat1, MemberRole.OWNER);
+        Member member2 = new Member(actor, chat2, MemberRole.DEFAULT);
 
         // when
-        when(chatRepository.findByUserId(actor.getId())).thenReturn(chats);
+        when(chatRepository.findInboxByUserId(actor.getId())).thenReturn(chats);
+        when(memberService.getMembersOfChatsDomainObjects(chatIds))
+                .thenReturn(Map.of(chat1.getId(), List.of(member1), chat2.getId(), List.of(member2)));
 
-        List<ChatDto> result = chatService.getChatsOfActor(actor);
+        List<ChatDto> result = chatService.getChatsOfActor(actor, true);
 
         // then
-        verify(chatRepository).findByUserId(actor.getId());
+        verify(chatRepository).findInboxByUserId(actor.getId());
+        verify(memberService).getMembersOfChatsDomainObjects(chatIds);
 
         assertThat(result, Matchers.hasSize(2));
+        assertThat(result.get(0).getMembers(), Matchers.hasSize(1));
+        assertThat(result.get(0).getMemberCount(), Matchers.equalTo(1));
+    }
+
+    @Test
+    void whenGetChatsOfActor_givenMembersAreOmitted_thenReturnChatsWithMemberCount() {
+        // given
+        User actor = User.builder().id("1234-abcd").email("owner@mail.com").build();
+
+        Chat chat = Chat.builder().id("4321-qwer").name("Test").build();
+
+        // when
+        when(chatRepository.findInboxByUserId(actor.getId())).thenReturn(List.of(chat));
+        when(memberService.countMembersOfChats(List.of(chat.getId()))).thenReturn(Map.of(chat.getId(), 3));
+
+        List<ChatDto> result = chatService.getChatsOfActor(actor, false);
+
+        // then
+        verify(memberService).countMembersOfChats(List.of(chat.getId()));
+
+        assertThat(result, Matchers.hasSize(1));
+        assertThat(result.get(0).getMembers(), Matchers.nullValue());
+        assertThat(result.get(0).getMemberCount(), Matchers.equalTo(3));
+    }
+
+    @Test
+    void whenGetChatsOfActor_givenNoChats_thenReturnEmptyList() {
+        // given
+        User actor = User.builder().id("1234-abcd").email("owner@mail.com").build();
+
+        // when
+        when(chatRepository.findInboxByUserId(actor.getId())).thenReturn(List.of());
+
+        List<ChatDto> result = chatService.getChatsOfActor(actor, true);
+
+        // then
+        assertThat(result, Matchers.empty());
+    }
+
+    @Test
+    void whenGetInboxOfActor_givenCursorOfThePreviousPage_thenReturnNextPage() {
+        // given
+        User actor = User.builder().id("1234-abcd").email("owner@mail.com").build();
+
+        LocalDateTime lastActivityAt = LocalDateTime.of(2023, 1, 1, 10, 0);
+        Chat chat1 = Chat.builder().id("4321-qwer").name("Test").lastActivityAt(lastActivityAt.plusMinutes(1)).build();
+        Chat chat2 = Chat.builder().id("qwer-4321").name("Test 1").lastActivityAt(lastActivityAt).build();
+        Chat chat3 = Chat.builder().id("asdf-4321").name("Test 2").lastActivityAt(lastActivityAt).build();
+
+        Pageable pageable = PageRequest.ofSize(2);
+
+        // when
+        when(chatRepository.findInboxSliceByUserId(actor.getId(), pageable))
+                .thenReturn(new SliceImpl<>(List.of(chat1, chat2), pageable, true));
+        when(memberService.countMembersOfChats(Mockito.anyList())).thenReturn(Map.of());
+
+        InboxDto firstPage = chatService.getInboxOfActor(actor, null, 2, false);
+
+        when(chatRepository.findInboxSliceByUserIdAfter(actor.getId(), lastActivityAt, chat2.getId(), pageable))
+                .thenReturn(new SliceImpl<>(List.of(chat3), pageable, false));
+
+        InboxDto secondPage = chatService.getInboxOfActor(actor, firstPage.getNextCursor(), 2, false);
+
+        // then
+        verify(chatRepository).findInboxSliceByUserIdAfter(actor.getId(), lastActivityAt, chat2.getId(), pageable);
+
+        assertThat(firstPage.getChats(), Matchers.hasSize(2));
+        assertThat(firstPage.isHasMore(), Matchers.is(true));
+        assertThat(secondPage.getChats(), Matchers.hasSize(1));
+        assertThat(secondPage.getChats().get(0).getId(), Matchers.equalTo(chat3.getId()));
+        assertThat(secondPage.isHasMore(), Matchers.is(false));
+    }
+
+    @Test
+    void whenGetInboxOfActor_givenInvalidCursor_thenThrowException() {
+        // given
+        User actor = User.builder().id("1234-abcd").email("owner@mail.com").build();
+
+        // then
+        assertThrows(IllegalStateException.class, () -> chatService.getInboxOfActor(actor, "not a cursor", 20, false));
+        Mockito.verifyNoInteractions(chatRepository);
     }
-}
\ No newline at end of file
+}
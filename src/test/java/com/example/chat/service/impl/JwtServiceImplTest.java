@@ -0,0 +1,95 @@
+package com.example.chat.service.impl;
+
+import com.example.chat.model.user.User;
+import com.example.chat.repository.UserRepository;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class JwtServiceImplTest {
+    @Mock
+    UserRepository userRepository;
+
+    JwtServiceImpl jwtService;
+
+    @BeforeEach
+    void init() {
+        jwtService = new JwtServiceImpl(userRepository, "test.secret", 60, 100, 60);
+    }
+
+    @Test
+    void whenVerifyToken_givenTokenIsVerifiedTwice_thenLoadUserOnce() {
+        // given
+        String userId = "1234-qwer";
+        User user = User.builder().id(userId).email("test@mail.com").enabled(true).build();
+
+        String token = jwtService.createToken(new UsernamePasswordAuthenticationToken(user, null));
+
+        // when
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+
+        Authentication first = jwtService.verifyToken(token);
+        Authentication second = jwtService.verifyToken(token);
+
+        // then
+        verify(userRepository, times(1)).findById(userId);
+
+        assertThat(first.getPrincipal(), Matchers.is(user));
+        assertThat(second.getPrincipal(), Matchers.is(user));
+        assertThat(second.isAuthenticated(), Matchers.is(true));
+        assertThat(second.getPrincipal(), Matchers.not(Matchers.sameInstance(first.getPrincipal())));
+    }
+
+    @Test
+    void whenVerifyToken_givenUserIsEvicted_thenLoadUserAgain() {
+        // given
+        String userId = "1234-qwer";
+        User user = User.builder().id(userId).email("test@mail.com").enabled(true).build();
+
+        String token = jwtService.createToken(new UsernamePasswordAuthenticationToken(user, null));
+
+        // when
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+
+        jwtService.verifyToken(token);
+        jwtService.evictUser(userId);
+        jwtService.verifyToken(token);
+
+        // then
+        verify(userRepository, times(2)).findById(userId);
+    }
+
+    @Test
+    void whenVerifyToken_givenUserIsDisabled_thenThrowException() {
+        // given
+        String userId = "1234-qwer";
+        User user = User.builder().id(userId).email("test@mail.com").enabled(false).build();
+
+        String token = jwtService.createToken(new UsernamePasswordAuthenticationToken(user, null));
+
+        // when
+        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+
+        // then
+        assertThrows(IllegalStateException.class, () -> jwtService.verifyToken(token));
+    }
+
+    @Test
+    void whenVerifyToken_givenInvalidToken_thenThrowException() {
+        assertThrows(IllegalStateException.class, () -> jwtService.verifyToken("invalid.jwt.token"));
+    }
+}
@@ -1,14 +1,20 @@
 package com.example.chat.service.impl;
 
+import com.example.chat.cache.MembershipCache;
 import com.example.chat.exception.ResourceNotFoundException;
+import com.example.chat.metrics.ChatMetrics;
 import com.example.chat.model.chat.Chat;
 import com.example.chat.model.chat.member.Member;
 import com.example.chat.model.chat.member.MemberId;
 import com.example.chat.model.chat.member.MemberRole;
 import com.example.chat.model.user.User;
+import com.example.chat.persistence.MemberBatchWriter;
+import com.example.chat.persistence.UnreadCounters;
 import com.example.chat.payload.chat.MemberDto;
+import com.example.chat.payload.chat.MembersBatchRequest;
 import com.example.chat.payload.chat.UserId;
 import com.example.chat.repository.MemberRepository;
+import com.example.chat.repository.projection.MemberUnreadCount;
 import com.example.chat.service.UserService;
 import com.example.chat.utils.PayloadMapper;
 import org.hamcrest.Matchers;
@@ -20,16 +26,20 @@ import org.junit.jupiter.params.provider.EnumSource;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -40,16 +50,24 @@ class MemberServiceImplTest {
     MemberRepository memberRepository;
     @Mock
     UserService userService;
+    @Mock
+    MembershipCache membershipCache;
+    @Mock
+    MemberBatchWriter memberBatchWriter;
+    @Mock
+    UnreadCounters unreadCounters;
+    @Mock
+    ChatMetrics metrics;
     PayloadMapper mapper;
     MemberServiceImpl memberService;
 
     @BeforeEach
     void init() {
-        // payload mapper requires model mapper
-        ModelMapper modelMapper = Mockito.spy(ModelMapper.class);
-        mapper = Mockito.spy(new PayloadMapper(modelMapper));
+        mapper = Mockito.spy(new PayloadMapper());
 
-        memberService = new MemberServiceImpl(memberRepository, userService, mapper);
+        memberService = new MemberServiceImpl(
+                memberRepository, userService, membershipCache, memberBatchWriter, unreadCounters, metrics, mapper
+        );
     }
 
     @Test
@@ -58,16 +76,13 @@ class MemberServiceImplTest {
         String userId = "1234-qwer";
         String chatId = "qwer-1234";
 
-        MemberId memberId = new MemberId(userId, chatId);
-        Member member = Member.builder().id(memberId).build();
-
         // when
-        when(memberRepository.findById(memberId)).thenReturn(Optional.of(member));
+        when(membershipCache.isMember(chatId, userId)).thenReturn(true);
 
         boolean result = memberService.isMemberOfTheChat(userId, chatId);
 
         // then
-        verify(memberRepository).findById(memberId);
+        verify(membershipCache).isMember(chatId, userId);
         assertThat(result, Matchers.is(true));
     }
 
@@ -77,15 +92,13 @@ class MemberServiceImplTest {
         String userId = "1234-qwer";
         String chatId = "qwer-1234";
 
-        MemberId memberId = new MemberId(userId, chatId);
-
         // when
-        when(memberRepository.findById(memberId)).thenReturn(Optional.empty());
+        when(membershipCache.isMember(chatId, userId)).thenReturn(false);
 
         boolean result = memberService.isMemberOfTheChat(userId, chatId);
 
         // then
-        verify(memberRepository).findById(memberId);
+        verify(membershipCache).isMember(chatId, userId);
         assertThat(result, Matchers.is(false));
     }
 
@@ -105,13 +118,13 @@ class MemberServiceImplTest {
         );
 
         // when
-        when(memberRepository.findById(actorMember.getId())).thenReturn(Optional.of(actorMember));
+        when(membershipCache.isMember(chatId, actorId)).thenReturn(true);
         when(memberRepository.findByChat_Id(chatId)).thenReturn(members);
 
         List<MemberDto> result = memberService.getChatMembers(chatId, actor);
 
         // then
-        verify(memberRepository).findById(actorMember.getId());
+        verify(membershipCache).isMember(chatId, actorId);
         verify(memberRepository).findByChat_Id(chatId);
 
         assertThat(result, Matchers.hasSize(3));
@@ -129,14 +142,13 @@ class MemberServiceImplTest {
         String actorId = "1234-qwer";
 
         User actor = User.builder().id(actorId).build();
-        MemberId memberId = new MemberId(actorId, chatId);
 
         // when
-        when(memberRepository.findById(memberId)).thenReturn(Optional.empty());
+        when(membershipCache.isMember(chatId, actorId)).thenReturn(false);
 
         // then
         assertThrows(RuntimeException.class, () -> memberService.getChatMembers(chatId, actor));
-        verify(memberRepository).findById(memberId);
+        verify(membershipCache).isMember(chatId, actorId);
     }
 
     @Test
@@ -152,14 +164,13 @@ class MemberServiceImplTest {
         UserId userIdDto = new UserId(userId);
 
         User user = User.builder().id(userId).build();
-        MemberId userMemberId = new MemberId(userId, chatId);
 
         MemberId actorMemberId = new MemberId(actorId, chatId);
         Member actorMember = Member.builder().id(actorMemberId).user(actor).chat(chat).build();
 
         // when
         when(memberRepository.findById(actorMemberId)).thenReturn(Optional.of(actorMember));
-        when(memberRepository.findById(userMemberId)).thenReturn(Optional.empty());
+        when(membershipCache.isMember(chatId, userId)).thenReturn(false);
         when(userService.getUserDomainObject(userId)).thenReturn(user);
         when(memberRepository.save(any(Member.class))).then(returnsFirstArg());
 
@@ -167,9 +178,10 @@ class MemberServiceImplTest {
 
         // then
         verify(memberRepository).findById(actorMemberId);
-        verify(memberRepository).findById(userMemberId);
+        verify(membershipCache).isMember(chatId, userId);
         verify(userService).getUserDomainObject(userId);
         verify(memberRepository).save(any(Member.class));
+        verify(membershipCache).evict(chatId);
 
         assertThat(result.getUser().getId(), Matchers.is(user.getId()));
         assertThat(result.getRole(), Matchers.is(MemberRole.DEFAULT));
@@ -209,21 +221,17 @@ class MemberServiceImplTest {
         String userId = "qwre-1234";
         UserId userIdDto = new UserId(userId);
 
-        User user = User.builder().id(userId).build();
-        MemberId userMemberId = new MemberId(userId, chatId);
-        Member userMember = Member.builder().id(userMemberId).user(user).chat(chat).build();
-
         MemberId actorMemberId = new MemberId(actorId, chatId);
         Member actorMember = Member.builder().id(actorMemberId).user(actor).chat(chat).build();
 
         // when
         when(memberRepository.findById(actorMemberId)).thenReturn(Optional.of(actorMember));
-        when(memberRepository.findById(userMemberId)).thenReturn(Optional.of(userMember));
+        when(membershipCache.isMember(chatId, userId)).thenReturn(true);
 
         // then
         assertThrows(RuntimeException.class, () -> memberService.addChatMember(chatId, userIdDto, actor));
         verify(memberRepository).findById(actorMemberId);
-        verify(memberRepository).findById(userMemberId);
+        verify(membershipCache).isMember(chatId, userId);
     }
 
     @Test
@@ -237,20 +245,19 @@ class MemberServiceImplTest {
 
         String userId = "qwre-1234";
         UserId userIdDto = new UserId(userId);
-        MemberId userMemberId = new MemberId(userId, chatId);
 
         MemberId actorMemberId = new MemberId(actorId, chatId);
         Member actorMember = Member.builder().id(actorMemberId).user(actor).chat(chat).build();
 
         // when
         when(memberRepository.findById(actorMemberId)).thenReturn(Optional.of(actorMember));
-        when(memberRepository.findById(userMemberId)).thenReturn(Optional.empty());
+        when(membershipCache.isMember(chatId, userId)).thenReturn(false);
         when(userService.getUserDomainObject(userId)).thenThrow(new ResourceNotFoundException(userId, User.class));
 
         // then
         assertThrows(RuntimeException.class, () -> memberService.addChatMember(chatId, userIdDto, actor));
         verify(memberRepository).findById(actorMemberId);
-        verify(memberRepository).findById(userMemberId);
+        verify(membershipCache).isMember(chatId, userId);
         verify(userService).getUserDomainObject(userId);
     }
 
@@ -421,6 +428,7 @@ class MemberServiceImplTest {
         verify(memberRepository).findById(actorMemberId);
         verify(memberRepository).findById(userMemberId);
         verify(memberRepository).delete(userMember);
+        verify(membershipCache).evict(chatId);
     }
 
     @ParameterizedTest
@@ -444,6 +452,7 @@ class MemberServiceImplTest {
         // then
         verify(memberRepository).findById(actorMemberId);
         verify(memberRepository).delete(actorMember);
+        verify(membershipCache).evict(chatId);
     }
 
     @Test
@@ -590,7 +599,170 @@ class MemberServiceImplTest {
     }
 
     @Test
-    void whenGetChatMember_givenValidRequest_thenReturnMember() {
+    void whenAddChatMembers_givenValidRequest_thenInsertMembersInBatch() {
+        // given
+        String chatId = "2134-abcd";
+        Chat chat = Chat.builder().id(chatId).name("Test").build();
+
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).build();
+
+        MemberId actorMemberId = new MemberId(actorId, chatId);
+        Member actorMember = Member.builder().id(actorMemberId).user(actor).chat(chat).role(MemberRole.DEFAULT).build();
+
+        User first = User.builder().id("qwre-1234").build();
+        User second = User.builder().id("abcd-2134").build();
+        Set<String> userIds = Set.of(first.getId(), second.getId());
+
+        MembersBatchRequest request = new MembersBatchRequest(List.of(new UserId(first.getId()), new UserId(second.getId())));
+
+        // when
+        when(memberRepository.findById(actorMemberId)).thenReturn(Optional.of(actorMember));
+        when(memberRepository.findUserIdsByChatIdAndUserIdIn(chatId, userIds)).thenReturn(List.of());
+        when(userService.getUserDomainObjects(userIds)).thenReturn(List.of(first, second));
+
+        List<MemberDto> result = memberService.addChatMembers(chatId, request, actor);
+
+        // then
+        verify(memberRepository).findUserIdsByChatIdAndUserIdIn(chatId, userIds);
+        verify(userService).getUserDomainObjects(userIds);
+        verify(memberBatchWriter).insertMembers(eq(chatId), eq(userIds), eq(MemberRole.DEFAULT), any(LocalDateTime.class));
+        verify(membershipCache).evict(chatId);
+
+        assertThat(result, Matchers.hasSize(2));
+        assertAll(
+                () -> assertThat(result.get(0).getUser().getId(), Matchers.is(first.getId())),
+                () -> assertThat(result.get(1).getUser().getId(), Matchers.is(second.getId())),
+                () -> assertThat(result.get(0).getRole(), Matchers.is(MemberRole.DEFAULT))
+        );
+    }
+
+    @Test
+    void whenAddChatMembers_givenOneOfTheUsersIsAlreadyMemberOfChat_thenThrowException() {
+        // given
+        String chatId = "2134-abcd";
+        Chat chat = Chat.builder().id(chatId).name("Test").build();
+
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).build();
+
+        MemberId actorMemberId = new MemberId(actorId, chatId);
+        Member actorMember = Member.builder().id(actorMemberId).user(actor).chat(chat).role(MemberRole.DEFAULT).build();
+
+        String userId = "qwre-1234";
+        MembersBatchRequest request = new MembersBatchRequest(List.of(new UserId(userId)));
+
+        // when
+        when(memberRepository.findById(actorMemberId)).thenReturn(Optional.of(actorMember));
+        when(memberRepository.findUserIdsByChatIdAndUserIdIn(chatId, Set.of(userId))).thenReturn(List.of(userId));
+
+        // then
+        assertThrows(IllegalStateException.class, () -> memberService.addChatMembers(chatId, request, actor));
+        verify(memberBatchWriter, never()).insertMembers(any(), any(), any(), any());
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = MemberRole.class, names = {"OWNER", "ADMIN"})
+    void whenRemoveChatMembers_givenUsersAreDefaultMembersAndActorIsTheOwnerOrAdmin_thenRemoveMembers(MemberRole role) {
+        // given
+        String chatId = "2134-abcd";
+        Chat chat = Chat.builder().id(chatId).name("Test").build();
+
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).build();
+
+        MemberId actorMemberId = new MemberId(actorId, chatId);
+        Member actorMember = Member.builder().id(actorMemberId).user(actor).chat(chat).role(role).build();
+
+        Set<String> userIds = Set.of("qwre-1234", "abcd-2134");
+        MembersBatchRequest request = new MembersBatchRequest(List.of(new UserId("qwre-1234"), new UserId("abcd-2134")));
+
+        // when
+        when(memberRepository.findById(actorMemberId)).thenReturn(Optional.of(actorMember));
+        when(memberRepository.findRolesByChatIdAndUserIdIn(chatId, userIds))
+                .thenReturn(List.of(MemberRole.DEFAULT, MemberRole.DEFAULT));
+
+        memberService.removeChatMembers(chatId, request, actor);
+
+        // then
+        verify(memberRepository).findRolesByChatIdAndUserIdIn(chatId, userIds);
+        verify(memberRepository).deleteByChatIdAndUserIdIn(chatId, userIds);
+        verify(membershipCache).evict(chatId);
+    }
+
+    @Test
+    void whenRemoveChatMembers_givenActorIsDefaultUser_thenThrowException() {
+        // given
+        String chatId = "2134-abcd";
+        Chat chat = Chat.builder().id(chatId).name("Test").build();
+
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).build();
+
+        MemberId actorMemberId = new MemberId(actorId, chatId);
+        Member actorMember = Member.builder().id(actorMemberId).user(actor).chat(chat).role(MemberRole.DEFAULT).build();
+
+        MembersBatchRequest request = new MembersBatchRequest(List.of(new UserId("qwre-1234")));
+
+        // when
+        when(memberRepository.findById(actorMemberId)).thenReturn(Optional.of(actorMember));
+
+        // then
+        assertThrows(IllegalStateException.class, () -> memberService.removeChatMembers(chatId, request, actor));
+        verify(memberRepository, never()).deleteByChatIdAndUserIdIn(any(), any());
+    }
+
+    @Test
+    void whenRemoveChatMembers_givenOneOfTheUsersIsTheOwner_thenThrowException() {
+        // given
+        String chatId = "2134-abcd";
+        Chat chat = Chat.builder().id(chatId).name("Test").build();
+
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).build();
+
+        MemberId actorMemberId = new MemberId(actorId, chatId);
+        Member actorMember = Member.builder().id(actorMemberId).user(actor).chat(chat).role(MemberRole.ADMIN).build();
+
+        Set<String> userIds = Set.of("qwre-1234", "abcd-2134");
+        MembersBatchRequest request = new MembersBatchRequest(List.of(new UserId("qwre-1234"), new UserId("abcd-2134")));
+
+        // when
+        when(memberRepository.findById(actorMemberId)).thenReturn(Optional.of(actorMember));
+        when(memberRepository.findRolesByChatIdAndUserIdIn(chatId, userIds))
+                .thenReturn(List.of(MemberRole.DEFAULT, MemberRole.OWNER));
+
+        // then
+        assertThrows(IllegalStateException.class, () -> memberService.removeChatMembers(chatId, request, actor));
+        verify(memberRepository, never()).deleteByChatIdAndUserIdIn(any(), any());
+    }
+
+    @Test
+    void whenRemoveChatMembers_givenOneOfTheUsersIsAdminAndActorIsNotTheOwner_thenThrowException() {
+        // given
+        String chatId = "2134-abcd";
+        Chat chat = Chat.builder().id(chatId).name("Test").build();
+
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).build();
+
+        MemberId actorMemberId = new MemberId(actorId, chatId);
+        Member actorMember = Member.builder().id(actorMemberId).user(actor).chat(chat).role(MemberRole.ADMIN).build();
+
+        Set<String> userIds = Set.of("qwre-1234");
+        MembersBatchRequest request = new MembersBatchRequest(List.of(new UserId("qwre-1234")));
+
+        // when
+        when(memberRepository.findById(actorMemberId)).thenReturn(Optional.of(actorMember));
+        when(memberRepository.findRolesByChatIdAndUserIdIn(chatId, userIds)).thenReturn(List.of(MemberRole.ADMIN));
+
+        // then
+        assertThrows(IllegalStateException.class, () -> memberService.removeChatMembers(chatId, request, actor));
+        verify(memberRepository, never()).deleteByChatIdAndUserIdIn(any(), any());
+    }
+
+    @Test
+    void whenRemoveChatMembers_givenOneOfTheUsersIsNotChatMember_thenThrowException() {
         // given
         String chatId = "2134-abcd";
         Chat chat = Chat.builder().id(chatId).name("Test").build();
@@ -601,6 +773,27 @@ class MemberServiceImplTest {
         MemberId actorMemberId = new MemberId(actorId, chatId);
         Member actorMember = Member.builder().id(actorMemberId).user(actor).chat(chat).role(MemberRole.OWNER).build();
 
+        Set<String> userIds = Set.of("qwre-1234", "abcd-2134");
+        MembersBatchRequest request = new MembersBatchRequest(List.of(new UserId("qwre-1234"), new UserId("abcd-2134")));
+
+        // when
+        when(memberRepository.findById(actorMemberId)).thenReturn(Optional.of(actorMember));
+        when(memberRepository.findRolesByChatIdAndUserIdIn(chatId, userIds)).thenReturn(List.of(MemberRole.DEFAULT));
+
+        // then
+        assertThrows(IllegalStateException.class, () -> memberService.removeChatMembers(chatId, request, actor));
+        verify(memberRepository, never()).deleteByChatIdAndUserIdIn(any(), any());
+    }
+
+    @Test
+    void whenGetChatMember_givenValidRequest_thenReturnMember() {
+        // given
+        String chatId = "2134-abcd";
+        Chat chat = Chat.builder().id(chatId).name("Test").build();
+
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).build();
+
         String userId = "qwre-1234";
         User user = User.builder().id(userId).build();
 
@@ -608,13 +801,13 @@ class MemberServiceImplTest {
         Member userMember = Member.builder().id(userMemberId).user(user).chat(chat).role(MemberRole.DEFAULT).build();
 
         // when
-        when(memberRepository.findById(actorMemberId)).thenReturn(Optional.of(actorMember));
+        when(membershipCache.isMember(chatId, actorId)).thenReturn(true);
         when(memberRepository.findById(userMemberId)).thenReturn(Optional.of(userMember));
 
         MemberDto result = memberService.getChatMember(chatId, userId, actor);
 
         // then
-        verify(memberRepository).findById(actorMemberId);
+        verify(membershipCache).isMember(chatId, actorId);
         verify(memberRepository).findById(userMemberId);
 
         assertThat(result.getUser().getId(), Matchers.is(userId));
@@ -629,15 +822,91 @@ class MemberServiceImplTest {
         String actorId = "1234-qwer";
         User actor = User.builder().id(actorId).build();
 
-        MemberId actorMemberId = new MemberId(actorId, chatId);
-
         String userId = "qwre-1234";
 
         // when
-        when(memberRepository.findById(actorMemberId)).thenReturn(Optional.empty());
+        when(membershipCache.isMember(chatId, actorId)).thenReturn(false);
 
         // then
         assertThrows(RuntimeException.class, () -> memberService.getChatMember(chatId, userId, actor));
-        verify(memberRepository).findById(actorMemberId);
+        verify(membershipCache).isMember(chatId, actorId);
+    }
+
+    @Test
+    void whenGetMembersOfChatsDomainObjects_givenChats_thenReturnMembersGroupedByChat() {
+        // given
+        User user = User.builder().id("1234-qwer").build();
+        Chat chat1 = Chat.builder().id("qwer-1234").build();
+        Chat chat2 = Chat.builder().id("asdf-1234").build();
+
+        List<String> chatIds = List.of(chat1.getId(), chat2.getId());
+        List<Member> members = List.of(new Member(user, chat1, MemberRole.OWNER), new Member(user, chat2, MemberRole.DEFAULT));
+
+        // when
+        when(memberRepository.findWithUsersByChatIdIn(chatIds)).thenReturn(members);
+
+        Map<String, List<Member>> result = memberService.getMembersOfChatsDomainObjects(chatIds);
+
+        // then
+        verify(memberRepository).findWithUsersByChatIdIn(chatIds);
+        assertThat(result.get(chat1.getId()), Matchers.contains(members.get(0)));
+        assertThat(result.get(chat2.getId()), Matchers.contains(members.get(1)));
+    }
+
+    @Test
+    void whenCountMembersOfChats_givenNoChats_thenReturnEmptyMapWithoutQuery() {
+        // when
+        Map<String, Integer> result = memberService.countMembersOfChats(List.of());
+
+        // then
+        Mockito.verifyNoInteractions(memberRepository);
+        assertThat(result.entrySet(), Matchers.empty());
+    }
+
+    @Test
+    void whenDeleteMembersOfChat_givenChat_thenDeleteMembersInBulkAndEvictCache() {
+        // given
+        String chatId = "2134-abcd";
+
+        // when
+        when(memberRepository.deleteByChatId(chatId)).thenReturn(2);
+
+        memberService.deleteMembersOfChat(chatId);
+
+        // then
+        verify(memberRepository).deleteByChatId(chatId);
+        verify(membershipCache).evict(chatId);
+    }
+
+    @Test
+    void whenGetUnreadCounts_givenChats_thenReturnPersistedCountsWithPendingChanges() {
+        // given
+        String userId = "1234-qwer";
+        List<String> chatIds = List.of("chat-1", "chat-2");
+
+        // when
+        when(memberRepository.findUnreadCountsByUserIdAndChatIdIn(userId, chatIds))
+                .thenReturn(List.of(unreadCount("chat-1", 3), unreadCount("chat-2", null)));
+        when(unreadCounters.getUnreadCount("chat-1", userId, 3)).thenReturn(5);
+        when(unreadCounters.getUnreadCount("chat-2", userId, 0)).thenReturn(0);
+
+        Map<String, Integer> result = memberService.getUnreadCounts(userId, chatIds);
+
+        // then
+        assertThat(result, Matchers.is(Map.of("chat-1", 5, "chat-2", 0)));
+    }
+
+    private MemberUnreadCount unreadCount(String chatId, Integer count) {
+        return new MemberUnreadCount() {
+            @Override
+            public String getChatId() {
+                return chatId;
+            }
+
+            @Override
+            public Integer getUnreadCount() {
+                return count;
+            }
+        };
     }
-}
\ No newline at end of file
+}
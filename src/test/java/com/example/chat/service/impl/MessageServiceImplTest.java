@@ -1,12 +1,23 @@
 package com.example.chat.service.impl;
 
+import com.example.chat.cache.RecentMessagesCache;
+import com.example.chat.messaging.MessageBroadcaster;
+import com.example.chat.metrics.ChatMetrics;
 import com.example.chat.model.chat.Chat;
 import com.example.chat.model.chat.Message;
 import com.example.chat.model.chat.member.Member;
 import com.example.chat.model.chat.member.MemberId;
 import com.example.chat.model.user.User;
 import com.example.chat.payload.chat.MessageDto;
+import com.example.chat.payload.chat.MessageHistoryDto;
+import com.example.chat.payload.chat.MessageSearchDto;
+import com.example.chat.payload.chat.ReadReceiptDto;
+import com.example.chat.persistence.MessageIdGenerator;
+import com.example.chat.persistence.MessageWriteBehindQueue;
+import com.example.chat.persistence.PendingMessage;
+import com.example.chat.persistence.UnreadCounters;
 import com.example.chat.repository.MessageRepository;
+import com.example.chat.search.MessageIndex;
 import com.example.chat.service.MemberService;
 import com.example.chat.service.MessageService;
 import com.example.chat.utils.PayloadMapper;
@@ -14,21 +25,24 @@ import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -39,17 +53,34 @@ class MessageServiceImplTest {
     @Mock
     MemberService memberService;
     @Mock
-    SimpMessagingTemplate messagingTemplate;
+    MessageIdGenerator messageIdGenerator;
+    @Mock
+    MessageWriteBehindQueue writeBehindQueue;
+    @Mock
+    MessageBroadcaster broadcaster;
+    @Mock
+    UnreadCounters unreadCounters;
+    @Mock
+    ChatMetrics metrics;
+    @Mock
+    MessageIndex messageIndex;
+    @Mock
+    RecentMessagesCache recentMessagesCache;
 
     PayloadMapper mapper;
     MessageService messageService;
 
     @BeforeEach
     void init() {
-        ModelMapper modelMapper = Mockito.spy(ModelMapper.class);
-        mapper = Mockito.spy(new PayloadMapper(modelMapper));
+        mapper = Mockito.spy(new PayloadMapper());
+
+        // transaction manager is not needed, as the repositories are mocked
+        TransactionTemplate transactionTemplate = new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class));
 
-        messageService = new MessageServiceImpl(messageRepository, memberService, messagingTemplate, mapper);
+        messageService = new MessageServiceImpl(
+                messageRepository, memberService, messageIdGenerator, writeBehindQueue,
+                broadcaster, unreadCounters, transactionTemplate, metrics, messageIndex, recentMessagesCache, mapper
+        );
     }
 
     @Test
@@ -67,8 +98,6 @@ class MessageServiceImplTest {
         Message message = Message.builder().content("Test message").user(actor).chat(chat).build();
         MessageDto responseDto = MessageDto.builder().content("Test message").build();
 
-        String destination = "/topic/chats/" + chatId + "/messages";
-
         // when
         when(memberService.getMemberDomainObject(actorId, chatId)).thenReturn(member);
         when(messageRepository.save(any(Message.class))).thenReturn(message);
@@ -79,7 +108,9 @@ class MessageServiceImplTest {
         // then
         verify(memberService).getMemberDomainObject(actorId, chatId);
         verify(messageRepository).save(any(Message.class));
-        verify(messagingTemplate).convertAndSend(destination, responseDto);
+        verify(recentMessagesCache).add(chatId, responseDto);
+        verify(unreadCounters).messageSent(chatId, actorId, responseDto.getId());
+        verify(broadcaster).broadcastMessage(chatId, responseDto);
 
         assertThat(result.getContent(), Matchers.is(messageDto.getContent()));
 
@@ -105,6 +136,53 @@ class MessageServiceImplTest {
         verify(memberService).getMemberDomainObject(actorId, chatId);
     }
 
+    @Test
+    void whenSaveMessage_givenWriteBehindIsEnabled_thenQueueMessageAndBroadcastIt() {
+        // given
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).nickname("test.user").email("test@mail.com").build();
+
+        String chatId = "qwer-1234";
+        MessageDto messageDto = MessageDto.builder().content("Test message").build();
+
+        // when
+        when(writeBehindQueue.isEnabled()).thenReturn(true);
+        when(memberService.isMemberOfTheChat(actorId, chatId)).thenReturn(true);
+        when(messageIdGenerator.nextId()).thenReturn(42L);
+
+        MessageDto result = messageService.saveMessage(chatId, messageDto, actor);
+
+        // then
+        InOrder inOrder = Mockito.inOrder(recentMessagesCache, writeBehindQueue);
+        inOrder.verify(recentMessagesCache).addUnwritten(chatId, result);
+        inOrder.verify(writeBehindQueue).submit(any(PendingMessage.class));
+        verify(messageRepository, never()).save(any(Message.class));
+        verify(broadcaster).broadcastMessage(chatId, result);
+
+        assertThat(result.getId(), Matchers.is(42L));
+        assertThat(result.getUser().getId(), Matchers.is(actorId));
+        assertThat(result.getContent(), Matchers.is(messageDto.getContent()));
+        assertThat(result.getSentAt(), Matchers.notNullValue());
+    }
+
+    @Test
+    void whenSaveMessage_givenWriteBehindIsEnabledAndActorIsNotChatMember_thenThrowException() {
+        // given
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).email("test@mail.com").build();
+
+        String chatId = "qwer-1234";
+        MessageDto messageDto = MessageDto.builder().content("Test message").build();
+
+        // when
+        when(writeBehindQueue.isEnabled()).thenReturn(true);
+        when(memberService.isMemberOfTheChat(actorId, chatId)).thenReturn(false);
+
+        // then
+        assertThrows(RuntimeException.class, () -> messageService.saveMessage(chatId, messageDto, actor));
+        verify(writeBehindQueue, never()).submit(any(PendingMessage.class));
+    }
+
     @Test
     void whenGetMessages_givenLastMessageId_thenReturnMessagesThatAreBeforeMessageWithGiveId() {
         // given
@@ -216,4 +294,416 @@ class MessageServiceImplTest {
         assertThrows(RuntimeException.class, () -> messageService.getMessages(chatId, lastMessageId, limit, actor));
         verify(memberService).isMemberOfTheChat(userId, chatId);
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenGetMessageHistory_givenNoCursor_thenReturnLatestMessagesWithNextCursor() {
+        // given
+        String chatId = "qwer-1234";
+
+        String userId = "1234-qwer";
+        User actor = User.builder().id(userId).build();
+
+        int limit = 3;
+        PageRequest pageRequest = PageRequest.ofSize(limit).withSort(Sort.by(Sort.Direction.DESC, "id"));
+
+        List<Message> messages = List.of(
+                Message.builder().id(50L).build(),
+                Message.builder().id(30L).build(),
+                Message.builder().id(2L).build()
+        );
+
+        // when
+        when(memberService.isMemberOfTheChat(userId, chatId)).thenReturn(true);
+        when(messageRepository.findSliceByChatId(chatId, pageRequest)).thenReturn(new SliceImpl<>(messages, pageRequest, true));
+
+        MessageHistoryDto result = messageService.getMessageHistory(chatId, null, null, limit, actor);
+
+        // then
+        verify(memberService).isMemberOfTheChat(userId, chatId);
+        verify(messageRepository).findSliceByChatId(chatId, pageRequest);
+
+        assertThat(result.getMessages(), Matchers.hasSize(3));
+        assertThat(result.getMessages().get(0).getId(), Matchers.is(50L));
+        assertThat(result.getNextCursor(), Matchers.is(2L));
+        assertThat(result.isHasMore(), Matchers.is(true));
+    }
+
+    @Test
+    void whenGetMessageHistory_givenBeforeCursor_thenReturnOlderMessages() {
+        // given
+        String chatId = "qwer-1234";
+
+        String userId = "1234-qwer";
+        User actor = User.builder().id(userId).build();
+
+        long beforeId = 51L;
+        int limit = 10;
+        PageRequest pageRequest = PageRequest.ofSize(limit).withSort(Sort.by(Sort.Direction.DESC, "id"));
+
+        List<Message> messages = List.of(
+                Message.builder().id(50L).build(),
+                Message.builder().id(30L).build()
+        );
+
+        // when
+        when(memberService.isMemberOfTheChat(userId, chatId)).thenReturn(true);
+        when(messageRepository.findSliceByChatIdAndIdIsBefore(chatId, beforeId, pageRequest))
+                .thenReturn(new SliceImpl<>(messages, pageRequest, false));
+
+        MessageHistoryDto result = messageService.getMessageHistory(chatId, beforeId, null, limit, actor);
+
+        // then
+        verify(messageRepository).findSliceByChatIdAndIdIsBefore(chatId, beforeId, pageRequest);
+
+        assertThat(result.getMessages(), Matchers.hasSize(2));
+        assertThat(result.getNextCursor(), Matchers.is(30L));
+        assertThat(result.isHasMore(), Matchers.is(false));
+    }
+
+    @Test
+    void whenGetMessageHistory_givenAfterCursor_thenReturnNewerMessagesInAscendingOrder() {
+        // given
+        String chatId = "qwer-1234";
+
+        String userId = "1234-qwer";
+        User actor = User.builder().id(userId).build();
+
+        long afterId = 10L;
+        int limit = 10;
+        PageRequest pageRequest = PageRequest.ofSize(limit).withSort(Sort.by(Sort.Direction.ASC, "id"));
+
+        List<Message> messages = List.of(
+                Message.builder().id(11L).build(),
+                Message.builder().id(15L).build()
+        );
+
+        // when
+        when(memberService.isMemberOfTheChat(userId, chatId)).thenReturn(true);
+        when(messageRepository.findSliceByChatIdAndIdIsAfter(chatId, afterId, pageRequest))
+                .thenReturn(new SliceImpl<>(messages, pageRequest, false));
+
+        MessageHistoryDto result = messageService.getMessageHistory(chatId, null, afterId, limit, actor);
+
+        // then
+        verify(messageRepository).findSliceByChatIdAndIdIsAfter(chatId, afterId, pageRequest);
+
+        assertThat(result.getMessages().get(0).getId(), Matchers.is(11L));
+        assertThat(result.getNextCursor(), Matchers.is(15L));
+        assertThat(result.isHasMore(), Matchers.is(false));
+    }
+
+    @Test
+    void whenGetMessageHistory_givenBothCursors_thenThrowException() {
+        // given
+        String chatId = "qwer-1234";
+
+        String userId = "1234-qwer";
+        User actor = User.builder().id(userId).build();
+
+        // when
+        when(memberService.isMemberOfTheChat(userId, chatId)).thenReturn(true);
+
+        // then
+        assertThrows(RuntimeException.class, () -> messageService.getMessageHistory(chatId, 20L, 10L, 10, actor));
+    }
+
+    @Test
+    void whenGetMessageHistory_givenActorIsNotChatMember_thenThrowException() {
+        // given
+        String chatId = "qwer-1234";
+
+        String userId = "1234-qwer";
+        User actor = User.builder().id(userId).build();
+
+        // when
+        when(memberService.isMemberOfTheChat(userId, chatId)).thenReturn(false);
+
+        // then
+        assertThrows(RuntimeException.class, () -> messageService.getMessageHistory(chatId, null, null, 10, actor));
+        verify(memberService).isMemberOfTheChat(userId, chatId);
+    }
+
+    @Test
+    void whenDiscardQueuedMessagesOfChat_givenWriteBehindEnabled_thenDiscardChatInQueue() {
+        // given
+        String chatId = "qwer-1234";
+
+        // when
+        when(writeBehindQueue.isEnabled()).thenReturn(true);
+
+        messageService.discardQueuedMessagesOfChat(chatId);
+
+        // then
+        verify(writeBehindQueue).discardChat(chatId);
+    }
+
+    @Test
+    void whenDeleteMessagesOfChat_givenChat_thenDeleteMessagesInBulk() {
+        // given
+        String chatId = "qwer-1234";
+
+        // when
+        when(messageRepository.deleteByChatId(chatId)).thenReturn(3);
+
+        messageService.deleteMessagesOfChat(chatId);
+
+        // then
+        verify(messageRepository).deleteByChatId(chatId);
+        verify(messageIndex).deleteChat(chatId);
+        verify(recentMessagesCache).evict(chatId);
+    }
+
+    @Test
+    void whenMarkAsRead_givenOlderMessageOfChat_thenCountOnlyMessagesAfterIt() {
+        // given
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).build();
+
+        String chatId = "qwer-1234";
+        Message lastMessage = Message.builder().id(20L).build();
+        Chat chat = Chat.builder().id(chatId).lastMessage(lastMessage).build();
+        Member member = Member.builder().id(new MemberId(actorId, chatId)).user(actor).chat(chat)
+                .lastReadMessageId(10L).unreadCount(10).build();
+
+        // when
+        when(memberService.getMemberDomainObject(actorId, chatId)).thenReturn(member);
+        when(unreadCounters.getLastReadMessageId(chatId, actorId, 10L)).thenReturn(10L);
+        when(messageRepository.countByChatIdAndIdGreaterThan(chatId, 15L)).thenReturn(5L);
+
+        ReadReceiptDto result = messageService.markAsRead(chatId, new ReadReceiptDto(15L, null), actor);
+
+        // then
+        verify(unreadCounters).markRead(chatId, actorId, 15L, 5);
+
+        assertThat(result.getMessageId(), Matchers.is(15L));
+        assertThat(result.getUnreadCount(), Matchers.is(5));
+    }
+
+    @Test
+    void whenMarkAsRead_givenLastMessageOfChat_thenResetCounterWithoutCounting() {
+        // given
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).build();
+
+        String chatId = "qwer-1234";
+        Message lastMessage = Message.builder().id(20L).build();
+        Chat chat = Chat.builder().id(chatId).lastMessage(lastMessage).build();
+        Member member = Member.builder().id(new MemberId(actorId, chatId)).user(actor).chat(chat).unreadCount(3).build();
+
+        // when
+        when(memberService.getMemberDomainObject(actorId, chatId)).thenReturn(member);
+
+        ReadReceiptDto result = messageService.markAsRead(chatId, new ReadReceiptDto(20L, null), actor);
+
+        // then
+        verify(messageRepository, never()).countByChatIdAndIdGreaterThan(any(), Mockito.anyLong());
+        verify(unreadCounters).markRead(chatId, actorId, 20L, 0);
+
+        assertThat(result.getUnreadCount(), Matchers.is(0));
+    }
+
+    @Test
+    void whenMarkAsRead_givenAlreadyReadMessage_thenReturnCurrentReadPointer() {
+        // given
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).build();
+
+        String chatId = "qwer-1234";
+        Chat chat = Chat.builder().id(chatId).build();
+        Member member = Member.builder().id(new MemberId(actorId, chatId)).user(actor).chat(chat)
+                .lastReadMessageId(20L).unreadCount(2).build();
+
+        // when
+        when(memberService.getMemberDomainObject(actorId, chatId)).thenReturn(member);
+        when(unreadCounters.getLastReadMessageId(chatId, actorId, 20L)).thenReturn(20L);
+        when(unreadCounters.getUnreadCount(chatId, actorId, 2)).thenReturn(2);
+
+        ReadReceiptDto result = messageService.markAsRead(chatId, new ReadReceiptDto(15L, null), actor);
+
+        // then
+        verify(unreadCounters, never()).markRead(any(), any(), Mockito.anyLong(), Mockito.anyInt());
+
+        assertThat(result.getMessageId(), Matchers.is(20L));
+        assertThat(result.getUnreadCount(), Matchers.is(2));
+    }
+
+    @Test
+    void whenMarkAsRead_givenMessageIsNotInChat_thenThrowException() {
+        // given
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).build();
+
+        String chatId = "qwer-1234";
+        Message lastMessage = Message.builder().id(20L).build();
+        Chat chat = Chat.builder().id(chatId).lastMessage(lastMessage).build();
+        Member member = Member.builder().id(new MemberId(actorId, chatId)).user(actor).chat(chat).build();
+
+        // when
+        when(memberService.getMemberDomainObject(actorId, chatId)).thenReturn(member);
+
+        // then
+        assertThrows(RuntimeException.class,
+                () -> messageService.markAsRead(chatId, new ReadReceiptDto(21L, null), actor));
+        verify(unreadCounters, never()).markRead(any(), any(), Mockito.anyLong(), Mockito.anyInt());
+    }
+
+    @Test
+    void whenMarkAsRead_givenWriteBehindAndIdAboveQueuedMessages_thenThrowException() {
+        // given
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).build();
+
+        String chatId = "qwer-1234";
+        Message lastMessage = Message.builder().id(20L).build();
+        Chat chat = Chat.builder().id(chatId).lastMessage(lastMessage).build();
+        Member member = Member.builder().id(new MemberId(actorId, chatId)).user(actor).chat(chat).build();
+
+        // when
+        when(writeBehindQueue.isEnabled()).thenReturn(true);
+        when(writeBehindQueue.getLastQueuedId(chatId)).thenReturn(25L);
+        when(memberService.getMemberDomainObject(actorId, chatId)).thenReturn(member);
+
+        // then
+        assertThrows(IllegalStateException.class,
+                () -> messageService.markAsRead(chatId, new ReadReceiptDto(Long.MAX_VALUE, null), actor));
+        verify(unreadCounters, never()).markRead(any(), any(), Mockito.anyLong(), Mockito.anyInt());
+    }
+
+    @Test
+    void whenMarkAsRead_givenWriteBehindAndQueuedMessage_thenMarkReadUpToIt() {
+        // given
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).build();
+
+        String chatId = "qwer-1234";
+        Message lastMessage = Message.builder().id(20L).build();
+        Chat chat = Chat.builder().id(chatId).lastMessage(lastMessage).build();
+        Member member = Member.builder().id(new MemberId(actorId, chatId)).user(actor).chat(chat).build();
+
+        // when
+        when(writeBehindQueue.isEnabled()).thenReturn(true);
+        when(writeBehindQueue.getLastQueuedId(chatId)).thenReturn(25L);
+        when(memberService.getMemberDomainObject(actorId, chatId)).thenReturn(member);
+
+        ReadReceiptDto result = messageService.markAsRead(chatId, new ReadReceiptDto(25L, null), actor);
+
+        // then
+        verify(unreadCounters).markRead(chatId, actorId, 25L, 0);
+        assertThat(result.getMessageId(), Matchers.is(25L));
+    }
+
+    @Test
+    void whenSearchMessages_givenMatchingMessages_thenReturnThemInIndexOrderWithNextCursor() {
+        // given
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).build();
+
+        String chatId = "qwer-1234";
+        Chat chat = Chat.builder().id(chatId).build();
+        Message newer = Message.builder().id(15L).chat(chat).user(actor).content("hello again").build();
+        Message older = Message.builder().id(11L).chat(chat).user(actor).content("hello").build();
+
+        // when
+        when(memberService.isMemberOfTheChat(actorId, chatId)).thenReturn(true);
+        when(messageIndex.search(List.of(chatId), "hello", null, 3)).thenReturn(List.of(15L, 11L, 7L));
+        when(messageRepository.findWithUsersByIdIn(List.of(15L, 11L))).thenReturn(List.of(older, newer));
+
+        MessageHistoryDto result = messageService.searchMessages(chatId, "hello", null, 2, actor);
+
+        // then
+        assertThat(result.getMessages().size(), Matchers.is(2));
+        assertThat(result.getMessages().get(0).getId(), Matchers.is(15L));
+        assertThat(result.getMessages().get(1).getId(), Matchers.is(11L));
+        assertThat(result.getNextCursor(), Matchers.is(11L));
+        assertThat(result.isHasMore(), Matchers.is(true));
+    }
+
+    @Test
+    void whenSearchMessages_givenActorIsNotChatMember_thenThrowException() {
+        // given
+        String chatId = "qwer-1234";
+
+        String userId = "1234-qwer";
+        User actor = User.builder().id(userId).build();
+
+        // when
+        when(memberService.isMemberOfTheChat(userId, chatId)).thenReturn(false);
+
+        // then
+        assertThrows(RuntimeException.class, () -> messageService.searchMessages(chatId, "hello", null, 10, actor));
+        verify(messageIndex, never()).search(any(), any(), any(), Mockito.anyInt());
+    }
+
+    @Test
+    void whenSearchAllMessages_givenQuery_thenSearchOnlyChatsOfActor() {
+        // given
+        String actorId = "1234-qwer";
+        User actor = User.builder().id(actorId).build();
+
+        Chat chat = Chat.builder().id("chat-2").build();
+        Message message = Message.builder().id(20L).chat(chat).user(actor).content("hello").build();
+
+        // when
+        when(memberService.getChatIdsOfUser(actorId)).thenReturn(List.of("chat-1", "chat-2"));
+        when(messageIndex.search(List.of("chat-1", "chat-2"), "hello", 30L, 11)).thenReturn(List.of(20L));
+        when(messageRepository.findWithUsersByIdIn(List.of(20L))).thenReturn(List.of(message));
+
+        MessageSearchDto result = messageService.searchAllMessages("hello", 30L, 10, actor);
+
+        // then
+        assertThat(result.getMessages().size(), Matchers.is(1));
+        assertThat(result.getMessages().get(0).getChatId(), Matchers.is("chat-2"));
+        assertThat(result.getMessages().get(0).getMessage().getId(), Matchers.is(20L));
+        assertThat(result.isHasMore(), Matchers.is(false));
+    }
+
+    @Test
+    void whenGetMessages_givenFirstPageFitsRecentMessages_thenServeItFromCache() {
+        // given
+        String chatId = "qwer-1234";
+
+        String userId = "1234-qwer";
+        User actor = User.builder().id(userId).build();
+
+        List<MessageDto> latest = List.of(MessageDto.builder().id(50L).build(), MessageDto.builder().id(30L).build());
+
+        // when
+        when(memberService.isMemberOfTheChat(userId, chatId)).thenReturn(true);
+        when(recentMessagesCache.getSize()).thenReturn(50);
+        when(recentMessagesCache.getLatest(chatId, 2)).thenReturn(new RecentMessagesCache.LatestMessages(latest, true));
+        when(messageRepository.countByChatId(chatId)).thenReturn(7L);
+
+        Page<MessageDto> result = messageService.getMessages(chatId, null, 2, actor);
+
+        // then
+        verify(messageRepository, never()).findAllByChatId(any(), any());
+
+        assertThat(result.getContent(), Matchers.is(latest));
+        assertThat(result.getTotalElements(), Matchers.is(7L));
+    }
+
+    @Test
+    void whenGetMessageHistory_givenNoCursorAndFirstPageFitsRecentMessages_thenServeItFromCache() {
+        // given
+        String chatId = "qwer-1234";
+
+        String userId = "1234-qwer";
+        User actor = User.builder().id(userId).build();
+
+        List<MessageDto> latest = List.of(MessageDto.builder().id(50L).build(), MessageDto.builder().id(30L).build());
+
+        // when
+        when(memberService.isMemberOfTheChat(userId, chatId)).thenReturn(true);
+        when(recentMessagesCache.getSize()).thenReturn(50);
+        when(recentMessagesCache.getLatest(chatId, 2)).thenReturn(new RecentMessagesCache.LatestMessages(latest, false));
+
+        MessageHistoryDto result = messageService.getMessageHistory(chatId, null, null, 2, actor);
+
+        // then
+        verify(messageRepository, never()).findSliceByChatId(any(), any());
+
+        assertThat(result.getMessages(), Matchers.is(latest));
+        assertThat(result.getNextCursor(), Matchers.is(30L));
+        assertThat(result.isHasMore(), Matchers.is(false));
+    }
+}
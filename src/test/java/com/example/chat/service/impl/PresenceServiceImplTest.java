@@ -0,0 +1,147 @@
+package com.example.chat.service.impl;
+
+import com.example.chat.cache.MembershipCache;
+import com.example.chat.model.user.User;
+import com.example.chat.payload.user.PresenceDto;
+import com.example.chat.repository.MemberRepository;
+import com.example.chat.repository.projection.MemberChat;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PresenceServiceImplTest {
+    @Mock
+    MemberRepository memberRepository;
+    @Mock
+    MembershipCache membershipCache;
+    @Mock
+    SimpMessagingTemplate messagingTemplate;
+    @Mock
+    SimpUserRegistry userRegistry;
+
+    PresenceServiceImpl presenceService;
+
+    @BeforeEach
+    void init() {
+        presenceService = new PresenceServiceImpl(memberRepository, membershipCache, messagingTemplate, userRegistry, 1000);
+    }
+
+    @Test
+    void whenGetPresence_givenUsersConnectedToAnyInstance_thenReturnPresenceOfCoMembersOnly() {
+        // given
+        User actor = User.builder().id("1234-qwer").build();
+
+        // when
+        when(memberRepository.findCoMemberIdsByUserIdAndUserIdIn(actor.getId(), Set.of("online", "offline", "stranger")))
+                .thenReturn(List.of("online", "offline"));
+        when(userRegistry.getUser("online")).thenReturn(Mockito.mock(SimpUser.class));
+
+        List<PresenceDto> result = presenceService.getPresence(List.of("online", "offline", "stranger"), actor);
+
+        // then
+        assertThat(result, Matchers.contains(new PresenceDto("online", true), new PresenceDto("offline", false)));
+    }
+
+    @Test
+    void whenBroadcastChanges_givenUserConnected_thenSendSingleFrameToOnlineCoMembers() {
+        // given
+        String userId = "1234-qwer";
+        String chatId = "qwer-1234";
+
+        // when
+        when(memberRepository.findChatsByUserIdIn(Set.of(userId, "online")))
+                .thenReturn(List.of(memberChat(userId, chatId), memberChat("online", chatId)));
+        when(membershipCache.getMembers(chatId)).thenReturn(Set.of(userId, "online", "offline"));
+        when(userRegistry.getUser(userId)).thenReturn(Mockito.mock(SimpUser.class));
+        when(userRegistry.getUser("online")).thenReturn(Mockito.mock(SimpUser.class));
+
+        presenceService.onConnect(connect("online", "session-1"));
+        presenceService.onConnect(connect(userId, "session-2"));
+        presenceService.broadcastChanges();
+
+        // then
+        verify(messagingTemplate).convertAndSendToUser(
+                "online", PresenceServiceImpl.PRESENCE_DESTINATION, Set.of(new PresenceDto(userId, true))
+        );
+        verify(messagingTemplate).convertAndSendToUser(
+                userId, PresenceServiceImpl.PRESENCE_DESTINATION, Set.of(new PresenceDto("online", true))
+        );
+        verify(messagingTemplate, never()).convertAndSendToUser(eq("offline"), anyString(), any());
+    }
+
+    @Test
+    void whenBroadcastChanges_givenConnectionFlappedWithinInterval_thenDontBroadcast() {
+        // given
+        String userId = "1234-qwer";
+
+        // when
+        presenceService.onConnect(connect(userId, "session-1"));
+        presenceService.onDisconnect(disconnect(userId, "session-1"));
+        presenceService.broadcastChanges();
+
+        // then
+        verify(memberRepository, never()).findChatsByUserIdIn(anyCollection());
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any());
+    }
+
+    private SessionConnectedEvent connect(String userId, String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECTED);
+        accessor.setSessionId(sessionId);
+
+        return new SessionConnectedEvent(this, MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()),
+                principal(userId));
+    }
+
+    private SessionDisconnectEvent disconnect(String userId, String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        accessor.setSessionId(sessionId);
+
+        return new SessionDisconnectEvent(this, MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()),
+                sessionId, CloseStatus.NORMAL, principal(userId));
+    }
+
+    private Principal principal(String userId) {
+        return () -> userId;
+    }
+
+    private MemberChat memberChat(String userId, String chatId) {
+        return new MemberChat() {
+            @Override
+            public String getUserId() {
+                return userId;
+            }
+
+            @Override
+            public String getChatId() {
+                return chatId;
+            }
+        };
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.chat.service.impl;
+
+import com.example.chat.cache.MembershipCache;
+import com.example.chat.messaging.MessageBroadcaster;
+import com.example.chat.model.user.User;
+import com.example.chat.payload.chat.TypingDto;
+import com.example.chat.service.TypingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TypingServiceImplTest {
+    @Mock
+    MembershipCache membershipCache;
+    @Mock
+    MessageBroadcaster broadcaster;
+
+    TypingService typingService;
+
+    @BeforeEach
+    void init() {
+        typingService = new TypingServiceImpl(membershipCache, broadcaster, 60_000);
+    }
+
+    @Test
+    void whenNotifyTyping_givenRepeatedNotificationsWithinInterval_thenBroadcastOnlyFirst() {
+        // given
+        String chatId = "qwer-1234";
+        User actor = User.builder().id("1234-qwer").nickname("test.user").build();
+
+        // when
+        when(membershipCache.isMember(chatId, actor.getId())).thenReturn(true);
+
+        typingService.notifyTyping(chatId, actor);
+        typingService.notifyTyping(chatId, actor);
+        typingService.notifyTyping(chatId, actor);
+
+        // then
+        verify(broadcaster, times(1)).broadcastTyping(chatId, new TypingDto("1234-qwer", "test.user"));
+    }
+
+    @Test
+    void whenNotifyTyping_givenDifferentMembers_thenBroadcastEach() {
+        // given
+        String chatId = "qwer-1234";
+        User first = User.builder().id("1234-qwer").nickname("first").build();
+        User second = User.builder().id("abcd-1234").nickname("second").build();
+
+        // when
+        when(membershipCache.isMember(chatId, first.getId())).thenReturn(true);
+        when(membershipCache.isMember(chatId, second.getId())).thenReturn(true);
+
+        typingService.notifyTyping(chatId, first);
+        typingService.notifyTyping(chatId, second);
+
+        // then
+        verify(broadcaster).broadcastTyping(chatId, new TypingDto("1234-qwer", "first"));
+        verify(broadcaster).broadcastTyping(chatId, new TypingDto("abcd-1234", "second"));
+    }
+
+    @Test
+    void whenNotifyTyping_givenActorIsNotChatMember_thenThrowException() {
+        // given
+        String chatId = "qwer-1234";
+        User actor = User.builder().id("1234-qwer").build();
+
+        // when
+        when(membershipCache.isMember(chatId, actor.getId())).thenReturn(false);
+
+        // then
+        assertThrows(RuntimeException.class, () -> typingService.notifyTyping(chatId, actor));
+        verify(broadcaster, never()).broadcastTyping(anyString(), any());
+    }
+}
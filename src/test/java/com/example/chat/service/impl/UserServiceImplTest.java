@@ -1,8 +1,10 @@
 package com.example.chat.service.impl;
 
+import com.example.chat.cache.UserProfileCache;
 import com.example.chat.exception.ResourceNotFoundException;
 import com.example.chat.model.user.User;
 import com.example.chat.payload.user.UserDto;
+import com.example.chat.payload.user.UserProfileDto;
 import com.example.chat.repository.UserRepository;
 import com.example.chat.utils.PayloadMapper;
 import org.hamcrest.Matchers;
@@ -12,31 +14,38 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.modelmapper.ModelMapper;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class UserServiceImplTest {
     @Mock
     UserRepository userRepository;
+    @Mock
+    UserProfileCache userProfileCache;
     PayloadMapper mapper;
 
     UserServiceImpl userService;
 
     @BeforeEach
     void init() {
-        // payload mapper requires model mapper
-        ModelMapper modelMapper = Mockito.spy(ModelMapper.class);
-        mapper = Mockito.spy(new PayloadMapper(modelMapper));
+        mapper = Mockito.spy(new PayloadMapper());
 
-        userService = new UserServiceImpl(userRepository, mapper);
+        userService = new UserServiceImpl(userRepository, userProfileCache, mapper);
     }
 
     @Test
@@ -72,20 +81,21 @@ class UserServiceImplTest {
     @Test
     void whenGetUsersByNickname_givenThereAreUsersWithGivenNickname_thenReturnThoseUsers() {
         // given
-        String nickname = "test";
+        String nickname = " Test";
 
         List<User> users = List.of(
                 User.builder().id("1234-qwer").nickname("test.user").email("test@mail.com").build(),
-                User.builder().id("qwer-1234").nickname("user.test").email("user@mail.com").build()
+                User.builder().id("qwer-1234").nickname("Tester").email("user@mail.com").build()
         );
+        Pageable pageable = PageRequest.of(0, 20, Sort.by("searchNickname", "id"));
 
         // when
-        when(userRepository.findByNicknameContainingIgnoreCase(nickname)).thenReturn(users);
+        when(userRepository.findBySearchNicknameStartingWith("test", pageable)).thenReturn(new SliceImpl<>(users));
 
-        List<UserDto> result = userService.getUsersByNickname(nickname);
+        List<UserDto> result = userService.getUsersByNickname(nickname, 0, 20);
 
         // then
-        verify(userRepository).findByNicknameContainingIgnoreCase(nickname);
+        verify(userRepository).findBySearchNicknameStartingWith("test", pageable);
         assertThat(result, Matchers.hasSize(2));
     }
 
@@ -93,19 +103,50 @@ class UserServiceImplTest {
     void whenGetUsersByNickname_givenThereAreNoUsersWithGivenNickname_thenReturnEmptyList() {
         // given
         String nickname = "test";
+        Pageable pageable = PageRequest.of(1, 20, Sort.by("searchNickname", "id"));
+
+        // when
+        when(userRepository.findBySearchNicknameStartingWith(nickname, pageable)).thenReturn(new SliceImpl<>(List.of()));
+
+        List<UserDto> result = userService.getUsersByNickname(nickname, 1, 20);
+
+        // then
+        verify(userRepository).findBySearchNicknameStartingWith(nickname, pageable);
+        assertThat(result, Matchers.empty());
+    }
 
-        List<User> users = List.of();
+    @Test
+    void whenGetUsersByNickname_givenLimitAboveMaximum_thenLimitToMaximum() {
+        // given
+        String nickname = "test";
+        Pageable pageable = PageRequest.of(0, 50, Sort.by("searchNickname", "id"));
 
         // when
-        when(userRepository.findByNicknameContainingIgnoreCase(nickname)).thenReturn(users);
+        when(userRepository.findBySearchNicknameStartingWith(nickname, pageable)).thenReturn(new SliceImpl<>(List.of()));
 
-        List<UserDto> result = userService.getUsersByNickname(nickname);
+        userService.getUsersByNickname(nickname, 0, 1000);
 
         // then
-        verify(userRepository).findByNicknameContainingIgnoreCase(nickname);
+        verify(userRepository).findBySearchNicknameStartingWith(nickname, pageable);
+    }
+
+    @Test
+    void whenGetUsersByNickname_givenBlankNickname_thenReturnEmptyListWithoutQuery() {
+        // when
+        List<UserDto> result = userService.getUsersByNickname("  ", 0, 20);
+
+        // then
+        verifyNoInteractions(userRepository);
         assertThat(result, Matchers.empty());
     }
 
+    @Test
+    void whenGetUsersByNickname_givenInvalidLimit_thenThrowException() {
+        // then
+        assertThrows(IllegalStateException.class, () -> userService.getUsersByNickname("test", 0, 0));
+        verifyNoInteractions(userRepository);
+    }
+
     @Test
     void whenGetUserDomainObject_givenUserExist_thenReturnUser() {
         // given
@@ -134,4 +175,66 @@ class UserServiceImplTest {
         assertThrows(ResourceNotFoundException.class, () -> userService.getUserDomainObject(userId));
         verify(userRepository).findById(userId);
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenGetUserDomainObjects_givenUsersExist_thenReturnUsersInSingleQuery() {
+        // given
+        User first = User.builder().id("1234-qwer").email("first@mail.com").build();
+        User second = User.builder().id("qwer-1234").email("second@mail.com").build();
+        List<String> userIds = List.of(first.getId(), second.getId(), first.getId());
+
+        // when
+        when(userRepository.findAllById(Set.of(first.getId(), second.getId()))).thenReturn(List.of(first, second));
+
+        List<User> result = userService.getUserDomainObjects(userIds);
+
+        // then
+        verify(userRepository).findAllById(Set.of(first.getId(), second.getId()));
+        assertThat(result, Matchers.contains(first, second));
+    }
+
+    @Test
+    void whenGetUserDomainObjects_givenOneOfTheUsersDoesntExist_thenThrowException() {
+        // given
+        User first = User.builder().id("1234-qwer").email("first@mail.com").build();
+        List<String> userIds = List.of(first.getId(), "qwer-1234");
+
+        // when
+        when(userRepository.findAllById(Set.copyOf(userIds))).thenReturn(List.of(first));
+
+        // then
+        assertThrows(ResourceNotFoundException.class, () -> userService.getUserDomainObjects(userIds));
+        verify(userRepository).findAllById(Set.copyOf(userIds));
+    }
+
+    @Test
+    void whenGetUserProfiles_givenSomeUsersDontExist_thenReturnExistingProfilesInOrder() {
+        // given
+        UserProfileDto first = new UserProfileDto("1234-qwer", "first");
+        UserProfileDto second = new UserProfileDto("qwer-1234", "second");
+        List<String> userIds = List.of(second.getId(), "abcd-1234", first.getId(), second.getId());
+
+        // when
+        when(userProfileCache.getProfiles(Set.of(first.getId(), second.getId(), "abcd-1234")))
+                .thenReturn(Map.of(first.getId(), first, second.getId(), second));
+
+        List<UserProfileDto> result = userService.getUserProfiles(userIds);
+
+        // then
+        verify(userProfileCache).getProfiles(Set.of(first.getId(), second.getId(), "abcd-1234"));
+        assertThat(result, Matchers.contains(second, first));
+    }
+
+    @Test
+    void whenGetUserProfiles_givenTooManyUsers_thenThrowException() {
+        // given
+        List<String> userIds = new ArrayList<>();
+        for (int i = 0; i < 1001; i++) {
+            userIds.add("user-" + i);
+        }
+
+        // then
+        assertThrows(IllegalStateException.class, () -> userService.getUserProfiles(userIds));
+        verifyNoInteractions(userProfileCache);
+    }
+}
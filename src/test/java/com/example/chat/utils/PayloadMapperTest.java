@@ -0,0 +1,106 @@
+package com.example.chat.utils;
+
+import com.example.chat.model.chat.Chat;
+import com.example.chat.model.chat.Message;
+import com.example.chat.model.chat.member.Member;
+import com.example.chat.model.chat.member.MemberId;
+import com.example.chat.model.chat.member.MemberRole;
+import com.example.chat.model.user.User;
+import com.example.chat.payload.chat.ChatDto;
+import com.example.chat.payload.chat.MessageDto;
+import com.example.chat.payload.user.UserDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.modelmapper.convention.MatchingStrategies;
+
+import java.time.LocalDateTime;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Verifies that the payloads serialize to the same json as the ones built by the model mapper used before
+ */
+class PayloadMapperTest {
+    PayloadMapper mapper;
+    ModelMapper modelMapper;
+    ObjectMapper objectMapper;
+
+    @BeforeEach
+    void init() {
+        mapper = new PayloadMapper();
+
+        modelMapper = new ModelMapper();
+        modelMapper.getConfiguration().setMatchingStrategy(MatchingStrategies.STRICT);
+
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+    }
+
+    @Test
+    void whenMapUser_givenUser_thenSameJsonAsModelMapper() throws Exception {
+        // given
+        User user = user("1234-qwer");
+
+        // when
+        UserDto result = mapper.mapUserToUserDto(user);
+
+        // then
+        assertThat(objectMapper.writeValueAsString(result),
+                Matchers.equalTo(objectMapper.writeValueAsString(modelMapper.map(user, UserDto.class))));
+    }
+
+    @Test
+    void whenMapMessage_givenMessage_thenSameJsonAsModelMapper() throws Exception {
+        // given
+        Message message = Message.builder().id(1L).user(user("1234-qwer")).content("Hello").sentAt(LocalDateTime.now()).build();
+
+        // when
+        MessageDto result = mapper.mapMessageToMessageDto(message);
+
+        // then
+        assertThat(objectMapper.writeValueAsString(result),
+                Matchers.equalTo(objectMapper.writeValueAsString(modelMapper.map(message, MessageDto.class))));
+    }
+
+    @Test
+    void whenMapChat_givenChatWithMemberAndLastMessage_thenSameJsonAsModelMapper() throws Exception {
+        // given
+        LocalDateTime now = LocalDateTime.now();
+        User user = user("1234-qwer");
+        Chat chat = Chat.builder().id("5678-asdf").name("test.chat").description("test").createdAt(now).updatedAt(now).build();
+        chat.addMember(Member.builder().id(new MemberId(user.getId(), chat.getId())).user(user).chat(chat)
+                .role(MemberRole.OWNER).joinedAt(now).updatedAt(now).build());
+        chat.setLastMessage(Message.builder().id(1L).chat(chat).user(user).content("Hello").sentAt(now).build());
+
+        // when
+        ChatDto result = mapper.mapChatToChatDto(chat);
+
+        // then
+        // member count is not a property of the chat, so model mapper doesn't know about it
+        ChatDto expected = modelMapper.map(chat, ChatDto.class);
+        expected.setMemberCount(1);
+
+        assertThat(objectMapper.writeValueAsString(result), Matchers.equalTo(objectMapper.writeValueAsString(expected)));
+    }
+
+    @Test
+    void whenMapChat_givenNoLastMessage_thenLastMessageIsNull() {
+        // given
+        Chat chat = Chat.builder().id("5678-asdf").name("test.chat").build();
+
+        // when
+        ChatDto result = mapper.mapChatToChatDto(chat);
+
+        // then
+        assertThat(result.getLastMessage(), Matchers.nullValue());
+        assertThat(result.getMembers(), Matchers.empty());
+    }
+
+    private User user(String id) {
+        LocalDateTime now = LocalDateTime.now();
+        return User.builder().id(id).nickname("test.user").email("test.user@mail.com").password("password")
+                .enabled(true).createdAt(now).updatedAt(now).build();
+    }
+}